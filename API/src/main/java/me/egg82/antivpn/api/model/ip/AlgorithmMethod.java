@@ -5,7 +5,8 @@ import org.jetbrains.annotations.Nullable;
 
 public enum AlgorithmMethod {
     CASCADE("cascade"),
-    CONSESNSUS("consensus");
+    CONSESNSUS("consensus"),
+    HEDGED_CASCADE("hedged_cascade");
 
     private final @NotNull String name;
 
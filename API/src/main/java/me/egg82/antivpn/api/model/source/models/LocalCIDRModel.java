@@ -0,0 +1,55 @@
+package me.egg82.antivpn.api.model.source.models;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Objects;
+
+public class LocalCIDRModel implements SourceModel {
+    private boolean listed = false;
+    private @Nullable String list = null;
+    private @Nullable String range = null;
+
+    public boolean isListed() { return listed; }
+
+    public void setListed(boolean listed) {
+        this.listed = listed;
+    }
+
+    @Nullable
+    public String getList() { return list; }
+
+    public void setList(@Nullable String list) {
+        this.list = list;
+    }
+
+    @Nullable
+    public String getRange() { return range; }
+
+    public void setRange(@Nullable String range) {
+        this.range = range;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LocalCIDRModel)) {
+            return false;
+        }
+        LocalCIDRModel that = (LocalCIDRModel) o;
+        return listed == that.listed && Objects.equals(list, that.list) && Objects.equals(range, that.range);
+    }
+
+    @Override
+    public int hashCode() { return Objects.hash(listed, list, range); }
+
+    @Override
+    public String toString() {
+        return "LocalCIDRModel{" +
+                "listed=" + listed +
+                ", list='" + list + '\'' +
+                ", range='" + range + '\'' +
+                '}';
+    }
+}
@@ -1,7 +1,6 @@
 package me.egg82.antivpn.events;
 
 import co.aikar.commands.CommandIssuer;
-import inet.ipaddr.IPAddressString;
 import me.egg82.antivpn.AntiVPN;
 import me.egg82.antivpn.api.VPNAPIProvider;
 import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
@@ -10,11 +9,11 @@ import me.egg82.antivpn.api.model.player.PlayerManager;
 import me.egg82.antivpn.api.platform.BungeePlatform;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
 import me.egg82.antivpn.hooks.LuckPermsHook;
 import me.egg82.antivpn.services.lookup.PlayerInfo;
 import me.egg82.antivpn.services.lookup.PlayerLookup;
 import me.egg82.antivpn.utils.ExceptionUtil;
-import me.egg82.antivpn.utils.ValidationUtil;
 import net.md_5.bungee.api.ProxyServer;
 import net.md_5.bungee.api.chat.TextComponent;
 import net.md_5.bungee.api.event.PostLoginEvent;
@@ -132,19 +131,17 @@ public class PlayerEvents extends EventHolder {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         // Check ignored IP addresses/ranges
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+        String ignoredMatch = getIgnoredMatch(ip, cachedConfig);
+        if (ignoredMatch != null) {
+            if (ConfigUtil.getDebugOrFalse()) {
+                if (ignoredMatch.indexOf('/') == -1) {
                     console.sendMessage("<c1>" + event.getConnection().getName() + "</c1> <c2>is using an ignored IP</c2> <c1>" + ip + "</c1><c2>. Ignoring.</c2>");
-                }
-                return;
-            } else if (ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+                } else {
                     console.sendMessage("<c1>" + event.getConnection()
-                            .getName() + "</c1> <c2>is under an ignored range</c2> <c1>" + testAddress + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
+                            .getName() + "</c1> <c2>is under an ignored range</c2> <c1>" + ignoredMatch + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
                 }
-                return;
             }
+            return;
         }
 
         cacheData(ip, uuid, cachedConfig);
@@ -191,13 +188,8 @@ public class PlayerEvents extends EventHolder {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         // Check ignored IP addresses/ranges
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (
-                    ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)
-                            || ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)
-            ) {
-                return;
-            }
+        if (getIgnoredMatch(ip, cachedConfig) != null) {
+            return;
         }
 
         cacheData(ip, uuid, cachedConfig);
@@ -266,19 +258,17 @@ public class PlayerEvents extends EventHolder {
             return;
         }
 
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+        String ignoredMatch = getIgnoredMatch(ip, cachedConfig);
+        if (ignoredMatch != null) {
+            if (ConfigUtil.getDebugOrFalse()) {
+                if (ignoredMatch.indexOf('/') == -1) {
                     console.sendMessage("<c1>" + event.getPlayer().getName() + "</c1> <c2>is using an ignored IP</c2> <c1>" + ip + "</c1><c2>. Ignoring.</c2>");
-                }
-                return;
-            } else if (ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+                } else {
                     console.sendMessage("<c1>" + event.getPlayer()
-                            .getName() + "</c1> <c2>is under an ignored range</c2> <c1>" + testAddress + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
+                            .getName() + "</c1> <c2>is under an ignored range</c2> <c1>" + ignoredMatch + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
                 }
-                return;
             }
+            return;
         }
 
         if (isVpn(ip, event.getPlayer().getName(), cachedConfig)) {
@@ -407,5 +397,12 @@ public class PlayerEvents extends EventHolder {
         return PlayerLookup.get(name).thenApply(PlayerInfo::getUUID);
     }
 
-    private boolean rangeContains(@NotNull String range, @NotNull String ip) { return new IPAddressString(range).contains(new IPAddressString(ip)); }
+    @Nullable
+    private String getIgnoredMatch(@NotNull String ip, @NotNull CachedConfig cachedConfig) {
+        try {
+            return cachedConfig.getIgnoredIpTrie().getMatch(IPKey.of(ip));
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
 }
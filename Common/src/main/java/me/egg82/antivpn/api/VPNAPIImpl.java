@@ -4,6 +4,7 @@ import me.egg82.antivpn.api.event.VPNEvent;
 import me.egg82.antivpn.api.model.ip.AbstractIPManager;
 import me.egg82.antivpn.api.model.player.AbstractPlayerManager;
 import me.egg82.antivpn.api.model.source.SourceManagerImpl;
+import me.egg82.antivpn.api.model.source.SourceQueryExecutor;
 import me.egg82.antivpn.api.platform.Platform;
 import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.utils.PacketUtil;
@@ -22,6 +23,7 @@ public class VPNAPIImpl implements VPNAPI {
     private final @NotNull AbstractIPManager ipManager;
     private final @NotNull AbstractPlayerManager playerManager;
     private final @NotNull SourceManagerImpl sourceManager;
+    private final @NotNull SourceQueryExecutor sourceQueryExecutor;
     private final @NotNull EventBus<VPNEvent> eventBus;
 
     private static @Nullable VPNAPIImpl instance = null;
@@ -34,6 +36,7 @@ public class VPNAPIImpl implements VPNAPI {
             @NotNull AbstractIPManager ipManager,
             @NotNull AbstractPlayerManager playerManager,
             @NotNull SourceManagerImpl sourceManager,
+            @NotNull SourceQueryExecutor sourceQueryExecutor,
             @NotNull EventBus<VPNEvent> eventBus
     ) {
         this.platform = platform;
@@ -42,6 +45,7 @@ public class VPNAPIImpl implements VPNAPI {
         this.ipManager = ipManager;
         this.playerManager = playerManager;
         this.sourceManager = sourceManager;
+        this.sourceQueryExecutor = sourceQueryExecutor;
         this.eventBus = eventBus;
 
         instance = this;
@@ -63,6 +67,9 @@ public class VPNAPIImpl implements VPNAPI {
     @NotNull
     public SourceManagerImpl getSourceManager() { return sourceManager; }
 
+    @NotNull
+    public SourceQueryExecutor getSourceQueryExecutor() { return sourceQueryExecutor; }
+
     @Override
     @NotNull
     public Platform getPlatform() { return platform; }
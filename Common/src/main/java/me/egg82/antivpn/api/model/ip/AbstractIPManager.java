@@ -1,19 +1,26 @@
 package me.egg82.antivpn.api.model.ip;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.egg82.antivpn.api.APIException;
+import me.egg82.antivpn.api.model.source.AbstractSource;
+import me.egg82.antivpn.api.model.source.NoResultException;
 import me.egg82.antivpn.api.model.source.Source;
 import me.egg82.antivpn.api.model.source.SourceManager;
 import me.egg82.antivpn.api.model.source.models.SourceModel;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
-import me.egg82.antivpn.core.Pair;
+import me.egg82.antivpn.core.IPKey;
+import me.egg82.antivpn.core.InFlightRegistry;
 import me.egg82.antivpn.logging.GELFLogger;
 import me.egg82.antivpn.messaging.packets.vpn.DeleteIPPacket;
 import me.egg82.antivpn.messaging.packets.vpn.IPPacket;
 import me.egg82.antivpn.storage.StorageService;
 import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.utils.FutureUtil;
 import me.egg82.antivpn.utils.PacketUtil;
 import me.egg82.antivpn.utils.TimeUtil;
 import org.jetbrains.annotations.NotNull;
@@ -23,32 +30,60 @@ import org.slf4j.LoggerFactory;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class AbstractIPManager implements IPManager {
     protected final @NotNull Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
 
-    private final @NotNull LoadingCache<Pair<String, AlgorithmMethod>, IPModel> ipCache;
+    private final @NotNull ThreadPoolExecutor cacheExecutor;
+
+    private final @NotNull AsyncLoadingCache<IPKey, IPModel> ipCache;
     private final @NotNull LoadingCache<String, Boolean> sourceInvalidationCache;
 
+    private final @NotNull InFlightRegistry<IPKey, IPModel> storageReads = new InFlightRegistry<>();
+    private final @NotNull InFlightRegistry<IPKey, IPModel> webResults = new InFlightRegistry<>();
+
     private final @NotNull SourceManager sourceManager;
 
     protected AbstractIPManager(@NotNull SourceManager sourceManager, @NotNull TimeUtil.Time cacheTime) {
         this.sourceManager = sourceManager;
 
+        // Loaders block on storage and source queries, which have bounded pools of their own.
+        // Bounded here too, so a wave of misses queues up instead of starting a blocked thread per miss
+        int threads = Math.max(2, ConfigUtil.getCachedConfig().getThreads() * 2);
+        cacheExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                30L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("Anti-VPN_IPCache_%d").setDaemon(true).build()
+        );
+        cacheExecutor.allowCoreThreadTimeOut(true);
+
+        // Hot entries are reloaded in the background once they're 3/4 of the way to expiry
+        // so a reconnecting player doesn't have to wait on a cold load
         ipCache = Caffeine.newBuilder()
                 .expireAfterAccess(cacheTime.getTime(), cacheTime.getUnit())
                 .expireAfterWrite(cacheTime.getTime(), cacheTime.getUnit())
-                .build(k -> calculateIpResult(k.getT1(), k.getT2(), true));
+                .refreshAfterWrite(Math.max(1L, cacheTime.getMillis() * 3L / 4L), TimeUnit.MILLISECONDS)
+                .executor(cacheExecutor)
+                .buildAsync(new CacheLoader<IPKey, IPModel>() {
+                    @Override
+                    public IPModel load(@NotNull IPKey key) throws APIException { return calculateIpResult(key.toAddressString(), key.getMethod(), true); }
+
+                    @Override
+                    public IPModel reload(@NotNull IPKey key, @NotNull IPModel oldValue) throws APIException { return refreshIpResult(key, oldValue); }
+                });
         sourceInvalidationCache = Caffeine.newBuilder().expireAfterWrite(1L, TimeUnit.MINUTES).build(k -> Boolean.FALSE);
     }
 
     @NotNull
-    public LoadingCache<Pair<String, AlgorithmMethod>, IPModel> getIpCache() { return ipCache; }
+    public AsyncLoadingCache<IPKey, IPModel> getIpCache() { return ipCache; }
 
     @Override
     @NotNull
@@ -56,14 +91,12 @@ public abstract class AbstractIPManager implements IPManager {
         return CompletableFuture.supplyAsync(() -> {
             CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
-            for (StorageService service : cachedConfig.getStorage()) {
-                IPModel model = service.getIpModel(ip, cachedConfig.getSourceCacheTime());
-                if (model != null) {
-                    try {
-                        return new GenericIP(InetAddress.getByName(ip), AlgorithmMethod.values()[model.getType()], model.getCascade(), model.getConsensus());
-                    } catch (UnknownHostException ex) {
-                        throw new IllegalArgumentException("Could not create InetAddress for " + model.getIp());
-                    }
+            IPModel model = getStoredModel(ip, cachedConfig);
+            if (model != null) {
+                try {
+                    return new GenericIP(InetAddress.getByName(ip), AlgorithmMethod.values()[model.getType()], model.getCascade(), model.getConsensus());
+                } catch (UnknownHostException ex) {
+                    throw new IllegalArgumentException("Could not create InetAddress for " + model.getIp());
                 }
             }
             return null;
@@ -76,12 +109,15 @@ public abstract class AbstractIPManager implements IPManager {
         return CompletableFuture.runAsync(() -> {
             CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
+            IPModel model = new IPModel();
+            model.setIp(ip.getIP().getHostAddress());
+            model.setType(ip.getType().ordinal());
+            model.setCascade(ip.getCascade());
+            model.setConsensus(ip.getConsensus());
             for (StorageService service : cachedConfig.getStorage()) {
-                IPModel model = service.getOrCreateIpModel(ip.getIP().getHostAddress(), ip.getType().ordinal());
-                model.setCascade(ip.getCascade());
-                model.setConsensus(ip.getConsensus());
                 service.storeModel(model);
             }
+            cachedConfig.getTieredStorage().recordIp(model.getIp());
 
             IPPacket packet = new IPPacket();
             packet.setIp(ip.getIP().getHostAddress());
@@ -142,73 +178,77 @@ public abstract class AbstractIPManager implements IPManager {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> cascade(@NotNull String ip, boolean useCache) {
-        return CompletableFuture.supplyAsync(() -> {
-            IPModel model;
-            if (useCache) {
-                try {
-                    model = ipCache.get(new Pair<>(ip, AlgorithmMethod.CASCADE));
-                } catch (CompletionException ex) {
-                    if (ex.getCause() instanceof APIException) {
-                        throw (APIException) ex.getCause();
-                    } else {
-                        throw new APIException(false, "Could not get data for IP " + ip, ex);
-                    }
-                } catch (RuntimeException ex) {
-                    throw new APIException(false, "Could not get data for IP " + ip, ex);
-                }
-            } else {
-                model = calculateIpResult(ip, AlgorithmMethod.CASCADE, false);
-            }
-            if (model == null) {
-                throw new APIException(false, "Could not get data for IP " + ip);
-            }
-            return Boolean.TRUE.equals(model.getCascade());
-        });
+        return getModel(ip, AlgorithmMethod.CASCADE, useCache).thenApply(model -> Boolean.TRUE.equals(model.getCascade()));
     }
 
     @Override
     @NotNull
     public CompletableFuture<@NotNull Double> consensus(@NotNull String ip, boolean useCache) {
-        return CompletableFuture.supplyAsync(() -> {
-            IPModel model;
+        return getModel(ip, AlgorithmMethod.CONSESNSUS, useCache).thenApply(model -> model.getConsensus() == null ? 1.0d : model.getConsensus());
+    }
+
+    @Override
+    public double getMinConsensusValue() { return ConfigUtil.getCachedConfig().getVPNAlgorithmConsensus(); }
+
+    @NotNull
+    private CompletableFuture<@NotNull IPModel> getModel(@NotNull String ip, @NotNull AlgorithmMethod method, boolean useCache) {
+        CompletableFuture<IPModel> future;
+        try {
+            IPKey key = IPKey.of(ip, method);
             if (useCache) {
-                try {
-                    model = ipCache.get(new Pair<>(ip, AlgorithmMethod.CONSESNSUS));
-                } catch (CompletionException ex) {
-                    if (ex.getCause() instanceof APIException) {
-                        throw (APIException) ex.getCause();
-                    } else {
-                        throw new APIException(false, "Could not get data for IP " + ip, ex);
-                    }
-                } catch (RuntimeException ex) {
-                    throw new APIException(false, "Could not get data for IP " + ip, ex);
-                }
+                future = ipCache.get(key);
             } else {
-                model = calculateIpResult(ip, AlgorithmMethod.CONSESNSUS, false);
+                future = CompletableFuture.supplyAsync(() -> webResults.get(key, () -> calculateIpResult(ip, method, false)), cacheExecutor);
+            }
+        } catch (IllegalArgumentException ex) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(ex);
+        }
+
+        return future.handle((model, ex) -> {
+            if (ex != null) {
+                Throwable cause = FutureUtil.unwrap(ex);
+                if (cause instanceof APIException) {
+                    throw (APIException) cause;
+                }
+                throw new APIException(false, "Could not get data for IP " + ip, cause);
             }
             if (model == null) {
                 throw new APIException(false, "Could not get data for IP " + ip);
             }
-            return model.getConsensus() == null ? 1.0d : model.getConsensus();
+            return model;
         });
     }
 
-    @Override
-    public double getMinConsensusValue() { return ConfigUtil.getCachedConfig().getVPNAlgorithmConsensus(); }
+    /**
+     * Refresh-ahead for a hot entry.
+     * Goes to the sources rather than storage, which would only hand back the row that's already cached,
+     * and stores the new result so storage and other servers get it too. Keeps the old value if no source had an answer.
+     */
+    @NotNull
+    private IPModel refreshIpResult(@NotNull IPKey key, @NotNull IPModel oldValue) throws APIException {
+        CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
+
+        IPModel retVal = webResults.get(key, () -> calculateIpResult(key.toAddressString(), key.getMethod(), false));
+        if (retVal.getCascade() == null && retVal.getConsensus() == null) {
+            return oldValue;
+        }
+        storeResult(retVal, cachedConfig);
+        sendResult(retVal, cachedConfig);
+        return retVal;
+    }
 
     @NotNull
     private IPModel calculateIpResult(@NotNull String ip, @NotNull AlgorithmMethod method, boolean useCache) throws APIException {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         if (useCache) {
-            for (StorageService service : cachedConfig.getStorage()) {
-                IPModel model = service.getIpModel(ip, cachedConfig.getSourceCacheTime());
-                if (model != null && model.getType() == method.ordinal()) {
-                    if (cachedConfig.getDebug()) {
-                        logger.info("Found database value for IP " + ip + ".");
-                    }
-                    return model;
+            IPModel model = getStoredModel(ip, cachedConfig);
+            if (model != null && model.getType() == method.ordinal()) {
+                if (cachedConfig.getDebug()) {
+                    logger.info("Found database value for IP " + ip + ".");
                 }
+                return model;
             }
         }
 
@@ -218,60 +258,45 @@ public abstract class AbstractIPManager implements IPManager {
 
         IPModel retVal = new IPModel();
         retVal.setIp(ip);
-        retVal.setType(cachedConfig.getVPNAlgorithmMethod().ordinal());
+        // Hedged cascade produces the same kind of result as cascade, so store it as one
+        retVal.setType(cachedConfig.getVPNAlgorithmMethod() == AlgorithmMethod.HEDGED_CASCADE ? AlgorithmMethod.CASCADE.ordinal() : cachedConfig.getVPNAlgorithmMethod().ordinal());
 
         if (method == AlgorithmMethod.CONSESNSUS) {
-            ExecutorService pool = Executors.newWorkStealingPool(cachedConfig.getThreads());
-            List<Source<SourceModel>> sources = sourceManager.getSources();
-            CountDownLatch latch = new CountDownLatch(sources.size());
-            AtomicLong results = new AtomicLong(0L);
-            AtomicLong totalSources = new AtomicLong(0L);
-            for (Source<SourceModel> source : sources) {
-                pool.submit(() -> {
-                    if (Boolean.TRUE.equals(sourceInvalidationCache.get(source.getName()))) {
-                        if (cachedConfig.getDebug()) {
-                            logger.info("Skipping source " + source.getName() + " due to recent failure.");
-                        }
-                        latch.countDown();
-                        return;
-                    }
-                    if (cachedConfig.getDebug()) {
-                        logger.info("Getting result from source " + source.getName() + ".");
-                    }
-                    try {
-                        if (source.getResult(ip).get()) {
-                            results.addAndGet(1L);
-                        }
-                        totalSources.addAndGet(1L);
-                    } catch (InterruptedException ignored) {
-                        logger.error("Source " + source.getName() + " returned an error. Skipping.");
-                        sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
-                        Thread.currentThread().interrupt();
-                    } catch (ExecutionException | CancellationException ex) {
-                        logger.error("Source " + source.getName() + " returned an error. Skipping.", ex);
-                        sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
-                    }
-                    latch.countDown();
-                });
-            }
-
+            Double consensus;
             try {
-                if (!latch.await(20L, TimeUnit.SECONDS)) {
-                    logger.warn("Consensus timed out before all sources could be queried.");
+                consensus = calculateConsensus(ip, cachedConfig).join();
+            } catch (CompletionException ex) {
+                Throwable cause = FutureUtil.unwrap(ex);
+                if (cause instanceof APIException) {
+                    throw (APIException) cause;
                 }
-            } catch (InterruptedException ignored) {
-                Thread.currentThread().interrupt();
+                throw new APIException(false, "Could not get data for IP " + ip, cause);
             }
-            pool.shutdownNow(); // Kill it with fire
 
-            if (totalSources.get() > 0L) {
-                retVal.setConsensus((double) results.get() / (double) totalSources.get());
+            if (consensus != null) {
+                retVal.setConsensus(consensus);
                 if (useCache) {
                     storeResult(retVal, cachedConfig);
                     sendResult(retVal, cachedConfig);
                 }
                 return retVal;
             }
+        } else if (cachedConfig.getVPNAlgorithmMethod() == AlgorithmMethod.HEDGED_CASCADE) {
+            try {
+                retVal.setCascade(new HedgedCascade(ip, cachedConfig).start().join());
+            } catch (CompletionException ex) {
+                Throwable cause = FutureUtil.unwrap(ex);
+                if (cause instanceof APIException) {
+                    throw (APIException) cause;
+                }
+                throw new APIException(false, "Could not get data for IP " + ip, cause);
+            }
+
+            if (useCache && retVal.getCascade() != null) {
+                storeResult(retVal, cachedConfig);
+                sendResult(retVal, cachedConfig);
+            }
+            return retVal;
         } else {
             for (Source<SourceModel> source : sourceManager.getSources()) {
                 if (Boolean.TRUE.equals(sourceInvalidationCache.get(source.getName()))) {
@@ -296,6 +321,12 @@ public abstract class AbstractIPManager implements IPManager {
                     sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
                     Thread.currentThread().interrupt();
                 } catch (ExecutionException | CancellationException ex) {
+                    if (FutureUtil.unwrap(ex) instanceof NoResultException) {
+                        if (cachedConfig.getDebug()) {
+                            logger.info("Source " + source.getName() + " had no result for IP " + ip + ".");
+                        }
+                        continue;
+                    }
                     logger.error("Source " + source.getName() + " returned an error. Skipping.", ex);
                     sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
                 }
@@ -311,13 +342,264 @@ public abstract class AbstractIPManager implements IPManager {
         throw new APIException(false, "No sources were available to query. See https://github.com/egg82/Anti-VPN/wiki/FAQ#Errors");
     }
 
+    /**
+     * Cascade which doesn't wait on a slow source before trying the next one.
+     * Sources are fired in priority order, "fan-out" at a time, with another batch fired whenever the hedge delay passes
+     * or every source in flight has failed. The first valid answer in priority order wins and the rest are cancelled.
+     */
+    private class HedgedCascade {
+        private final @NotNull String ip;
+        private final @NotNull CachedConfig cachedConfig;
+        private final @NotNull List<Source<SourceModel>> sources = new ArrayList<>();
+        private final @NotNull List<CompletableFuture<Boolean>> queries = new ArrayList<>();
+        private final @NotNull CompletableFuture<Boolean> retVal = new CompletableFuture<>();
+
+        private int head = 0;
+        private int wave = 0;
+
+        private HedgedCascade(@NotNull String ip, @NotNull CachedConfig cachedConfig) {
+            this.ip = ip;
+            this.cachedConfig = cachedConfig;
+
+            for (Source<SourceModel> source : sourceManager.getSources()) {
+                if (Boolean.TRUE.equals(sourceInvalidationCache.get(source.getName()))) {
+                    if (cachedConfig.getDebug()) {
+                        logger.info("Skipping source " + source.getName() + " due to recent failure.");
+                    }
+                    continue;
+                }
+                sources.add(source);
+            }
+        }
+
+        @NotNull
+        private CompletableFuture<@Nullable Boolean> start() {
+            if (sources.isEmpty()) {
+                retVal.complete(null);
+            } else {
+                synchronized (this) {
+                    fire();
+                }
+            }
+            return retVal;
+        }
+
+        private void fire() {
+            if (retVal.isDone() || queries.size() >= sources.size()) {
+                return;
+            }
+
+            int end = Math.min(sources.size(), queries.size() + cachedConfig.getHedgeFanout());
+            // Sources which answer synchronously (eg. local lists) can finish the cascade before the batch is fully fired
+            while (queries.size() < end && !retVal.isDone()) {
+                int index = queries.size();
+                Source<SourceModel> source = sources.get(index);
+                if (cachedConfig.getDebug()) {
+                    logger.info("Getting result from source " + source.getName() + ".");
+                }
+                CompletableFuture<Boolean> query = querySource(source, ip, cachedConfig);
+                queries.add(query);
+                query.whenComplete((v, ex) -> complete(index, v, ex));
+            }
+            if (retVal.isDone()) {
+                return;
+            }
+
+            int current = ++wave;
+            if (cachedConfig.getHedgeDelay() > 0L && queries.size() < sources.size()) {
+                FutureUtil.delay(cachedConfig.getHedgeDelay(), TimeUnit.MILLISECONDS).thenRun(() -> {
+                    synchronized (this) {
+                        // Only hedge if nothing else has fired a batch in the meantime
+                        if (wave == current) {
+                            if (cachedConfig.getDebug()) {
+                                logger.info("Hedging cascade for IP " + ip + " after " + cachedConfig.getHedgeDelay() + "ms.");
+                            }
+                            fire();
+                        }
+                    }
+                });
+            }
+        }
+
+        private synchronized void complete(int index, @Nullable Boolean value, @Nullable Throwable ex) {
+            Source<SourceModel> source = sources.get(index);
+            if (ex != null) {
+                Throwable cause = FutureUtil.unwrap(ex);
+                // Cancelled queries lost to a higher-priority answer, not the source's fault
+                if (!(cause instanceof CancellationException) && !(cause instanceof NoResultException)) {
+                    logger.error("Source " + source.getName() + " returned an error. Skipping.", cause);
+                    sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
+                }
+            } else if (value == null) {
+                logger.error("Source " + source.getName() + " returned an error. Skipping.");
+                sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
+            }
+
+            if (retVal.isDone()) {
+                return;
+            }
+
+            // Walk past every failed source at the front; the first valid answer there wins
+            while (head < queries.size()) {
+                CompletableFuture<Boolean> query = queries.get(head);
+                if (!query.isDone()) {
+                    break;
+                }
+                Boolean result = query.isCompletedExceptionally() ? null : query.getNow(null);
+                if (result != null) {
+                    retVal.complete(result);
+                    for (CompletableFuture<Boolean> q : queries) {
+                        q.cancel(true);
+                    }
+                    return;
+                }
+                head++;
+            }
+
+            if (head >= sources.size()) {
+                retVal.complete(null);
+            } else if (head >= queries.size()) {
+                // Everything in flight failed, don't wait on the hedge delay
+                fire();
+            }
+        }
+    }
+
+    /**
+     * Built-in sources run on the source executor, which times queries out from when they start running rather than
+     * from when they were queued, and cancelling their futures stops queued queries from ever being sent.
+     * Anything else gets a plain timeout.
+     */
+    @NotNull
+    private static CompletableFuture<@NotNull Boolean> querySource(@NotNull Source<SourceModel> source, @NotNull String ip, @NotNull CachedConfig cachedConfig) {
+        if (source instanceof AbstractSource) {
+            return source.getResult(ip);
+        }
+        // Connect + read timeout, so a single stalled source can't hold up the result
+        return FutureUtil.withTimeout(source.getResult(ip), cachedConfig.getTimeout() * 2L, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queries every available source at once and completes as soon as the outcome can no longer change,
+     * cancelling whatever is still outstanding at that point.
+     * Completes with null if no source returned a usable result.
+     */
+    @NotNull
+    private CompletableFuture<@Nullable Double> calculateConsensus(@NotNull String ip, @NotNull CachedConfig cachedConfig) {
+        CompletableFuture<Double> retVal = new CompletableFuture<>();
+
+        List<Source<SourceModel>> sources = new ArrayList<>();
+        List<CompletableFuture<Boolean>> queries = new ArrayList<>();
+        for (Source<SourceModel> source : sourceManager.getSources()) {
+            if (Boolean.TRUE.equals(sourceInvalidationCache.get(source.getName()))) {
+                if (cachedConfig.getDebug()) {
+                    logger.info("Skipping source " + source.getName() + " due to recent failure.");
+                }
+                continue;
+            }
+            if (cachedConfig.getDebug()) {
+                logger.info("Getting result from source " + source.getName() + ".");
+            }
+            sources.add(source);
+            queries.add(querySource(source, ip, cachedConfig));
+        }
+
+        if (queries.isEmpty()) {
+            retVal.complete(null);
+            return retVal;
+        }
+
+        ConsensusTally tally = new ConsensusTally(queries.size(), cachedConfig.getVPNAlgorithmConsensus());
+        for (int i = 0; i < queries.size(); i++) {
+            Source<SourceModel> source = sources.get(i);
+            queries.get(i).whenComplete((v, ex) -> {
+                boolean decided;
+                if (ex != null) {
+                    Throwable cause = FutureUtil.unwrap(ex);
+                    // Cancelled queries were cut short because the outcome was already decided, not the source's fault
+                    // and sources with nothing to say about the IP simply don't get a vote
+                    if (!(cause instanceof CancellationException) && !(cause instanceof NoResultException)) {
+                        logger.error("Source " + source.getName() + " returned an error. Skipping.", cause);
+                        sourceInvalidationCache.put(source.getName(), Boolean.TRUE);
+                    }
+                    decided = tally.skip();
+                } else {
+                    decided = tally.record(Boolean.TRUE.equals(v));
+                }
+
+                if (decided && retVal.complete(tally.getConsensus())) {
+                    int remaining = tally.getPending();
+                    if (remaining > 0) {
+                        if (cachedConfig.getDebug()) {
+                            logger.info("Consensus for IP " + ip + " decided early. Cancelling " + remaining + " remaining source queries.");
+                        }
+                        for (CompletableFuture<Boolean> query : queries) {
+                            query.cancel(true);
+                        }
+                    }
+                }
+            });
+        }
+
+        return retVal;
+    }
+
+    private static class ConsensusTally {
+        private final double threshold;
+        private int pending;
+        private int vpn = 0;
+        private int total = 0;
+
+        private ConsensusTally(int pending, double threshold) {
+            this.pending = pending;
+            this.threshold = threshold;
+        }
+
+        private synchronized boolean record(boolean isVpn) {
+            pending--;
+            total++;
+            if (isVpn) {
+                vpn++;
+            }
+            return isDecided();
+        }
+
+        private synchronized boolean skip() {
+            pending--;
+            return isDecided();
+        }
+
+        private synchronized int getPending() { return pending; }
+
+        private synchronized @Nullable Double getConsensus() { return total > 0 ? (double) vpn / (double) total : null; }
+
+        private boolean isDecided() {
+            if (pending <= 0) {
+                return true;
+            }
+            if (total == 0) {
+                return false;
+            }
+
+            // Worst case every outstanding source says "not VPN", best case they all say "VPN"
+            // Outstanding sources failing only moves the ratio between these two bounds
+            double lowest = (double) vpn / (double) (total + pending);
+            double highest = (double) (vpn + pending) / (double) (total + pending);
+            return lowest >= threshold || highest < threshold;
+        }
+    }
+
+    @Nullable
+    private IPModel getStoredModel(@NotNull String ip, @NotNull CachedConfig cachedConfig) {
+        // Concurrent lookups of the same IP share a single pass through the storage tiers
+        return storageReads.get(IPKey.of(ip), () -> cachedConfig.getTieredStorage().getIpModel(ip, cachedConfig.getSourceCacheTime()));
+    }
+
     private void storeResult(@NotNull IPModel model, @NotNull CachedConfig cachedConfig) {
         for (StorageService service : cachedConfig.getStorage()) {
-            IPModel m = service.getOrCreateIpModel(model.getIp(), model.getType());
-            m.setCascade(model.getCascade());
-            m.setConsensus(model.getConsensus());
-            service.storeModel(m);
+            service.storeModel(model);
         }
+        cachedConfig.getTieredStorage().recordIp(model.getIp());
 
         if (cachedConfig.getDebug()) {
             logger.info("Stored data for " + model.getIp() + " in storage.");
@@ -1,7 +1,9 @@
 package me.egg82.antivpn.api.model.player;
 
+import com.github.benmanes.caffeine.cache.AsyncLoadingCache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
 import com.github.benmanes.caffeine.cache.Caffeine;
-import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import flexjson.JSONDeserializer;
 import me.egg82.antivpn.api.APIException;
 import me.egg82.antivpn.config.CachedConfig;
@@ -11,6 +13,7 @@ import me.egg82.antivpn.messaging.packets.vpn.DeletePlayerPacket;
 import me.egg82.antivpn.messaging.packets.vpn.PlayerPacket;
 import me.egg82.antivpn.storage.StorageService;
 import me.egg82.antivpn.storage.models.PlayerModel;
+import me.egg82.antivpn.utils.FutureUtil;
 import me.egg82.antivpn.utils.PacketUtil;
 import me.egg82.antivpn.utils.TimeUtil;
 import me.egg82.antivpn.web.WebRequest;
@@ -26,26 +29,46 @@ import java.net.URL;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.*;
 
 public abstract class AbstractPlayerManager implements PlayerManager {
     protected final @NotNull Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
 
-    protected final @NotNull LoadingCache<UUID, PlayerModel> playerCache;
+    private final @NotNull ThreadPoolExecutor cacheExecutor;
+
+    protected final @NotNull AsyncLoadingCache<UUID, PlayerModel> playerCache;
     private final @Nullable String mcleaksKey;
 
     protected AbstractPlayerManager(@NotNull TimeUtil.Time cacheTime, @Nullable String mcleaksKey) {
+        // Loaders block on storage and the MCLeaks API, so a wave of misses queues up here instead of starting a thread per miss
+        int threads = Math.max(2, ConfigUtil.getCachedConfig().getThreads() * 2);
+        cacheExecutor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                30L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("Anti-VPN_PlayerCache_%d").setDaemon(true).build()
+        );
+        cacheExecutor.allowCoreThreadTimeOut(true);
+
         playerCache = Caffeine.newBuilder()
                 .expireAfterAccess(cacheTime.getTime(), cacheTime.getUnit())
                 .expireAfterWrite(cacheTime.getTime(), cacheTime.getUnit())
-                .build(k -> calculatePlayerResult(k, true));
+                .refreshAfterWrite(Math.max(1L, cacheTime.getMillis() * 3L / 4L), TimeUnit.MILLISECONDS)
+                .executor(cacheExecutor)
+                .buildAsync(new CacheLoader<UUID, PlayerModel>() {
+                    @Override
+                    public PlayerModel load(@NotNull UUID key) throws APIException { return calculatePlayerResult(key, true); }
+
+                    @Override
+                    public PlayerModel reload(@NotNull UUID key, @NotNull PlayerModel oldValue) throws APIException { return refreshPlayerResult(key); }
+                });
         this.mcleaksKey = mcleaksKey;
     }
 
     @NotNull
-    public LoadingCache<UUID, PlayerModel> getPlayerCache() { return playerCache; }
+    public AsyncLoadingCache<UUID, PlayerModel> getPlayerCache() { return playerCache; }
 
     @Override
     @NotNull
@@ -53,10 +76,13 @@ public abstract class AbstractPlayerManager implements PlayerManager {
         return CompletableFuture.runAsync(() -> {
             CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
+            PlayerModel model = new PlayerModel();
+            model.setUuid(player.getUuid());
+            model.setMcleaks(player.isMcLeaks());
             for (StorageService service : cachedConfig.getStorage()) {
-                PlayerModel model = service.getOrCreatePlayerModel(player.getUuid(), player.isMcLeaks());
                 service.storeModel(model);
             }
+            cachedConfig.getTieredStorage().recordPlayer(model.getUuid());
 
             PlayerPacket packet = new PlayerPacket();
             packet.setUuid(player.getUuid());
@@ -107,22 +133,17 @@ public abstract class AbstractPlayerManager implements PlayerManager {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> checkMcLeaks(@NotNull UUID uniqueId, boolean useCache) throws APIException {
-        return CompletableFuture.supplyAsync(() -> {
-            PlayerModel model;
-            if (useCache) {
-                try {
-                    model = playerCache.get(uniqueId);
-                } catch (CompletionException ex) {
-                    if (ex.getCause() instanceof APIException) {
-                        throw (APIException) ex.getCause();
-                    } else {
-                        throw new APIException(false, "Could not get data for player " + uniqueId, ex);
-                    }
-                } catch (RuntimeException | Error ex) {
-                    throw new APIException(false, "Could not get data for player " + uniqueId, ex);
+        CompletableFuture<PlayerModel> future = useCache
+                ? playerCache.get(uniqueId)
+                : CompletableFuture.supplyAsync(() -> calculatePlayerResult(uniqueId, false), cacheExecutor);
+
+        return future.handle((model, ex) -> {
+            if (ex != null) {
+                Throwable cause = FutureUtil.unwrap(ex);
+                if (cause instanceof APIException) {
+                    throw (APIException) cause;
                 }
-            } else {
-                model = calculatePlayerResult(uniqueId, false);
+                throw new APIException(false, "Could not get data for player " + uniqueId, cause);
             }
             if (model == null) {
                 throw new APIException(false, "Could not get data for player " + uniqueId);
@@ -131,19 +152,32 @@ public abstract class AbstractPlayerManager implements PlayerManager {
         });
     }
 
+    /**
+     * Refresh-ahead for a hot entry.
+     * Goes to the API rather than storage, which would only hand back the row that's already cached,
+     * and stores the new result so storage and other servers get it too.
+     */
+    @NotNull
+    private PlayerModel refreshPlayerResult(@NotNull UUID uuid) throws APIException {
+        CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
+
+        PlayerModel retVal = calculatePlayerResult(uuid, false);
+        storeResult(retVal, cachedConfig);
+        sendResult(retVal, cachedConfig);
+        return retVal;
+    }
+
     @NotNull
     private PlayerModel calculatePlayerResult(@NotNull UUID uuid, boolean useCache) throws APIException {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         if (useCache) {
-            for (StorageService service : cachedConfig.getStorage()) {
-                PlayerModel model = service.getPlayerModel(uuid, cachedConfig.getSourceCacheTime());
-                if (model != null) {
-                    if (cachedConfig.getDebug()) {
-                        logger.info("Found database value for player " + uuid + ".");
-                    }
-                    return model;
+            PlayerModel model = cachedConfig.getTieredStorage().getPlayerModel(uuid, cachedConfig.getSourceCacheTime());
+            if (model != null) {
+                if (cachedConfig.getDebug()) {
+                    logger.info("Found database value for player " + uuid + ".");
                 }
+                return model;
             }
         }
 
@@ -182,9 +216,9 @@ public abstract class AbstractPlayerManager implements PlayerManager {
 
     private void storeResult(@NotNull PlayerModel model, @NotNull CachedConfig cachedConfig) {
         for (StorageService service : cachedConfig.getStorage()) {
-            PlayerModel m = service.getOrCreatePlayerModel(model.getUuid(), model.isMcleaks());
-            service.storeModel(m);
+            service.storeModel(model);
         }
+        cachedConfig.getTieredStorage().recordPlayer(model.getUuid());
 
         if (cachedConfig.getDebug()) {
             logger.info("Stored data for " + model.getUuid() + " in storage.");
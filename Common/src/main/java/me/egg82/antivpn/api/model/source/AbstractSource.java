@@ -1,20 +1,28 @@
 package me.egg82.antivpn.api.model.source;
 
 import me.egg82.antivpn.api.APIException;
+import me.egg82.antivpn.api.VPNAPIImpl;
 import me.egg82.antivpn.api.model.source.models.SourceModel;
 import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.InFlightRegistry;
 import me.egg82.antivpn.utils.TimeUtil;
 import me.egg82.antivpn.web.WebRequest;
 import org.jetbrains.annotations.NotNull;
 import org.spongepowered.configurate.ConfigurationNode;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AbstractSource<T extends SourceModel> implements Source<T> {
     private final @NotNull Class<T> modelClass;
+    private final @NotNull InFlightRegistry<String, T> inFlight = new InFlightRegistry<>();
 
     protected AbstractSource(@NotNull Class<T> modelClass) {
         this.modelClass = modelClass;
@@ -24,9 +32,49 @@ public abstract class AbstractSource<T extends SourceModel> implements Source<T>
     @NotNull
     public Class<T> getModelClass() { return modelClass; }
 
+    /**
+     * Called once the source has been enabled in the config, before it is registered.
+     */
+    public void load(@NotNull File dataDirectory) { }
+
+    /**
+     * Called when the source is being replaced or the plugin is shutting down.
+     */
+    public void close() { }
+
     @NotNull
     protected final ConfigurationNode getSourceConfigNode() { return ConfigUtil.getConfig().node("sources", getName()); }
 
+    /**
+     * Runs the query on the shared source executor.
+     * Concurrent queries for the same IP share a single upstream call.
+     */
+    @NotNull
+    protected final CompletableFuture<T> queryAsync(@NotNull String ip, @NotNull Supplier<T> supplier) {
+        return inFlight.submit(ip, () -> {
+            VPNAPIImpl api = VPNAPIImpl.get();
+            if (api == null) {
+                return CompletableFuture.supplyAsync(supplier);
+            }
+            return api.getSourceQueryExecutor().supply(getName(), supplier);
+        });
+    }
+
+    /**
+     * thenApply, except cancelling the returned future also cancels the query it came from.
+     * A query still waiting for a slot on the executor is then never sent.
+     */
+    @NotNull
+    protected static <M, R> CompletableFuture<R> mapResult(@NotNull CompletableFuture<M> query, @NotNull Function<? super M, ? extends R> mapper) {
+        CompletableFuture<R> retVal = query.thenApply(mapper);
+        retVal.whenComplete((v, ex) -> {
+            if (ex instanceof CancellationException) {
+                query.cancel(true);
+            }
+        });
+        return retVal;
+    }
+
     @NotNull
     protected final WebRequest.Builder getDefaultBuilder(@NotNull String url) throws APIException {
         try {
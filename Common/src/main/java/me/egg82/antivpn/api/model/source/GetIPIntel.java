@@ -40,7 +40,7 @@ public class GetIPIntel extends AbstractSource<GetIPIntelModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!"success".equalsIgnoreCase(model.getStatus()) || model.getResult() == null) {
                 boolean isHard = model.getResult() != null && ("-5".equals(model.getResult()) || "-6".equals(model.getResult()));
                 throw new APIException(
@@ -61,7 +61,7 @@ public class GetIPIntel extends AbstractSource<GetIPIntelModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull GetIPIntelModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
@@ -26,7 +26,7 @@ public class IP2Proxy extends AbstractSource<IP2ProxyModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!"OK".equalsIgnoreCase(model.getResponse())) {
                 throw new APIException(false, "Could not get result from " + getName() + " (" + model.getResponse() + ")");
             }
@@ -38,7 +38,7 @@ public class IP2Proxy extends AbstractSource<IP2ProxyModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IP2ProxyModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
@@ -0,0 +1,272 @@
+package me.egg82.antivpn.api.model.source;
+
+import me.egg82.antivpn.api.APIException;
+import me.egg82.antivpn.api.model.source.models.IP2ProxyModel;
+import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
+import me.egg82.antivpn.logging.GELFLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Offline IP2Proxy source, backed by a downloaded IP2Proxy BIN database (LITE or commercial, any PX package).
+ * The file is memory-mapped once and lookups binary-search the mapped rows directly,
+ * so {@link #getResult(String)} doesn't allocate or touch the network.
+ */
+public class IP2ProxyFile extends AbstractSource<IP2ProxyModel> {
+    // 1-based column positions, indexed by database (PX) type
+    private static final int[] COUNTRY_POSITION = { 0, 2, 3, 3, 3, 3, 3, 3, 3, 3, 3, 3 };
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private volatile @Nullable Database database = null;
+
+    @Override
+    @NotNull
+    public String getName() { return "ip2proxyfile"; }
+
+    @Override
+    public boolean isKeyRequired() { return false; }
+
+    public IP2ProxyFile() {
+        super(IP2ProxyModel.class);
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
+        CompletableFuture<Boolean> retVal = new CompletableFuture<>();
+        try {
+            Database db = getDatabase();
+            IPKey key = IPKey.of(ip);
+            long row = db.find(key);
+            retVal.complete(row != -1L && !db.isUnlisted(row, key.isV6()));
+        } catch (RuntimeException ex) {
+            retVal.completeExceptionally(ex);
+        }
+        return retVal;
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<@NotNull IP2ProxyModel> getRawResponse(@NotNull String ip) {
+        CompletableFuture<IP2ProxyModel> retVal = new CompletableFuture<>();
+        try {
+            Database db = getDatabase();
+            IPKey key = IPKey.of(ip);
+            long row = db.find(key);
+
+            IP2ProxyModel model = new IP2ProxyModel();
+            model.setResponse("OK");
+            if (row == -1L || db.isUnlisted(row, key.isV6())) {
+                model.setCountryCode("-");
+                model.setCountry("-");
+                model.setProxy("NO");
+            } else {
+                model.setCountryCode(db.getCountryCode(row, key.isV6()));
+                model.setCountry(db.getCountryName(row, key.isV6()));
+                model.setProxy("YES");
+            }
+            retVal.complete(model);
+        } catch (RuntimeException ex) {
+            retVal.completeExceptionally(ex);
+        }
+        return retVal;
+    }
+
+    @Override
+    public void load(@NotNull File dataDirectory) {
+        File file = new File(dataDirectory, getSourceConfigNode().node("file").getString("IP2PROXY-LITE-PX1.BIN"));
+        if (!file.exists()) {
+            logger.warn("IP2Proxy database " + file.getAbsolutePath() + " does not exist. Download one from https://lite.ip2location.com/ to use the " + getName() + " source.");
+            return;
+        }
+
+        try {
+            database = new Database(file);
+            if (ConfigUtil.getDebugOrFalse()) {
+                logger.info("Loaded IP2Proxy database " + file.getName() + " (PX" + database.type + ").");
+            }
+        } catch (IOException | RuntimeException ex) {
+            logger.error("Could not load IP2Proxy database " + file.getAbsolutePath(), ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        // Mapped buffers are unmapped when collected, there's no safe way to force it on Java 8
+        database = null;
+    }
+
+    @NotNull
+    private Database getDatabase() {
+        Database db = database;
+        if (db == null) {
+            throw new APIException(true, "Could not get result from " + getName() + " (database is not loaded)");
+        }
+        return db;
+    }
+
+    private static class Database {
+        private final @NotNull ByteBuffer buffer;
+        private final int type;
+        private final int v4Count;
+        private final int v4Base;
+        private final int v6Count;
+        private final int v6Base;
+        private final int v4IndexBase;
+        private final int v6IndexBase;
+        private final int v4RowSize;
+        private final int v6RowSize;
+        private final int countryOffset;
+
+        private Database(@NotNull File file) throws IOException {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "r"); FileChannel channel = raf.getChannel()) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Database is too large to map.");
+                }
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+                mapped.load();
+                buffer = mapped.order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            type = buffer.get(0) & 0xFF;
+            int columns = buffer.get(1) & 0xFF;
+            if (type <= 0 || type >= COUNTRY_POSITION.length || columns <= 0) {
+                throw new IOException("File is not an IP2Proxy BIN database.");
+            }
+            v4Count = buffer.getInt(5);
+            v4Base = buffer.getInt(9);
+            v6Count = buffer.getInt(13);
+            v6Base = buffer.getInt(17);
+            v4IndexBase = buffer.getInt(21);
+            v6IndexBase = buffer.getInt(25);
+            v4RowSize = columns << 2;
+            v6RowSize = 16 + ((columns - 1) << 2);
+            countryOffset = (COUNTRY_POSITION[type] - 1) << 2;
+        }
+
+        /**
+         * Returns the (0-based) file offset of the row containing the IP, or -1.
+         */
+        private long find(@NotNull IPKey key) {
+            return key.isV6() ? findV6(key.getHigh(), key.getLow()) : findV4(key.getLow());
+        }
+
+        private long findV4(long ip) {
+            if (v4Count <= 0) {
+                return -1L;
+            }
+            if (ip == 0xFFFFFFFFL) {
+                ip--;
+            }
+
+            int low = 0;
+            int high = v4Count;
+            if (v4IndexBase > 0) {
+                int index = v4IndexBase - 1 + ((int) (ip >>> 16) << 3);
+                low = buffer.getInt(index);
+                high = buffer.getInt(index + 4);
+            }
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int row = v4Base - 1 + mid * v4RowSize;
+                long from = buffer.getInt(row) & 0xFFFFFFFFL;
+                long to = buffer.getInt(row + v4RowSize) & 0xFFFFFFFFL;
+                if (ip >= from && ip < to) {
+                    return row;
+                }
+                if (ip < from) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return -1L;
+        }
+
+        private long findV6(long ipHigh, long ipLow) {
+            if (v6Count <= 0) {
+                return -1L;
+            }
+            if (ipHigh == -1L && ipLow == -1L) {
+                ipLow--;
+            }
+
+            int low = 0;
+            int high = v6Count;
+            if (v6IndexBase > 0) {
+                int index = v6IndexBase - 1 + ((int) (ipHigh >>> 48) << 3);
+                low = buffer.getInt(index);
+                high = buffer.getInt(index + 4);
+            }
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int row = v6Base - 1 + mid * v6RowSize;
+                // 128-bit addresses are stored little-endian
+                long fromLow = buffer.getLong(row);
+                long fromHigh = buffer.getLong(row + 8);
+                long toLow = buffer.getLong(row + v6RowSize);
+                long toHigh = buffer.getLong(row + v6RowSize + 8);
+                boolean aboveFrom = compare(ipHigh, ipLow, fromHigh, fromLow) >= 0;
+                if (aboveFrom && compare(ipHigh, ipLow, toHigh, toLow) < 0) {
+                    return row;
+                }
+                if (!aboveFrom) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return -1L;
+        }
+
+        private static int compare(long aHigh, long aLow, long bHigh, long bLow) {
+            int retVal = Long.compareUnsigned(aHigh, bHigh);
+            return retVal != 0 ? retVal : Long.compareUnsigned(aLow, bLow);
+        }
+
+        private int countryPointer(long row, boolean v6) {
+            // IPv6 rows have a 16-byte "from" column instead of a 4-byte one
+            return buffer.getInt((int) row + countryOffset + (v6 ? 12 : 0));
+        }
+
+        /**
+         * IP2Proxy uses a country of "-" for addresses which aren't proxies.
+         */
+        private boolean isUnlisted(long row, boolean v6) {
+            int pointer = countryPointer(row, v6);
+            return (buffer.get(pointer) & 0xFF) == 1 && buffer.get(pointer + 1) == '-';
+        }
+
+        @NotNull
+        private String getCountryCode(long row, boolean v6) { return readString(countryPointer(row, v6)); }
+
+        @NotNull
+        private String getCountryName(long row, boolean v6) { return readString(countryPointer(row, v6) + 3); }
+
+        @NotNull
+        private String readString(int pointer) {
+            int len = buffer.get(pointer) & 0xFF;
+            byte[] b = new byte[len];
+            for (int i = 0; i < len; i++) {
+                b[i] = buffer.get(pointer + 1 + i);
+            }
+            return new String(b, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -26,7 +26,7 @@ public class IPHub extends AbstractSource<IPHubModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (model.getError() != null) {
                 throw new APIException(model.getError().contains("key"), "Could not get result from " + getName() + " (" + model.getError() + ")");
             }
@@ -38,7 +38,7 @@ public class IPHub extends AbstractSource<IPHubModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IPHubModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
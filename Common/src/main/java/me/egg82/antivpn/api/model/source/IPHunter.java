@@ -26,7 +26,7 @@ public class IPHunter extends AbstractSource<IPHunterModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!"success".equalsIgnoreCase(model.getStatus())) {
                 throw new APIException(
                         model.getCode() != null && model.getCode().contains("X-Key"),
@@ -41,7 +41,7 @@ public class IPHunter extends AbstractSource<IPHunterModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IPHunterModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
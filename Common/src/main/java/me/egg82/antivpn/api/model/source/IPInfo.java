@@ -26,7 +26,7 @@ public class IPInfo extends AbstractSource<IPInfoModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (model.getError() != null) {
                 throw new APIException(
                         model.getError().getMessage() != null && model.getError().getMessage().contains("token"),
@@ -47,7 +47,7 @@ public class IPInfo extends AbstractSource<IPInfoModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IPInfoModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
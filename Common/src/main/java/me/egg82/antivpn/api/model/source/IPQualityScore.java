@@ -26,7 +26,7 @@ public class IPQualityScore extends AbstractSource<IPQualityScoreModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!model.isSuccess()) {
                 throw new APIException(
                         model.getMessage() != null && model.getMessage().contains("key"),
@@ -53,7 +53,7 @@ public class IPQualityScore extends AbstractSource<IPQualityScoreModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IPQualityScoreModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
@@ -25,7 +25,7 @@ public class IPTrooper extends AbstractSource<IPTrooperModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (model.getCode() == 3) {
                 throw new APIException(false, "Could not get result from " + getName() + " (Request limit reached)");
             }
@@ -37,7 +37,7 @@ public class IPTrooper extends AbstractSource<IPTrooperModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull IPTrooperModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
@@ -0,0 +1,196 @@
+package me.egg82.antivpn.api.model.source;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.api.model.source.models.LocalCIDRModel;
+import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.CIDRTrie;
+import me.egg82.antivpn.core.IPKey;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.utils.ValidationUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Answers from local lists of IPs and CIDR ranges (datacenter ranges, VPN exits, Tor exits, etc.) without any network round-trip.
+ * Every "*.txt" file in the list directory is its own list, one IP or range per line with "#" comments.
+ * Lists are reloaded whenever a file in the directory changes.
+ */
+public class LocalCIDR extends AbstractSource<LocalCIDRModel> {
+    private static final ThreadFactory watcherFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_LocalCIDR_%d").setDaemon(true).build();
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private volatile @NotNull Map<String, CIDRTrie> lists = Collections.emptyMap();
+    private volatile @Nullable File directory = null;
+    private volatile @Nullable WatchService watchService = null;
+    private volatile @Nullable Thread watcher = null;
+
+    @Override
+    @NotNull
+    public String getName() { return "local"; }
+
+    @Override
+    public boolean isKeyRequired() { return false; }
+
+    public LocalCIDR() {
+        super(LocalCIDRModel.class);
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
+        return mapResult(getRawResponse(ip), model -> {
+            if (!model.isListed()) {
+                // A miss on a block-list isn't a "no", let the next source decide
+                throw new NoResultException("IP " + ip + " is not in any local list.");
+            }
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    @NotNull
+    public CompletableFuture<@NotNull LocalCIDRModel> getRawResponse(@NotNull String ip) {
+        // Everything is in memory, so there's no reason to hop onto the source pool
+        CompletableFuture<LocalCIDRModel> retVal = new CompletableFuture<>();
+        if (!ValidationUtil.isValidIp(ip)) {
+            retVal.completeExceptionally(new IllegalArgumentException("ip is invalid."));
+            return retVal;
+        }
+
+        IPKey key = IPKey.of(ip);
+        LocalCIDRModel model = new LocalCIDRModel();
+        for (Map.Entry<String, CIDRTrie> kvp : lists.entrySet()) {
+            String match = kvp.getValue().getMatch(key);
+            if (match != null) {
+                model.setListed(true);
+                model.setList(kvp.getKey());
+                model.setRange(match);
+                break;
+            }
+        }
+        retVal.complete(model);
+        return retVal;
+    }
+
+    @Override
+    public void load(@NotNull File dataDirectory) {
+        File dir = new File(dataDirectory, getSourceConfigNode().node("directory").getString("lists"));
+        if (!dir.exists() && !dir.mkdirs()) {
+            logger.warn("Could not create local list directory " + dir.getAbsolutePath());
+            return;
+        }
+        directory = dir;
+
+        reload();
+
+        try {
+            WatchService service = dir.toPath().getFileSystem().newWatchService();
+            dir.toPath().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            watchService = service;
+            Thread thread = watcherFactory.newThread(() -> watch(service));
+            watcher = thread;
+            thread.start();
+        } catch (IOException ex) {
+            logger.warn("Could not watch local list directory " + dir.getAbsolutePath() + ", lists will only be loaded on reload.", ex);
+        }
+    }
+
+    @Override
+    public void close() {
+        Thread thread = watcher;
+        if (thread != null) {
+            thread.interrupt();
+            watcher = null;
+        }
+        WatchService service = watchService;
+        if (service != null) {
+            try {
+                service.close();
+            } catch (IOException ignored) { }
+            watchService = null;
+        }
+    }
+
+    private void watch(@NotNull WatchService service) {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = service.take();
+                // Editors tend to write files in bursts, let them settle before reloading
+                Thread.sleep(500L);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException ignored) {
+                return;
+            }
+
+            key.pollEvents();
+            reload();
+            if (!key.reset()) {
+                return;
+            }
+        }
+    }
+
+    private void reload() {
+        File dir = directory;
+        if (dir == null) {
+            return;
+        }
+
+        File[] files = dir.listFiles((d, name) -> name.toLowerCase(Locale.ROOT).endsWith(".txt"));
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(files);
+
+        Map<String, CIDRTrie> retVal = new LinkedHashMap<>();
+        int total = 0;
+        for (File file : files) {
+            List<String> entries = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int comment = line.indexOf('#');
+                    if (comment > -1) {
+                        line = line.substring(0, comment);
+                    }
+                    line = line.trim();
+                    if (line.isEmpty()) {
+                        continue;
+                    }
+                    if (ValidationUtil.isValidIp(line) || ValidationUtil.isValidIpRange(line)) {
+                        entries.add(line);
+                    } else if (ConfigUtil.getDebugOrFalse()) {
+                        logger.info("Skipping invalid entry \"" + line + "\" in local list " + file.getName());
+                    }
+                }
+            } catch (IOException ex) {
+                logger.warn("Could not read local list " + file.getName(), ex);
+                continue;
+            }
+
+            String name = file.getName().substring(0, file.getName().length() - 4);
+            retVal.put(name, CIDRTrie.of(entries));
+            total += entries.size();
+        }
+
+        lists = Collections.unmodifiableMap(retVal);
+        if (ConfigUtil.getDebugOrFalse()) {
+            logger.info("Loaded " + total + " entries from " + retVal.size() + " local lists.");
+        }
+    }
+}
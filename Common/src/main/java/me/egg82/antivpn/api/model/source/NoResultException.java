@@ -0,0 +1,14 @@
+package me.egg82.antivpn.api.model.source;
+
+import me.egg82.antivpn.api.APIException;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Thrown by sources which can only give a positive answer (eg. local block-lists) when they have nothing to say about an IP.
+ * This isn't a failure; the source is simply skipped for that IP and not marked as broken.
+ */
+public class NoResultException extends APIException {
+    public NoResultException(@NotNull String message) {
+        super(false, message);
+    }
+}
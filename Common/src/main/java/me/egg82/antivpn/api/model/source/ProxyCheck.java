@@ -28,7 +28,7 @@ public class ProxyCheck extends AbstractSource<ProxyCheckModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!"ok".equalsIgnoreCase(model.getStatus())) {
                 throw new APIException(
                         model.getMessage() != null && model.getMessage().contains("Key"),
@@ -43,7 +43,7 @@ public class ProxyCheck extends AbstractSource<ProxyCheckModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull ProxyCheckModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
@@ -26,7 +26,7 @@ public class Shodan extends AbstractSource<ShodanModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (model.getError() != null) {
                 throw new APIException(model.getError().contains("key"), "Could not get result from " + getName() + " (" + model.getError() + ")");
             }
@@ -47,7 +47,7 @@ public class Shodan extends AbstractSource<ShodanModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull ShodanModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
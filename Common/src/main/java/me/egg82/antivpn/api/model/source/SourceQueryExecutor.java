@@ -0,0 +1,206 @@
+package me.egg82.antivpn.api.model.source;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.utils.FutureUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Long-lived pool that all source queries run on.
+ * Each source gets its own "lane" which caps the number of queries it may have in-flight at once,
+ * so one slow or rate-limited source can't starve the rest of the pool.
+ * Query timeouts start once a query leaves its lane, so time spent waiting for a free slot never counts against a source.
+ */
+public class SourceQueryExecutor {
+    private final @NotNull ThreadPoolExecutor pool;
+    private final int sourceConcurrency;
+    private final long queryTimeout;
+
+    private final @NotNull ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private volatile boolean closed = false;
+
+    public SourceQueryExecutor(int threads, int sourceConcurrency) { this(threads, sourceConcurrency, 0L); }
+
+    /**
+     * @param queryTimeoutMillis how long a query may run before it fails with a TimeoutException, or 0 to never time out
+     */
+    public SourceQueryExecutor(int threads, int sourceConcurrency, long queryTimeoutMillis) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads cannot be <= 0.");
+        }
+        if (sourceConcurrency <= 0) {
+            throw new IllegalArgumentException("sourceConcurrency cannot be <= 0.");
+        }
+
+        if (queryTimeoutMillis < 0L) {
+            throw new IllegalArgumentException("queryTimeoutMillis cannot be < 0.");
+        }
+
+        this.sourceConcurrency = sourceConcurrency;
+        this.queryTimeout = queryTimeoutMillis;
+        this.pool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                30L,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new ThreadFactoryBuilder().setNameFormat("Anti-VPN_Source_%d").setDaemon(true).build()
+        );
+        this.pool.allowCoreThreadTimeOut(true);
+    }
+
+    @NotNull
+    public <T> CompletableFuture<T> supply(@NotNull String sourceName, @NotNull Supplier<T> supplier) {
+        CompletableFuture<T> retVal = new CompletableFuture<>();
+        if (closed) {
+            retVal.completeExceptionally(new RejectedExecutionException("Source query executor is closed."));
+            return retVal;
+        }
+
+        lanes.computeIfAbsent(sourceName, k -> new Lane()).offer(new Query<>(retVal, supplier, queryTimeout));
+        return retVal;
+    }
+
+    /**
+     * Number of queries waiting for a free slot in their source's lane.
+     */
+    public int getQueueDepth(@NotNull String sourceName) {
+        Lane lane = lanes.get(sourceName);
+        return lane != null ? lane.queued.get() : 0;
+    }
+
+    /**
+     * Number of queries currently running (or handed to the pool) for the given source.
+     */
+    public int getActiveCount(@NotNull String sourceName) {
+        Lane lane = lanes.get(sourceName);
+        return lane != null ? lane.running.get() : 0;
+    }
+
+    /**
+     * Total number of queries waiting across every source lane, plus those waiting on a pool thread.
+     */
+    public int getQueueDepth() {
+        int retVal = pool.getQueue().size();
+        for (Lane lane : lanes.values()) {
+            retVal += lane.queued.get();
+        }
+        return retVal;
+    }
+
+    public int getActiveCount() { return pool.getActiveCount(); }
+
+    public int getPoolSize() { return pool.getMaximumPoolSize(); }
+
+    public int getSourceConcurrency() { return sourceConcurrency; }
+
+    public long getQueryTimeout() { return queryTimeout; }
+
+    public long getCompletedCount() { return pool.getCompletedTaskCount(); }
+
+    public boolean isClosed() { return closed; }
+
+    public void close() {
+        closed = true;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(4L, TimeUnit.SECONDS)) {
+                pool.shutdownNow();
+            }
+        } catch (InterruptedException ignored) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        RejectedExecutionException ex = new RejectedExecutionException("Source query executor is closed.");
+        for (Lane lane : lanes.values()) {
+            Query<?> query;
+            while ((query = lane.pending.poll()) != null) {
+                lane.queued.decrementAndGet();
+                query.reject(ex);
+            }
+        }
+        lanes.clear();
+    }
+
+    private class Lane {
+        private final @NotNull Queue<Query<?>> pending = new ConcurrentLinkedQueue<>();
+        private final @NotNull AtomicInteger queued = new AtomicInteger(0);
+        private final @NotNull AtomicInteger running = new AtomicInteger(0);
+
+        private void offer(@NotNull Query<?> query) {
+            queued.incrementAndGet();
+            pending.add(query);
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                int current = running.get();
+                if (current >= sourceConcurrency) {
+                    return;
+                }
+                if (!running.compareAndSet(current, current + 1)) {
+                    continue;
+                }
+
+                Query<?> query = pending.poll();
+                if (query == null) {
+                    running.decrementAndGet();
+                    if (pending.isEmpty()) {
+                        return;
+                    }
+                    continue;
+                }
+                queued.decrementAndGet();
+
+                try {
+                    pool.execute(() -> {
+                        try {
+                            query.run();
+                        } finally {
+                            running.decrementAndGet();
+                            drain();
+                        }
+                    });
+                } catch (RejectedExecutionException ex) {
+                    running.decrementAndGet();
+                    query.reject(ex);
+                }
+            }
+        }
+    }
+
+    private static class Query<T> {
+        private final @NotNull CompletableFuture<T> future;
+        private final @NotNull Supplier<T> supplier;
+        private final long timeout;
+
+        private Query(@NotNull CompletableFuture<T> future, @NotNull Supplier<T> supplier, long timeout) {
+            this.future = future;
+            this.supplier = supplier;
+            this.timeout = timeout;
+        }
+
+        private void run() {
+            if (future.isDone()) { // Cancelled while queued
+                return;
+            }
+            if (timeout > 0L) {
+                FutureUtil.failAfter(future, timeout, TimeUnit.MILLISECONDS);
+            }
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable ex) {
+                future.completeExceptionally(ex);
+            }
+        }
+
+        private void reject(@NotNull Throwable ex) { future.completeExceptionally(ex); }
+    }
+}
@@ -37,7 +37,7 @@ public class Teoh extends AbstractSource<TeohModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (model.getMessage() != null) {
                 throw new APIException(false, "Could not get result from " + getName() + " (" + model.getMessage() + ")");
             }
@@ -49,7 +49,7 @@ public class Teoh extends AbstractSource<TeohModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull TeohModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
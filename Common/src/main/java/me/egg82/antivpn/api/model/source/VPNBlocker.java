@@ -26,7 +26,7 @@ public class VPNBlocker extends AbstractSource<VPNBlockerModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull Boolean> getResult(@NotNull String ip) {
-        return getRawResponse(ip).thenApply(model -> {
+        return mapResult(getRawResponse(ip), model -> {
             if (!"success".equalsIgnoreCase(model.getStatus())) {
                 throw new APIException(model.getMsg() != null && model.getMsg().contains("key"), "Could not get result from " + getName() + " (" + model.getMsg() + ")");
             }
@@ -38,7 +38,7 @@ public class VPNBlocker extends AbstractSource<VPNBlockerModel> {
     @Override
     @NotNull
     public CompletableFuture<@NotNull VPNBlockerModel> getRawResponse(@NotNull String ip) {
-        return CompletableFuture.supplyAsync(() -> {
+        return queryAsync(ip, () -> {
             if (!ValidationUtil.isValidIp(ip)) {
                 throw new IllegalArgumentException("ip is invalid.");
             }
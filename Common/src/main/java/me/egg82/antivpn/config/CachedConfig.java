@@ -3,8 +3,11 @@ package me.egg82.antivpn.config;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
+import me.egg82.antivpn.core.CIDRTrie;
 import me.egg82.antivpn.messaging.MessagingService;
+import me.egg82.antivpn.messaging.PartitionScheme;
 import me.egg82.antivpn.storage.StorageService;
+import me.egg82.antivpn.storage.TieredStorage;
 import me.egg82.antivpn.utils.TimeUtil;
 import org.jetbrains.annotations.NotNull;
 
@@ -22,11 +25,24 @@ public class CachedConfig {
     @NotNull
     public ImmutableList<@NotNull StorageService> getStorage() { return storage; }
 
+    private @NotNull TieredStorage tieredStorage = new TieredStorage(ImmutableList.of(), true, false, true, null);
+
+    /**
+     * The storage services in read order. Use this for lookups, and {@link #getStorage()} for writes.
+     */
+    @NotNull
+    public TieredStorage getTieredStorage() { return tieredStorage; }
+
     private @NotNull ImmutableList<@NotNull MessagingService> messaging = ImmutableList.of();
 
     @NotNull
     public ImmutableList<@NotNull MessagingService> getMessaging() { return messaging; }
 
+    private @NotNull PartitionScheme partitions = PartitionScheme.disabled();
+
+    @NotNull
+    public PartitionScheme getPartitions() { return partitions; }
+
     private long sourceCacheTime = new TimeUtil.Time(6L, TimeUnit.HOURS).getMillis();
 
     public long getSourceCacheTime() { return sourceCacheTime; }
@@ -35,11 +51,55 @@ public class CachedConfig {
 
     public long getMCLeaksCacheTime() { return mcleaksCacheTime; }
 
+    private boolean purgeEnabled = true;
+
+    public boolean getPurgeEnabled() { return purgeEnabled; }
+
+    private long purgeInterval = new TimeUtil.Time(1L, TimeUnit.HOURS).getMillis();
+
+    public long getPurgeInterval() { return purgeInterval; }
+
+    private int purgeBatchSize = 500;
+
+    public int getPurgeBatchSize() { return purgeBatchSize; }
+
+    private long purgeBatchDelay = new TimeUtil.Time(1L, TimeUnit.SECONDS).getMillis();
+
+    public long getPurgeBatchDelay() { return purgeBatchDelay; }
+
+    private boolean warmUpEnabled = true;
+
+    public boolean getWarmUpEnabled() { return warmUpEnabled; }
+
+    private int warmUpIps = 10000;
+
+    public int getWarmUpIps() { return warmUpIps; }
+
+    private int warmUpPlayers = 10000;
+
+    public int getWarmUpPlayers() { return warmUpPlayers; }
+
+    private int warmUpBatchSize = 500;
+
+    public int getWarmUpBatchSize() { return warmUpBatchSize; }
+
+    private int warmUpRate = 2000;
+
+    public int getWarmUpRate() { return warmUpRate; }
+
     private @NotNull ImmutableSet<@NotNull String> ignoredIps = ImmutableSet.of();
 
     @NotNull
     public ImmutableSet<@NotNull String> getIgnoredIps() { return ignoredIps; }
 
+    private @NotNull CIDRTrie ignoredIpTrie = CIDRTrie.empty();
+
+    /**
+     * The ignored IPs and ranges, compiled for lookups in O(prefix length).
+     */
+    @NotNull
+    public CIDRTrie getIgnoredIpTrie() { return ignoredIpTrie; }
+
     private @NotNull TimeUtil.Time cacheTime = new TimeUtil.Time(1L, TimeUnit.MINUTES);
 
     @NotNull
@@ -58,6 +118,10 @@ public class CachedConfig {
 
     public int getThreads() { return threads; }
 
+    private int sourceConcurrency = 4;
+
+    public int getSourceConcurrency() { return sourceConcurrency; }
+
     private long timeout = 5000L;
 
     public long getTimeout() { return timeout; }
@@ -91,6 +155,14 @@ public class CachedConfig {
 
     public double getVPNAlgorithmConsensus() { return vpnAlgorithmConsensus; }
 
+    private long hedgeDelay = new TimeUtil.Time(500L, TimeUnit.MILLISECONDS).getMillis();
+
+    public long getHedgeDelay() { return hedgeDelay; }
+
+    private int hedgeFanout = 1;
+
+    public int getHedgeFanout() { return hedgeFanout; }
+
     private @NotNull String mcleaksKey = "";
 
     @NotNull
@@ -142,12 +214,24 @@ public class CachedConfig {
             return this;
         }
 
+        @NotNull
+        public CachedConfig.Builder tieredStorage(@NotNull TieredStorage value) {
+            values.tieredStorage = value;
+            return this;
+        }
+
         @NotNull
         public CachedConfig.Builder messaging(@NotNull List<@NotNull MessagingService> value) {
             values.messaging = ImmutableList.copyOf(value);
             return this;
         }
 
+        @NotNull
+        public CachedConfig.Builder partitions(@NotNull PartitionScheme value) {
+            values.partitions = value;
+            return this;
+        }
+
         @NotNull
         public CachedConfig.Builder sourceCacheTime(@NotNull TimeUtil.Time value) {
             if (value.getMillis() <= 0L) {
@@ -171,6 +255,89 @@ public class CachedConfig {
         @NotNull
         public CachedConfig.Builder ignoredIps(@NotNull Collection<@NotNull String> value) {
             values.ignoredIps = ImmutableSet.copyOf(value);
+            values.ignoredIpTrie = CIDRTrie.of(values.ignoredIps);
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder purgeEnabled(boolean value) {
+            values.purgeEnabled = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder purgeInterval(@NotNull TimeUtil.Time value) {
+            if (value.getMillis() <= 0L) {
+                throw new IllegalArgumentException("value cannot be <= 0.");
+            }
+
+            values.purgeInterval = value.getMillis();
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder purgeBatchSize(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("value cannot be <= 0.");
+            }
+
+            values.purgeBatchSize = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder purgeBatchDelay(@NotNull TimeUtil.Time value) {
+            if (value.getMillis() < 0L) {
+                throw new IllegalArgumentException("value cannot be < 0.");
+            }
+
+            values.purgeBatchDelay = value.getMillis();
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder warmUpEnabled(boolean value) {
+            values.warmUpEnabled = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder warmUpIps(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("value cannot be < 0.");
+            }
+
+            values.warmUpIps = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder warmUpPlayers(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("value cannot be < 0.");
+            }
+
+            values.warmUpPlayers = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder warmUpBatchSize(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("value cannot be <= 0.");
+            }
+
+            values.warmUpBatchSize = value;
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder warmUpRate(int value) {
+            if (value < 0) {
+                throw new IllegalArgumentException("value cannot be < 0.");
+            }
+
+            values.warmUpRate = value;
             return this;
         }
 
@@ -194,6 +361,16 @@ public class CachedConfig {
             return this;
         }
 
+        @NotNull
+        public CachedConfig.Builder sourceConcurrency(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("value cannot be <= 0.");
+            }
+
+            values.sourceConcurrency = value;
+            return this;
+        }
+
         @NotNull
         public CachedConfig.Builder timeout(long value) {
             if (value <= 0L) {
@@ -246,6 +423,25 @@ public class CachedConfig {
             return this;
         }
 
+        @NotNull
+        public CachedConfig.Builder hedgeDelay(@NotNull TimeUtil.Time value) {
+            if (value.getMillis() < 0L) {
+                throw new IllegalArgumentException("value cannot be < 0.");
+            }
+
+            values.hedgeDelay = value.getMillis();
+            return this;
+        }
+
+        @NotNull
+        public CachedConfig.Builder hedgeFanout(int value) {
+            if (value <= 0) {
+                throw new IllegalArgumentException("value cannot be <= 0.");
+            }
+            values.hedgeFanout = value;
+            return this;
+        }
+
         @NotNull
         public CachedConfig.Builder mcleaksKey(@NotNull String value) {
             values.mcleaksKey = value;
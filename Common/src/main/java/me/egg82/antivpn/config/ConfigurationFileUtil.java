@@ -1,6 +1,7 @@
 package me.egg82.antivpn.config;
 
 import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
+import me.egg82.antivpn.api.model.source.AbstractSource;
 import me.egg82.antivpn.api.model.source.Source;
 import me.egg82.antivpn.api.model.source.SourceManager;
 import me.egg82.antivpn.api.model.source.models.SourceModel;
@@ -105,16 +106,32 @@ public class ConfigurationFileUtil {
 
         AlgorithmMethod vpnAlgorithmMethod = getVpnAlgorithmMethod(config, debug, console);
 
+        List<StorageService> storage = getStorage(config, dataDirectory, debug, console);
+
+        PartitionScheme partitions = getPartitions(config, debug, console);
+
         CachedConfig cachedConfig = CachedConfig.builder()
                 .debug(debug)
                 .language(language)
-                .storage(getStorage(config, dataDirectory, debug, console))
-                .messaging(getMessaging(config, serverId, messagingHandler, new File(dataDirectory, "packets"), debug, console))
+                .storage(storage)
+                .tieredStorage(getTieredStorage(config, storage, debug, console))
+                .messaging(getMessaging(config, serverId, messagingHandler, new File(dataDirectory, "packets"), partitions, debug, console))
+                .partitions(partitions)
                 .sourceCacheTime(getSourceCacheTime(config, debug, console))
                 .mcleaksCacheTime(getMcLeaksCacheTime(config, debug, console))
+                .purgeEnabled(getPurgeEnabled(config, debug, console))
+                .purgeInterval(getPurgeInterval(config, debug, console))
+                .purgeBatchSize(Math.max(1, config.node("storage", "settings", "purge", "batch-size").getInt(500)))
+                .purgeBatchDelay(getPurgeBatchDelay(config, debug, console))
+                .warmUpEnabled(getWarmUpEnabled(config, debug, console))
+                .warmUpIps(Math.max(0, config.node("storage", "settings", "warm-up", "ips").getInt(10000)))
+                .warmUpPlayers(Math.max(0, config.node("storage", "settings", "warm-up", "players").getInt(10000)))
+                .warmUpBatchSize(Math.max(1, config.node("storage", "settings", "warm-up", "batch-size").getInt(500)))
+                .warmUpRate(Math.max(0, config.node("storage", "settings", "warm-up", "rate").getInt(2000)))
                 .cacheTime(getCacheTime(config, debug, console))
                 .ignoredIps(getIgnoredIps(config, debug, console))
                 .threads(config.node("connection", "threads").getInt(4))
+                .sourceConcurrency(config.node("connection", "source-concurrency").getInt(4))
                 .timeout(config.node("connection", "timeout").getLong(5000L))
                 .vpnKickMessage(config.node("action", "vpn", "kick-message").getString("<red>Please disconnect from your proxy or VPN before re-joining!</red>"))
                 .vpnActionCommands(getVpnActionCommands(config, debug, console))
@@ -122,6 +139,8 @@ public class ConfigurationFileUtil {
                 .mcleaksActionCommands(getMcLeaksActionCommands(config, debug, console))
                 .vpnAlgorithmMethod(vpnAlgorithmMethod)
                 .vpnAlgorithmConsensus(getVpnAlgorithmConsensus(config, vpnAlgorithmMethod == AlgorithmMethod.CONSESNSUS, debug, console))
+                .hedgeDelay(getHedgeDelay(config, debug, console))
+                .hedgeFanout(Math.max(1, config.node("action", "vpn", "algorithm", "hedge-fanout").getInt(1)))
                 .mcleaksKey(config.node("mcleaks", "key").getString(""))
                 .adminPermissionNode(config.node("permissions", "admin").getString("avpn.admin"))
                 .bypassPermissionNode(config.node("permissions", "bypass").getString("avpn.bypass"))
@@ -132,15 +151,20 @@ public class ConfigurationFileUtil {
 
         HiddenConfig hiddenConfig = HiddenConfig.builder()
                 .doPacketDump(config.node("debug", "packet-dump").getBoolean(false))
+                .packetDictionary(config.node("debug", "packet-dictionary").getBoolean(true) ? PacketDictionary.load(new File(dataDirectory, "packets")) : null)
                 .build();
 
         ConfigUtil.setConfiguration(config, cachedConfig, hiddenConfig);
 
-        setSources(config, debug, console, sourceManager);
+        setSources(config, dataDirectory, debug, console, sourceManager);
 
         if (debug) {
             console.sendMessage(MessageKey.CONFIG__SOURCE_THREADS, "{threads}", String.valueOf(cachedConfig.getThreads()));
+            console.sendMessage("<c2>Max concurrent queries per source:</c2> <c1>" + cachedConfig.getSourceConcurrency() + "</c1>");
             console.sendMessage(MessageKey.CONFIG__SOURCE_TIMEOUT, "{timeout}", String.valueOf(cachedConfig.getTimeout()));
+            if (cachedConfig.getVPNAlgorithmMethod() == AlgorithmMethod.HEDGED_CASCADE) {
+                console.sendMessage("<c2>Hedge fan-out:</c2> <c1>" + cachedConfig.getHedgeFanout() + "</c1>");
+            }
             console.sendMessage(MessageKey.CONFIG__VPN_KICK_MESSAGE, "{message}", cachedConfig.getVPNKickMessage());
             console.sendMessage(MessageKey.CONFIG__MCLEAKS_KICK_MESSAGE, "{message}", cachedConfig.getMCLeaksKickMessage());
             if (!cachedConfig.getMcLeaksKey().isEmpty()) {
@@ -205,6 +229,10 @@ public class ConfigurationFileUtil {
         List<@NotNull StorageService> retVal = new ArrayList<>();
 
         PoolSettings poolSettings = new PoolSettings(config.node("storage", "settings"));
+        WriteBehindSettings writeBehindSettings = new WriteBehindSettings(config.node("storage", "settings", "write-behind"));
+        if (debug) {
+            console.sendMessage("<c2>Storage write-behind:</c2> <c1>" + (writeBehindSettings.enabled ? writeBehindSettings.batchSize + " per batch, every " + writeBehindSettings.flushInterval + "ms, max " + writeBehindSettings.maxPending + " pending" : "disabled") + "</c1>");
+        }
         for (Map.Entry<Object, ? extends ConfigurationNode> kvp : config.node("storage", "engines").childrenMap().entrySet()) {
             StorageService service = getStorageOf((String) kvp.getKey(), kvp.getValue(), dataDirectory, poolSettings, debug, console);
             if (service == null) {
@@ -214,6 +242,9 @@ public class ConfigurationFileUtil {
             if (debug) {
                 console.sendMessage("<c2>Added storage:</c2> <c1>" + service.getName() + " (" + service.getClass().getSimpleName() + ")</c1>");
             }
+            if (writeBehindSettings.enabled) {
+                service = new WriteBehindStorageService(service, writeBehindSettings.batchSize, writeBehindSettings.flushInterval, writeBehindSettings.maxPending);
+            }
             retVal.add(service);
         }
 
@@ -254,13 +285,17 @@ public class ConfigurationFileUtil {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
                 try {
-                    return MySQL55StorageService.builder(name)
+                    MySQL55StorageService.Builder builder = MySQL55StorageService.builder(name)
                             .url(url.address, url.port, connectionNode.node("database").getString("anti_vpn"))
                             .credentials(connectionNode.node("username").getString(""), connectionNode.node("password").getString(""))
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
-                            .build();
+                            .maxReplicaLag(getMaxReplicaLag(connectionNode, name, debug, console));
+                    for (AddressPort replica : getReplicas(connectionNode, url.port, name, debug, console)) {
+                        builder.replica(replica.address, replica.port);
+                    }
+                    return builder.build();
                 } catch (Exception ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
                 }
@@ -281,13 +316,17 @@ public class ConfigurationFileUtil {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
                 try {
-                    return MySQLStorageService.builder(name)
+                    MySQLStorageService.Builder builder = MySQLStorageService.builder(name)
                             .url(url.address, url.port, connectionNode.node("database").getString("anti_vpn"))
                             .credentials(connectionNode.node("username").getString(""), connectionNode.node("password").getString(""))
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
-                            .build();
+                            .maxReplicaLag(getMaxReplicaLag(connectionNode, name, debug, console));
+                    for (AddressPort replica : getReplicas(connectionNode, url.port, name, debug, console)) {
+                        builder.replica(replica.address, replica.port);
+                    }
+                    return builder.build();
                 } catch (Exception ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
                 }
@@ -308,13 +347,17 @@ public class ConfigurationFileUtil {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
                 try {
-                    return MariaDBStorageService.builder(name)
+                    MariaDBStorageService.Builder builder = MariaDBStorageService.builder(name)
                             .url(url.address, url.port, connectionNode.node("database").getString("anti_vpn"))
                             .credentials(connectionNode.node("username").getString(""), connectionNode.node("password").getString(""))
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
-                            .build();
+                            .maxReplicaLag(getMaxReplicaLag(connectionNode, name, debug, console));
+                    for (AddressPort replica : getReplicas(connectionNode, url.port, name, debug, console)) {
+                        builder.replica(replica.address, replica.port);
+                    }
+                    return builder.build();
                 } catch (Exception ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
                 }
@@ -335,13 +378,17 @@ public class ConfigurationFileUtil {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
                 try {
-                    return PostgreSQLStorageService.builder(name)
+                    PostgreSQLStorageService.Builder builder = PostgreSQLStorageService.builder(name)
                             .url(url.address, url.port, connectionNode.node("database").getString("anti_vpn"))
                             .credentials(connectionNode.node("username").getString(""), connectionNode.node("password").getString(""))
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
-                            .build();
+                            .maxReplicaLag(getMaxReplicaLag(connectionNode, name, debug, console));
+                    for (AddressPort replica : getReplicas(connectionNode, url.port, name, debug, console)) {
+                        builder.replica(replica.address, replica.port);
+                    }
+                    return builder.build();
                 } catch (Exception ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
                 }
@@ -359,9 +406,15 @@ public class ConfigurationFileUtil {
                 if (debug) {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
+                boolean tuned = isTuned(connectionNode, name, debug, console);
+                int cacheSize = Math.max(0, connectionNode.node("cache-size").getInt(65536));
                 try {
-                    return H2StorageService.builder(name)
-                            .file(new File(dataDirectory, connectionNode.node("file").getString("anti_vpn")))
+                    H2StorageService.Builder builder = H2StorageService.builder(name)
+                            .file(new File(dataDirectory, connectionNode.node("file").getString("anti_vpn")));
+                    if (tuned) {
+                        builder.tuned(cacheSize, 100L);
+                    }
+                    return builder
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
@@ -383,9 +436,16 @@ public class ConfigurationFileUtil {
                 if (debug) {
                     console.sendMessage("<c2>Setting options for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + options.replace("&", "&\\") + "</c1>");
                 }
+                boolean tuned = isTuned(connectionNode, name, debug, console);
+                int cacheSize = Math.max(0, connectionNode.node("cache-size").getInt(65536));
+                long mmapSize = Math.max(0L, connectionNode.node("mmap-size").getLong(256L)) * 1024L * 1024L;
                 try {
-                    return SQLiteStorageService.builder(name)
-                            .file(new File(dataDirectory, connectionNode.node("file").getString("anti_vpn.db")))
+                    SQLiteStorageService.Builder builder = SQLiteStorageService.builder(name)
+                            .file(new File(dataDirectory, connectionNode.node("file").getString("anti_vpn.db")));
+                    if (tuned) {
+                        builder.tuned(cacheSize, mmapSize);
+                    }
+                    return builder
                             .options(options)
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, poolSettings.timeout)
@@ -409,6 +469,7 @@ public class ConfigurationFileUtil {
             @NotNull UUID serverId,
             @NotNull MessagingHandler handler,
             @NotNull File packetDirectory,
+            @NotNull PartitionScheme partitions,
             boolean debug,
             @NotNull LocalizedCommandSender<M, B> console
     ) {
@@ -416,7 +477,7 @@ public class ConfigurationFileUtil {
 
         PoolSettings poolSettings = new PoolSettings(config.node("messaging", "settings"));
         for (Map.Entry<Object, ? extends ConfigurationNode> kvp : config.node("messaging", "engines").childrenMap().entrySet()) {
-            MessagingService service = getMessagingOf((String) kvp.getKey(), kvp.getValue(), serverId, handler, packetDirectory, poolSettings, debug, console);
+            MessagingService service = getMessagingOf((String) kvp.getKey(), kvp.getValue(), serverId, handler, packetDirectory, poolSettings, partitions, debug, console);
             if (service == null) {
                 continue;
             }
@@ -438,6 +499,7 @@ public class ConfigurationFileUtil {
             @NotNull MessagingHandler handler,
             @NotNull File packetDirectory,
             @NotNull PoolSettings poolSettings,
+            @NotNull PartitionScheme partitions,
             boolean debug,
             @NotNull LocalizedCommandSender<M, B> console
     ) {
@@ -463,6 +525,8 @@ public class ConfigurationFileUtil {
                             .url(url.address, url.port, connectionNode.node("v-host").getString("/"))
                             .credentials(connectionNode.node("username").getString("guest"), connectionNode.node("password").getString("guest"))
                             .timeout((int) poolSettings.timeout)
+                            .poolSize(poolSettings.maxPoolSize)
+                            .partitions(partitions)
                             .build();
                 } catch (IOException | TimeoutException ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
@@ -480,6 +544,7 @@ public class ConfigurationFileUtil {
                             .credentials(connectionNode.node("password").getString(""))
                             .poolSize(poolSettings.minPoolSize, poolSettings.maxPoolSize)
                             .life(poolSettings.maxLifetime, (int) poolSettings.timeout)
+                            .partitions(partitions)
                             .build();
                 } catch (JedisException ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
@@ -496,6 +561,7 @@ public class ConfigurationFileUtil {
                             .url(url.address, url.port)
                             .credentials(connectionNode.node("file").getString(""))
                             .life((int) poolSettings.timeout)
+                            .partitions(partitions)
                             .build();
                 } catch (InterruptedException ex) {
                     logger.error(console.getLocalizedText(MessageKey.ERROR__CONFIG__NO_ENGINE, "{name}", name), ex);
@@ -513,6 +579,35 @@ public class ConfigurationFileUtil {
         return null;
     }
 
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> PartitionScheme getPartitions(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        int count = config.node("messaging", "settings", "partitions").getInt(0);
+        List<Integer> subscribed;
+        try {
+            subscribed = config.node("messaging", "settings", "subscribe").getList(Integer.class, new ArrayList<>());
+        } catch (SerializationException ex) {
+            logger.error(ex.getClass().getName() + ": " + ex.getMessage(), ex);
+            subscribed = new ArrayList<>();
+        }
+
+        PartitionScheme retVal;
+        try {
+            retVal = PartitionScheme.of(count, subscribed);
+        } catch (IllegalArgumentException ex) {
+            console.sendMessage("<c9>messaging.settings.partitions is invalid. " + ex.getMessage() + " Sending every packet to every server.</c9>");
+            retVal = PartitionScheme.disabled();
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Messaging partitions:</c2> <c1>" + (retVal.isEnabled() ? retVal.getSubscribed() + " of " + retVal.getCount() : "disabled") + "</c1>");
+        }
+        return retVal;
+    }
+
     @NotNull
     private static <M extends LocalizedCommandSender<M, B>, B> TimeUtil.Time getSourceCacheTime(
             @NotNull ConfigurationNode config,
@@ -549,6 +644,150 @@ public class ConfigurationFileUtil {
         return retVal;
     }
 
+    @Nullable
+    private static <M extends LocalizedCommandSender<M, B>, B> KnownKeyFilter getKnownKeyFilter(
+            @NotNull ConfigurationNode config,
+            @NotNull List<@NotNull StorageService> storage,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        ConfigurationNode filterNode = config.node("storage", "settings", "filter");
+        if (!filterNode.node("enabled").getBoolean(false)) {
+            if (debug) {
+                console.sendMessage("<c2>Storage lookup filter:</c2> <c1>disabled</c1>");
+            }
+            return null;
+        }
+
+        int expectedEntries = Math.max(1000, filterNode.node("expected-entries").getInt(1000000));
+        double fpp = filterNode.node("false-positive-rate").getDouble(0.01d);
+        if (fpp <= 0.0d || fpp >= 1.0d) {
+            console.sendMessage("<c2>storage.settings.filter.false-positive-rate must be between 0 and 1. Using default value.<c2>");
+            fpp = 0.01d;
+        }
+        for (StorageService service : storage) {
+            if (!TieredStorage.isLocal(service)) {
+                console.sendMessage("<c9>Storage lookup filter is enabled with a remote storage engine. Results stored by other servers will be missed unless they are received through messaging.</c9>");
+                break;
+            }
+        }
+        if (debug) {
+            console.sendMessage("<c2>Storage lookup filter:</c2> <c1>" + expectedEntries + " entries at " + fpp + " false-positive rate</c1>");
+        }
+
+        KnownKeyFilter retVal = new KnownKeyFilter(expectedEntries, fpp);
+        retVal.load(storage, 1000);
+        return retVal;
+    }
+
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> TieredStorage getTieredStorage(
+            @NotNull ConfigurationNode config,
+            @NotNull List<@NotNull StorageService> storage,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        ConfigurationNode tieredNode = config.node("storage", "settings", "tiered");
+        TieredStorage retVal = new TieredStorage(
+                storage,
+                tieredNode.node("local-first").getBoolean(false),
+                tieredNode.node("concurrent").getBoolean(false),
+                tieredNode.node("promote").getBoolean(true),
+                getKnownKeyFilter(config, storage, debug, console)
+        );
+
+        if (debug) {
+            StringBuilder order = new StringBuilder();
+            for (StorageService service : retVal.getTiers()) {
+                if (order.length() > 0) {
+                    order.append(", ");
+                }
+                order.append(service.getName()).append(TieredStorage.isLocal(service) ? " (local)" : "");
+            }
+            console.sendMessage("<c2>Storage read order:</c2> <c1>" + order + "</c1>");
+            console.sendMessage("<c2>Storage reads:</c2> <c1>" + (retVal.isConcurrent() ? "concurrent" : "sequential") + (retVal.isPromote() ? ", promoting hits" : "") + "</c1>");
+        }
+        return retVal;
+    }
+
+    private static <M extends LocalizedCommandSender<M, B>, B> boolean getPurgeEnabled(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        boolean retVal = config.node("storage", "settings", "purge", "enabled").getBoolean(true);
+        if (debug) {
+            console.sendMessage("<c2>Storage purge:</c2> <c1>" + (retVal ? "enabled" : "disabled") + "</c1>");
+        }
+        return retVal;
+    }
+
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> TimeUtil.Time getPurgeInterval(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        TimeUtil.Time retVal = TimeUtil.getTime(config.node("storage", "settings", "purge", "interval").getString("1hour"));
+        if (retVal == null || retVal.getMillis() <= 0L) {
+            console.sendMessage("<c2>storage.settings.purge.interval is not a valid time pattern. Using default value.<c2>");
+            retVal = new TimeUtil.Time(1L, TimeUnit.HOURS);
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Storage purge interval:</c2> <c1>" + retVal.getMillis() + "ms (" + retVal.getTime() + " " + retVal.getUnit().name() + ")</c1>");
+        }
+        return retVal;
+    }
+
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> TimeUtil.Time getHedgeDelay(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        TimeUtil.Time retVal = TimeUtil.getTime(config.node("action", "vpn", "algorithm", "hedge-delay").getString("500ms"));
+        if (retVal == null) {
+            console.sendMessage("<c2>action.vpn.algorithm.hedge-delay is not a valid time pattern. Using default value.<c2>");
+            retVal = new TimeUtil.Time(500L, TimeUnit.MILLISECONDS);
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Hedge delay:</c2> <c1>" + retVal.getMillis() + "ms (" + retVal.getTime() + " " + retVal.getUnit().name() + ")</c1>");
+        }
+        return retVal;
+    }
+
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> TimeUtil.Time getPurgeBatchDelay(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        TimeUtil.Time retVal = TimeUtil.getTime(config.node("storage", "settings", "purge", "batch-delay").getString("1second"));
+        if (retVal == null) {
+            console.sendMessage("<c2>storage.settings.purge.batch-delay is not a valid time pattern. Using default value.<c2>");
+            retVal = new TimeUtil.Time(1L, TimeUnit.SECONDS);
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Storage purge batch delay:</c2> <c1>" + retVal.getMillis() + "ms (" + retVal.getTime() + " " + retVal.getUnit().name() + ")</c1>");
+        }
+        return retVal;
+    }
+
+    private static <M extends LocalizedCommandSender<M, B>, B> boolean getWarmUpEnabled(
+            @NotNull ConfigurationNode config,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        boolean retVal = config.node("storage", "settings", "warm-up", "enabled").getBoolean(true);
+        if (debug) {
+            console.sendMessage("<c2>Cache warm-up:</c2> <c1>" + (retVal ? "enabled" : "disabled") + "</c1>");
+        }
+        return retVal;
+    }
+
     @NotNull
     private static <M extends LocalizedCommandSender<M, B>, B> TimeUtil.Time getCacheTime(
             @NotNull ConfigurationNode config,
@@ -687,6 +926,7 @@ public class ConfigurationFileUtil {
     @SuppressWarnings("unchecked")
     private static <M extends LocalizedCommandSender<M, B>, B> void setSources(
             @NotNull ConfigurationNode config,
+            @NotNull File dataDirectory,
             boolean debug,
             @NotNull LocalizedCommandSender<M, B> console,
             @NotNull SourceManager sourceManager
@@ -759,6 +999,9 @@ public class ConfigurationFileUtil {
         for (int i = 0; i < order.size(); i++) {
             String s = order.get(i);
             Source<SourceModel> source = initializedSources.get(s);
+            if (source instanceof AbstractSource) {
+                ((AbstractSource<?>) source).load(dataDirectory);
+            }
             sourceManager.deregisterSource(s);
             sourceManager.registerSource(source, i);
             if (debug) {
@@ -878,4 +1121,95 @@ public class ConfigurationFileUtil {
 
         public long getTimeout() { return timeout; }
     }
+
+    @NotNull
+    private static <M extends LocalizedCommandSender<M, B>, B> List<@NotNull AddressPort> getReplicas(
+            @NotNull ConfigurationNode connectionNode,
+            int defaultPort,
+            @NotNull String name,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) throws SerializationException {
+        List<AddressPort> retVal = new ArrayList<>();
+        List<String> replicas = connectionNode.node("replicas").getList(String.class, new ArrayList<>());
+        for (String replica : replicas) {
+            if (replica == null || replica.isEmpty()) {
+                continue;
+            }
+            AddressPort url = new AddressPort(connectionNode.key() + ".replicas", replica, defaultPort, console);
+            if (debug) {
+                console.sendMessage("<c2>Adding read replica</c2> <c1>" + url.getAddress() + ":" + url.getPort() + "</c1> <c2>to engine</c2> <c1>" + name + "</c1>");
+            }
+            retVal.add(url);
+        }
+        return retVal;
+    }
+
+    private static <M extends LocalizedCommandSender<M, B>, B> long getMaxReplicaLag(
+            @NotNull ConfigurationNode connectionNode,
+            @NotNull String name,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        TimeUtil.Time retVal = TimeUtil.getTime(connectionNode.node("max-replica-lag").getString("5seconds"));
+        if (retVal == null || retVal.getMillis() <= 0L) {
+            console.sendMessage("<c2>" + connectionNode.key() + ".max-replica-lag is not a valid time pattern. Using default value.<c2>");
+            retVal = new TimeUtil.Time(5L, TimeUnit.SECONDS);
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Max replica lag for engine</c2> <c1>" + name + "</c1><c2>:</c2> <c1>" + retVal.getMillis() + "ms</c1>");
+        }
+        return retVal.getMillis();
+    }
+
+    private static <M extends LocalizedCommandSender<M, B>, B> boolean isTuned(
+            @NotNull ConfigurationNode connectionNode,
+            @NotNull String name,
+            boolean debug,
+            @NotNull LocalizedCommandSender<M, B> console
+    ) {
+        String profile = connectionNode.node("profile").getString("performance");
+        boolean retVal;
+        if ("performance".equalsIgnoreCase(profile)) {
+            retVal = true;
+        } else if ("default".equalsIgnoreCase(profile)) {
+            retVal = false;
+        } else {
+            console.sendMessage("<c2>Unknown profile</c2> <c1>" + profile + "</c1> <c2>in engine</c2> <c1>" + name + "</c1><c2>. Using performance.</c2>");
+            retVal = true;
+        }
+
+        if (debug) {
+            console.sendMessage("<c2>Setting profile for engine</c2> <c1>" + name + "</c1> <c2>to</c2> <c1>" + (retVal ? "performance" : "default") + "</c1>");
+        }
+        return retVal;
+    }
+
+    private static class WriteBehindSettings {
+        private final boolean enabled;
+        private final int batchSize;
+        private final long flushInterval;
+        private final int maxPending;
+
+        public WriteBehindSettings(ConfigurationNode settingsNode) {
+            enabled = settingsNode.node("enabled").getBoolean(true);
+            batchSize = Math.max(1, settingsNode.node("batch-size").getInt(100));
+            maxPending = Math.max(batchSize, settingsNode.node("max-pending").getInt(10000));
+
+            TimeUtil.Time f = TimeUtil.getTime(settingsNode.node("flush-interval").getString("1second"));
+            if (f == null || f.getMillis() <= 0L) {
+                f = new TimeUtil.Time(1L, TimeUnit.SECONDS);
+            }
+            flushInterval = f.getMillis();
+        }
+
+        public boolean isEnabled() { return enabled; }
+
+        public int getBatchSize() { return batchSize; }
+
+        public long getFlushInterval() { return flushInterval; }
+
+        public int getMaxPending() { return maxPending; }
+    }
 }
@@ -15,6 +15,12 @@ import java.util.concurrent.TimeUnit;
 public class ConfigurationVersionUtil {
     private ConfigurationVersionUtil() { }
 
+    /**
+     * The version the last migration step produces.
+     * The bundled config.yml must be at this version, or a fresh config would be migrated (and backed up) on first load.
+     */
+    public static final double CURRENT_VERSION = 5.15d;
+
     public static void conformVersion(
             @NotNull ConfigurationLoader<CommentedConfigurationNode> loader,
             @NotNull CommentedConfigurationNode config,
@@ -76,6 +82,42 @@ public class ConfigurationVersionUtil {
         if (config.node("version").getDouble() == 5.1d) {
             to52(config);
         }
+        if (config.node("version").getDouble() == 5.2d) {
+            to53(config);
+        }
+        if (config.node("version").getDouble() == 5.3d) {
+            to54(config);
+        }
+        if (config.node("version").getDouble() == 5.4d) {
+            to55(config);
+        }
+        if (config.node("version").getDouble() == 5.5d) {
+            to56(config);
+        }
+        if (config.node("version").getDouble() == 5.6d) {
+            to57(config);
+        }
+        if (config.node("version").getDouble() == 5.7d) {
+            to58(config);
+        }
+        if (config.node("version").getDouble() == 5.8d) {
+            to59(config);
+        }
+        if (config.node("version").getDouble() == 5.9d) {
+            to511(config);
+        }
+        if (config.node("version").getDouble() == 5.11d) {
+            to512(config);
+        }
+        if (config.node("version").getDouble() == 5.12d) {
+            to513(config);
+        }
+        if (config.node("version").getDouble() == 5.13d) {
+            to514(config);
+        }
+        if (config.node("version").getDouble() == 5.14d) {
+            to515(config);
+        }
 
         if (config.node("version").getDouble() != oldVersion) {
             File backupFile = new File(fileOnDisk.getParent(), fileOnDisk.getName() + ".bak");
@@ -715,4 +757,156 @@ public class ConfigurationVersionUtil {
         // Version
         config.node("version").set(5.2d);
     }
+
+    private static void to53(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add connection->source-concurrency
+        config.node("connection", "source-concurrency").set(4);
+
+        // Version
+        config.node("version").set(5.3d);
+    }
+
+    private static void to54(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add action->vpn->algorithm->hedge-delay/hedge-fanout
+        config.node("action", "vpn", "algorithm", "hedge-delay").set("500ms");
+        config.node("action", "vpn", "algorithm", "hedge-fanout").set(1);
+
+        // Version
+        config.node("version").set(5.4d);
+    }
+
+    private static void to55(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add local, ahead of every remote source
+        config.node("sources", "local", "enabled").set(Boolean.TRUE);
+        config.node("sources", "local", "directory").set("lists");
+
+        List<String> sources;
+        try {
+            sources = !config.node("sources", "order").empty() ? new ArrayList<>(config.node("sources", "order").getList(String.class)) : new ArrayList<>();
+        } catch (SerializationException ex) {
+            sources = new ArrayList<>();
+        }
+        if (!sources.contains("local")) {
+            sources.add(0, "local");
+        }
+        config.node("sources", "order").setList(String.class, sources);
+
+        // Version
+        config.node("version").set(5.5d);
+    }
+
+    private static void to56(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add ip2proxyfile, right after local
+        config.node("sources", "ip2proxyfile", "enabled").set(Boolean.FALSE);
+        config.node("sources", "ip2proxyfile", "file").set("IP2PROXY-LITE-PX1.BIN");
+
+        List<String> sources;
+        try {
+            sources = !config.node("sources", "order").empty() ? new ArrayList<>(config.node("sources", "order").getList(String.class)) : new ArrayList<>();
+        } catch (SerializationException ex) {
+            sources = new ArrayList<>();
+        }
+        if (!sources.contains("ip2proxyfile")) {
+            int local = sources.indexOf("local");
+            sources.add(local + 1, "ip2proxyfile");
+        }
+        config.node("sources", "order").setList(String.class, sources);
+
+        // Version
+        config.node("version").set(5.6d);
+    }
+
+    private static void to57(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->settings->write-behind
+        config.node("storage", "settings", "write-behind", "enabled").set(Boolean.TRUE);
+        config.node("storage", "settings", "write-behind", "batch-size").set(100);
+        config.node("storage", "settings", "write-behind", "flush-interval").set("1second");
+        config.node("storage", "settings", "write-behind", "max-pending").set(10000);
+
+        // Version
+        config.node("version").set(5.7d);
+    }
+
+    private static void to58(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->settings->purge
+        config.node("storage", "settings", "purge", "enabled").set(Boolean.TRUE);
+        config.node("storage", "settings", "purge", "interval").set("1hour");
+        config.node("storage", "settings", "purge", "batch-size").set(500);
+        config.node("storage", "settings", "purge", "batch-delay").set("1second");
+
+        // Version
+        config.node("version").set(5.8d);
+    }
+
+    private static void to59(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->engines->*->connection->profile/cache-size/mmap-size to embedded engines
+        for (CommentedConfigurationNode engine : config.node("storage", "engines").childrenMap().values()) {
+            String type = engine.node("type").getString("");
+            if ("h2".equalsIgnoreCase(type) || "sqlite".equalsIgnoreCase(type)) {
+                engine.node("connection", "profile").set("performance");
+                engine.node("connection", "cache-size").set(65536);
+                if ("sqlite".equalsIgnoreCase(type)) {
+                    engine.node("connection", "mmap-size").set(256);
+                }
+            }
+        }
+
+        // Version
+        config.node("version").set(5.9d);
+    }
+
+    private static void to511(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->engines->*->connection->replicas/max-replica-lag to networked engines
+        for (CommentedConfigurationNode engine : config.node("storage", "engines").childrenMap().values()) {
+            String type = engine.node("type").getString("");
+            if ("mysql".equalsIgnoreCase(type) || "old_mysql".equalsIgnoreCase(type) || "mariadb".equalsIgnoreCase(type) || "postgresql".equalsIgnoreCase(type)) {
+                engine.node("connection", "replicas").setList(String.class, new ArrayList<>());
+                engine.node("connection", "max-replica-lag").set("5seconds");
+            }
+        }
+
+        // Version
+        config.node("version").set(5.11d);
+    }
+
+    private static void to512(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->settings->tiered
+        config.node("storage", "settings", "tiered", "local-first").set(Boolean.FALSE);
+        config.node("storage", "settings", "tiered", "promote").set(Boolean.TRUE);
+        config.node("storage", "settings", "tiered", "concurrent").set(Boolean.FALSE);
+
+        // Version
+        config.node("version").set(5.12d);
+    }
+
+    private static void to513(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->settings->filter
+        config.node("storage", "settings", "filter", "enabled").set(Boolean.FALSE);
+        config.node("storage", "settings", "filter", "expected-entries").set(1000000);
+        config.node("storage", "settings", "filter", "false-positive-rate").set(0.01d);
+
+        // Version
+        config.node("version").set(5.13d);
+    }
+
+    private static void to514(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add storage->settings->warm-up
+        config.node("storage", "settings", "warm-up", "enabled").set(Boolean.TRUE);
+        config.node("storage", "settings", "warm-up", "ips").set(10000);
+        config.node("storage", "settings", "warm-up", "players").set(10000);
+        config.node("storage", "settings", "warm-up", "batch-size").set(500);
+        config.node("storage", "settings", "warm-up", "rate").set(2000);
+
+        // Version
+        config.node("version").set(5.14d);
+    }
+
+    private static void to515(@NotNull CommentedConfigurationNode config) throws SerializationException {
+        // Add messaging->settings->partitions and subscribe
+        config.node("messaging", "settings", "partitions").set(0);
+        config.node("messaging", "settings", "subscribe").setList(Integer.class, new ArrayList<>());
+
+        // Version
+        config.node("version").set(5.15d);
+    }
 }
@@ -1,6 +1,8 @@
 package me.egg82.antivpn.config;
 
+import me.egg82.antivpn.messaging.PacketDictionary;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class HiddenConfig {
     private HiddenConfig() { }
@@ -9,6 +11,13 @@ public class HiddenConfig {
 
     public boolean doPacketDump() { return packetDump; }
 
+    private @Nullable PacketDictionary packetDictionary = null;
+
+    @Nullable
+    public PacketDictionary getPacketDictionary() { return packetDictionary; }
+
+    public int getPacketDictionaryId() { return packetDictionary != null ? packetDictionary.getId() : 0; }
+
     @NotNull
     public static HiddenConfig.Builder builder() { return new Builder(); }
 
@@ -23,6 +32,12 @@ public class HiddenConfig {
             return this;
         }
 
+        @NotNull
+        public HiddenConfig.Builder packetDictionary(@Nullable PacketDictionary value) {
+            values.packetDictionary = value;
+            return this;
+        }
+
         @NotNull
         public HiddenConfig build() { return values; }
     }
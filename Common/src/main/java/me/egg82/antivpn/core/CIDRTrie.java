@@ -0,0 +1,157 @@
+package me.egg82.antivpn.core;
+
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
+import me.egg82.antivpn.logging.GELFLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable binary (radix-2) trie of IPs and CIDR ranges.
+ * Built once, lookups walk at most prefix-length bits and never touch strings or allocate.
+ * IPv4 and IPv6 entries live in separate trees.
+ */
+public final class CIDRTrie {
+    private static final Logger logger = new GELFLogger(LoggerFactory.getLogger(CIDRTrie.class));
+
+    private static final CIDRTrie EMPTY = new CIDRTrie(new Tree(), new Tree());
+
+    private final @NotNull Tree v4;
+    private final @NotNull Tree v6;
+
+    private CIDRTrie(@NotNull Tree v4, @NotNull Tree v6) {
+        this.v4 = v4;
+        this.v6 = v6;
+    }
+
+    @NotNull
+    public static CIDRTrie empty() { return EMPTY; }
+
+    /**
+     * Compiles the given IPs and ranges (eg. "10.0.0.0/8", "2001:db8::/32" or "1.2.3.4-10") into a trie.
+     * Invalid entries and non-contiguous ranges (eg. "1.*.3.4") are skipped.
+     */
+    @NotNull
+    public static CIDRTrie of(@NotNull Collection<@NotNull String> entries) {
+        if (entries.isEmpty()) {
+            return EMPTY;
+        }
+
+        Tree v4 = new Tree();
+        Tree v6 = new Tree();
+        for (String entry : entries) {
+            IPAddress address = new IPAddressString(entry).getAddress();
+            if (address == null) {
+                continue;
+            }
+            if (address.getNetworkPrefixLength() != null || !address.isMultiple()) {
+                insert(v4, v6, address, entry);
+                continue;
+            }
+            // Ranges such as "1.2.3.*" or "1.2.3.4-10" have no prefix length, so cover them with the fewest CIDR blocks
+            if (!address.isSequential()) {
+                logger.warn("Skipping IP range \"" + entry + "\" as it is not a contiguous range of addresses.");
+                continue;
+            }
+            for (IPAddress block : address.spanWithPrefixBlocks()) {
+                insert(v4, v6, block, entry);
+            }
+        }
+        v4.trim();
+        v6.trim();
+        return new CIDRTrie(v4, v6);
+    }
+
+    private static void insert(@NotNull Tree v4, @NotNull Tree v6, @NotNull IPAddress address, @NotNull String entry) {
+        IPKey key = IPKey.of(address.getBytes(), null);
+        Integer prefix = address.getNetworkPrefixLength();
+        int bits = key.isV6() ? 128 : 32;
+        (key.isV6() ? v6 : v4).insert(key, prefix == null ? bits : Math.min(prefix, bits), entry);
+    }
+
+    public boolean isEmpty() { return v4.size == 1 && v4.values[0] == null && v6.size == 1 && v6.values[0] == null; }
+
+    public boolean contains(@NotNull InetAddress ip) { return getMatch(IPKey.of(ip, null)) != null; }
+
+    public boolean contains(@NotNull IPKey ip) { return getMatch(ip) != null; }
+
+    /**
+     * Returns the most specific entry containing the IP, as it was originally given, or null if none do.
+     */
+    @Nullable
+    public String getMatch(@NotNull InetAddress ip) { return getMatch(IPKey.of(ip, null)); }
+
+    @Nullable
+    public String getMatch(@NotNull IPKey ip) { return ip.isV6() ? v6.match(ip, 128) : v4.match(ip, 32); }
+
+    private static int bit(@NotNull IPKey key, int index, int bits) {
+        if (bits == 32) {
+            return (int) (key.getLow() >>> (31 - index)) & 1;
+        }
+        return index < 64 ? (int) (key.getHigh() >>> (63 - index)) & 1 : (int) (key.getLow() >>> (127 - index)) & 1;
+    }
+
+    private static class Tree {
+        // Node 0 is the root, child index 0 means "no child"
+        private int[] zero = new int[16];
+        private int[] one = new int[16];
+        private String[] values = new String[16];
+        private int size = 1;
+
+        private void insert(@NotNull IPKey key, int prefix, @NotNull String value) {
+            int bits = key.isV6() ? 128 : 32;
+            int node = 0;
+            for (int i = 0; i < prefix; i++) {
+                int[] children = bit(key, i, bits) == 0 ? zero : one;
+                if (children[node] == 0) {
+                    int child = newNode();
+                    // newNode() may have grown the arrays
+                    children = bit(key, i, bits) == 0 ? zero : one;
+                    children[node] = child;
+                }
+                node = children[node];
+            }
+            if (values[node] == null) {
+                values[node] = value;
+            }
+        }
+
+        private int newNode() {
+            if (size == values.length) {
+                int len = values.length * 2;
+                zero = Arrays.copyOf(zero, len);
+                one = Arrays.copyOf(one, len);
+                values = Arrays.copyOf(values, len);
+            }
+            return size++;
+        }
+
+        private void trim() {
+            zero = Arrays.copyOf(zero, size);
+            one = Arrays.copyOf(one, size);
+            values = Arrays.copyOf(values, size);
+        }
+
+        @Nullable
+        private String match(@NotNull IPKey key, int bits) {
+            String retVal = values[0];
+            int node = 0;
+            for (int i = 0; i < bits; i++) {
+                node = bit(key, i, bits) == 0 ? zero[node] : one[node];
+                if (node == 0) {
+                    break;
+                }
+                if (values[node] != null) {
+                    retVal = values[node];
+                }
+            }
+            return retVal;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package me.egg82.antivpn.core;
+
+import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+/**
+ * Compact, binary IP key for in-memory caches.
+ * IPv4 addresses are packed into the low int of {@link #getLow()}, IPv6 into both longs.
+ * The algorithm method (if any) and address family live in a spare byte,
+ * so equality and hashing never touch the textual IP.
+ */
+public final class IPKey {
+    private static final byte FLAG_V6 = (byte) 0x80;
+    private static final byte METHOD_MASK = (byte) 0x7F;
+
+    private final long high;
+    private final long low;
+    private final byte meta;
+
+    private final int hc;
+
+    private IPKey(long high, long low, byte meta) {
+        this.high = high;
+        this.low = low;
+        this.meta = meta;
+
+        long h = high * 31L + low;
+        this.hc = (int) (h ^ (h >>> 32)) * 31 + meta;
+    }
+
+    @NotNull
+    public static IPKey of(@NotNull String ip) { return of(ip, null); }
+
+    /**
+     * @throws IllegalArgumentException if the IP is not a valid IPv4 or IPv6 literal
+     */
+    @NotNull
+    public static IPKey of(@NotNull String ip, @Nullable AlgorithmMethod method) {
+        int v4 = parseV4(ip);
+        if (v4 != -1 || "255.255.255.255".equals(ip)) {
+            return new IPKey(0L, v4 & 0xFFFFFFFFL, meta(false, method));
+        }
+
+        if (ip.indexOf(':') == -1) { // Never hand anything that isn't a literal to InetAddress, it'd do a DNS lookup
+            throw new IllegalArgumentException("ip is invalid.");
+        }
+        try {
+            return of(InetAddress.getByName(ip), method);
+        } catch (UnknownHostException ex) {
+            throw new IllegalArgumentException("ip is invalid.", ex);
+        }
+    }
+
+    @NotNull
+    public static IPKey of(@NotNull InetAddress ip, @Nullable AlgorithmMethod method) { return of(ip.getAddress(), method); }
+
+    @NotNull
+    public static IPKey of(byte @NotNull [] address, @Nullable AlgorithmMethod method) {
+        if (address.length == 4) {
+            return new IPKey(0L, readInt(address, 0) & 0xFFFFFFFFL, meta(false, method));
+        }
+        if (address.length == 16) {
+            return new IPKey(readLong(address, 0), readLong(address, 8), meta(true, method));
+        }
+        throw new IllegalArgumentException("address must be 4 or 16 bytes.");
+    }
+
+    @NotNull
+    public IPKey withMethod(@Nullable AlgorithmMethod method) {
+        byte m = meta(isV6(), method);
+        return m == meta ? this : new IPKey(high, low, m);
+    }
+
+    public long getHigh() { return high; }
+
+    public long getLow() { return low; }
+
+    public boolean isV6() { return (meta & FLAG_V6) != 0; }
+
+    @Nullable
+    public AlgorithmMethod getMethod() {
+        int m = meta & METHOD_MASK;
+        return m == 0 ? null : AlgorithmMethod.values()[m - 1];
+    }
+
+    public byte @NotNull [] toBytes() {
+        if (!isV6()) {
+            byte[] retVal = new byte[4];
+            writeInt((int) low, retVal, 0);
+            return retVal;
+        }
+        byte[] retVal = new byte[16];
+        writeLong(high, retVal, 0);
+        writeLong(low, retVal, 8);
+        return retVal;
+    }
+
+    /**
+     * Returns the address in the same format {@link InetAddress#getHostAddress()} uses.
+     */
+    @NotNull
+    public String toAddressString() {
+        if (!isV6()) {
+            int v = (int) low;
+            return ((v >>> 24) & 0xFF) + "." + ((v >>> 16) & 0xFF) + "." + ((v >>> 8) & 0xFF) + "." + (v & 0xFF);
+        }
+        try {
+            return Inet6Address.getByAddress(null, toBytes(), null).getHostAddress();
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException("Could not create InetAddress for key.", ex);
+        }
+    }
+
+    @NotNull
+    public InetAddress toInetAddress() {
+        try {
+            return isV6() ? Inet6Address.getByAddress(null, toBytes(), null) : Inet4Address.getByAddress(toBytes());
+        } catch (UnknownHostException ex) {
+            throw new IllegalStateException("Could not create InetAddress for key.", ex);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof IPKey)) {
+            return false;
+        }
+        IPKey ipKey = (IPKey) o;
+        return high == ipKey.high && low == ipKey.low && meta == ipKey.meta;
+    }
+
+    @Override
+    public int hashCode() { return hc; }
+
+    @Override
+    public String toString() {
+        return "IPKey{" +
+                "ip=" + toAddressString() +
+                ", method=" + getMethod() +
+                '}';
+    }
+
+    private static byte meta(boolean v6, @Nullable AlgorithmMethod method) {
+        byte retVal = method == null ? 0 : (byte) (method.ordinal() + 1);
+        return v6 ? (byte) (retVal | FLAG_V6) : retVal;
+    }
+
+    /**
+     * Allocation-free dotted-quad parser.
+     * Returns -1 for anything that isn't a valid IPv4 literal (callers need to special-case 255.255.255.255).
+     */
+    private static int parseV4(@NotNull String ip) {
+        int len = ip.length();
+        if (len < 7 || len > 15) {
+            return -1;
+        }
+
+        int retVal = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < len; i++) {
+            char c = ip.charAt(i);
+            if (c == '.') {
+                if (digits == 0 || ++dots > 3) {
+                    return -1;
+                }
+                retVal = (retVal << 8) | octet;
+                octet = 0;
+                digits = 0;
+            } else if (c >= '0' && c <= '9') {
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return -1;
+                }
+            } else {
+                return -1;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return -1;
+        }
+        return (retVal << 8) | octet;
+    }
+
+    private static int readInt(byte @NotNull [] b, int off) {
+        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16) | ((b[off + 2] & 0xFF) << 8) | (b[off + 3] & 0xFF);
+    }
+
+    private static long readLong(byte @NotNull [] b, int off) {
+        return ((long) readInt(b, off) << 32) | (readInt(b, off + 4) & 0xFFFFFFFFL);
+    }
+
+    private static void writeInt(int v, byte @NotNull [] b, int off) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static void writeLong(long v, byte @NotNull [] b, int off) {
+        writeInt((int) (v >>> 32), b, off);
+        writeInt((int) v, b, off + 4);
+    }
+}
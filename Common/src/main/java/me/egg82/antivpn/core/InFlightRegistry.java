@@ -0,0 +1,130 @@
+package me.egg82.antivpn.core;
+
+import me.egg82.antivpn.utils.FutureUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces identical concurrent work.
+ * While a call for a key is in-flight, every other caller asking for the same key
+ * shares its result instead of starting the work again. Keys are dropped as soon as the work completes,
+ * so this is not a cache.
+ */
+public class InFlightRegistry<K, V> {
+    private final @NotNull ConcurrentMap<K, Call<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a future for the given key, starting the work with the supplier only if
+     * no call for the key is already in-flight.
+     * Cancelling the returned future only detaches that caller; the shared work is cancelled once every caller has.
+     */
+    @NotNull
+    public CompletableFuture<V> submit(@NotNull K key, @NotNull Supplier<@NotNull CompletableFuture<V>> supplier) {
+        Call<V> call = new Call<>();
+        Call<V> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            CompletableFuture<V> view = existing.view();
+            if (view != null) {
+                return view;
+            }
+            // Raced with the last caller leaving, start fresh
+            calls.remove(key, existing);
+            return submit(key, supplier);
+        }
+
+        CompletableFuture<V> view = call.view();
+        CompletableFuture<V> work;
+        try {
+            work = supplier.get();
+        } catch (Throwable ex) {
+            work = new CompletableFuture<>();
+            work.completeExceptionally(ex);
+        }
+        call.attach(work);
+        call.future.whenComplete((v, ex) -> calls.remove(key, call));
+        return view;
+    }
+
+    /**
+     * Blocking version of {@link #submit(Object, Supplier)}.
+     * The first caller runs the loader on its own thread, everyone else waits for its result.
+     *
+     * @throws CompletionException if the loader threw
+     */
+    public V get(@NotNull K key, @NotNull Supplier<V> loader) {
+        Call<V> call = new Call<>();
+        Call<V> existing = calls.putIfAbsent(key, call);
+        if (existing != null) {
+            return existing.future.join();
+        }
+
+        try {
+            V retVal = loader.get();
+            call.future.complete(retVal);
+            return retVal;
+        } catch (Throwable ex) {
+            call.future.completeExceptionally(ex);
+            throw ex instanceof CompletionException ? (CompletionException) ex : new CompletionException(ex);
+        } finally {
+            calls.remove(key, call);
+        }
+    }
+
+    public int size() { return calls.size(); }
+
+    private static class Call<V> {
+        private final @NotNull CompletableFuture<V> future = new CompletableFuture<>();
+        private final @NotNull AtomicInteger callers = new AtomicInteger(0);
+        private volatile CompletableFuture<V> work = null;
+
+        private CompletableFuture<V> view() {
+            while (true) {
+                int current = callers.get();
+                if (current < 0) { // Every caller already left and the work was cancelled
+                    return null;
+                }
+                if (callers.compareAndSet(current, current + 1)) {
+                    break;
+                }
+            }
+
+            CompletableFuture<V> retVal = new CompletableFuture<>();
+            future.whenComplete((v, ex) -> {
+                if (ex != null) {
+                    retVal.completeExceptionally(FutureUtil.unwrap(ex));
+                } else {
+                    retVal.complete(v);
+                }
+            });
+            retVal.whenComplete((v, ex) -> {
+                if (ex instanceof CancellationException && callers.compareAndSet(1, -1)) {
+                    CompletableFuture<V> w = work;
+                    if (w != null) {
+                        w.cancel(true);
+                    }
+                    future.cancel(true);
+                } else {
+                    callers.decrementAndGet();
+                }
+            });
+            return retVal;
+        }
+
+        private void attach(@NotNull CompletableFuture<V> work) {
+            this.work = work;
+            work.whenComplete((v, ex) -> {
+                if (ex != null) {
+                    future.completeExceptionally(FutureUtil.unwrap(ex));
+                } else {
+                    future.complete(v);
+                }
+            });
+            if (future.isCancelled()) {
+                work.cancel(true);
+            }
+        }
+    }
+}
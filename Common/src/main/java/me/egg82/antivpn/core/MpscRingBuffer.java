@@ -0,0 +1,105 @@
+package me.egg82.antivpn.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer/single-consumer queue.
+ * Each slot carries a sequence number which says whether it's free to write or ready to read,
+ * so producers only contend on a single CAS and the consumer never blocks them.
+ * <p>
+ * Any number of threads may offer, but only one thread at a time may poll.
+ */
+public class MpscRingBuffer<T> {
+    private final int mask;
+    private final @NotNull AtomicReferenceArray<T> elements;
+    private final @NotNull AtomicLongArray sequences;
+
+    private final @NotNull AtomicLong tail = new AtomicLong(0L);
+    private volatile long head = 0L;
+
+    /**
+     * @param capacity the most elements the buffer can hold, rounded up to a power of two
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30.");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.mask = size - 1;
+        this.elements = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an element, or returns false if the buffer is full.
+     */
+    public boolean offer(@NotNull T value) {
+        long pos;
+        int index;
+        while (true) {
+            pos = tail.get();
+            index = (int) pos & mask;
+            long diff = sequences.get(index) - pos;
+            if (diff == 0L) {
+                if (tail.compareAndSet(pos, pos + 1L)) {
+                    break;
+                }
+            } else if (diff < 0L) {
+                // The consumer hasn't freed this slot from the last lap yet
+                return false;
+            }
+            // Otherwise another producer got here first, try the next slot
+        }
+
+        elements.lazySet(index, value);
+        // Publishes the element to the consumer
+        sequences.set(index, pos + 1L);
+        return true;
+    }
+
+    /**
+     * Removes the oldest element, or returns null if there isn't one ready.
+     * Must only be called by one thread at a time.
+     */
+    @Nullable
+    public T poll() {
+        long pos = head;
+        int index = (int) pos & mask;
+        if (sequences.get(index) != pos + 1L) {
+            // Empty, or a producer has claimed the slot but not written to it yet
+            return null;
+        }
+
+        T retVal = elements.get(index);
+        elements.lazySet(index, null);
+        head = pos + 1L;
+        // Frees the slot for the producer one lap ahead
+        sequences.set(index, pos + mask + 1L);
+        return retVal;
+    }
+
+    /**
+     * An estimate while producers are running.
+     */
+    public int size() {
+        long size = tail.get() - head;
+        return (int) Math.max(0L, Math.min(size, capacity()));
+    }
+
+    public boolean isEmpty() { return size() == 0; }
+
+    public int capacity() { return mask + 1; }
+}
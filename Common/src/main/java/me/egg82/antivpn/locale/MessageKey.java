@@ -93,6 +93,14 @@ public enum MessageKey {
     DEBUG__MCLEAKS_PASSED,
     DEBUG__MCLEAKS_API_ONLY,
 
+    COMMAND__IMPORT__ERROR__SAME_STORAGE,
+    COMMAND__IMPORT__ERROR__NO_MASTER,
+    COMMAND__IMPORT__ERROR__NO_SLAVE,
+    COMMAND__IMPORT__BEGIN,
+    COMMAND__IMPORT__END,
+    COMMAND__IMPORT__RESUME,
+    COMMAND__IMPORT__PROGRESS,
+
     COMMAND__KICK__ERROR__NOT_ONLINE,
     COMMAND__KICK__ERROR__VPN_API_MODE,
     COMMAND__KICK__ERROR__MCLEAKS_API_MODE,
@@ -5,6 +5,7 @@ import com.github.luben.zstd.ZstdException;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.locale.LocaleUtil;
 import me.egg82.antivpn.locale.MessageKey;
@@ -14,6 +15,7 @@ import me.egg82.antivpn.messaging.packets.MultiPacket;
 import me.egg82.antivpn.messaging.packets.Packet;
 import me.egg82.antivpn.messaging.packets.server.InitializationPacket;
 import me.egg82.antivpn.messaging.packets.server.PacketVersionPacket;
+import me.egg82.antivpn.services.CollectionProvider;
 import me.egg82.antivpn.utils.MathUtil;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -26,6 +28,7 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.text.DecimalFormat;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -45,6 +48,7 @@ public abstract class AbstractMessagingService implements MessagingService {
     protected byte[] serverIdBytes;
 
     protected MessagingHandler handler;
+    protected @NotNull PartitionScheme partitions = PartitionScheme.disabled();
 
     protected final File sentPacketDirectory;
     protected final File receivedPacketDirectory;
@@ -60,33 +64,55 @@ public abstract class AbstractMessagingService implements MessagingService {
 
     private static final double TOLERANCE = 1.1; // Compression ratio tolerance. Determines when compression should happen
 
-    protected final byte @NotNull [] compressData(@Nullable ByteBuf data) throws IOException {
-        if (data == null || data.capacity() == 0) {
+    // First byte of every message
+    private static final byte UNCOMPRESSED = 0x00;
+    private static final byte COMPRESSED = 0x01; // + int length
+    private static final byte COMPRESSED_DICTIONARY = 0x02; // + int dictionary ID + int length
+
+    /**
+     * Compresses a written packet into the array handed to the transport.
+     * Packets should be written into a direct buffer from {@link #alloc} so Zstd can read them in place;
+     * the only copy is the final one into the array, which every transport needs as an exact-length byte[].
+     * <p>
+     * With allowDictionary, the shared packet dictionary is used if every known server has it.
+     * Packets which negotiate the dictionary must never be compressed with it.
+     */
+    protected final byte @NotNull [] compressData(@Nullable ByteBuf data, boolean allowDictionary) throws IOException {
+        if (data == null || data.writerIndex() == 0) {
             return new byte[0];
         }
 
-        data.readerIndex(0);
+        PacketDictionary dictionary = allowDictionary ? getSharedDictionary() : null;
+        int headerBytes = dictionary != null ? 9 : 5;
 
         int uncompressedBytes = data.writerIndex();
-        int upperBound = (int) Zstd.compressBound(uncompressedBytes) + 5;
+        int upperBound = (int) Zstd.compressBound(uncompressedBytes) + headerBytes;
 
-        ByteBuf nd = alloc.directBuffer(uncompressedBytes, uncompressedBytes);
+        // Heap buffers still work, they just cost a copy into native memory first
+        ByteBuf nd = data.isDirect() ? null : alloc.directBuffer(uncompressedBytes, uncompressedBytes);
         ByteBuf ndd = alloc.directBuffer(upperBound, upperBound);
 
         try {
-            data.readBytes(nd);
-            ByteBuffer d = nd.nioBuffer(0, uncompressedBytes);
+            ByteBuffer d;
+            if (nd != null) {
+                nd.writeBytes(data, 0, uncompressedBytes);
+                d = nd.nioBuffer(0, uncompressedBytes);
+            } else {
+                d = data.nioBuffer(0, uncompressedBytes);
+            }
 
             ByteBuffer dest = ndd.nioBuffer(0, upperBound);
-            long compressedBytes = Zstd.compressDirectByteBuffer(dest, 5, upperBound - 5, d, 0, uncompressedBytes, 9);
+            long compressedBytes = dictionary != null
+                    ? Zstd.compressDirectByteBufferFastDict(dest, headerBytes, upperBound - headerBytes, d, 0, uncompressedBytes, dictionary.getCompress())
+                    : Zstd.compressDirectByteBuffer(dest, headerBytes, upperBound - headerBytes, d, 0, uncompressedBytes, 9);
             if (Zstd.isError(compressedBytes)) {
                 throw new IOException(new ZstdException(compressedBytes));
             }
 
-            if ((double) uncompressedBytes / (double) (compressedBytes + 4L) < TOLERANCE) {
+            if ((double) uncompressedBytes / (double) (compressedBytes + headerBytes - 1L) < TOLERANCE) {
                 byte[] out = new byte[uncompressedBytes + 1];
-                out[0] = 0x00;
-                nd.readBytes(out, 1, uncompressedBytes);
+                out[0] = UNCOMPRESSED;
+                data.getBytes(0, out, 1, uncompressedBytes);
 
                 if (ConfigUtil.getDebugOrFalse()) {
                     logger.info("Sent (no) compression: " + out.length + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) out.length) + ")");
@@ -96,69 +122,142 @@ public abstract class AbstractMessagingService implements MessagingService {
             }
 
             if (ConfigUtil.getDebugOrFalse()) {
-                logger.info("Sent compression: " + (compressedBytes + 5) + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) (compressedBytes + 5)) + ")");
+                logger.info("Sent " + (dictionary != null ? "dictionary " : "") + "compression: " + (compressedBytes + headerBytes) + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) (compressedBytes + headerBytes)) + ")");
             }
 
-            dest.put(0, (byte) 0x01);
-            dest.putInt(1, uncompressedBytes);
-            dest.rewind();
-
-            byte[] out = new byte[(int) compressedBytes + 5];
-            dest.get(out);
+            byte[] out = new byte[(int) compressedBytes + headerBytes];
+            if (dictionary != null) {
+                out[0] = COMPRESSED_DICTIONARY;
+                writeInt(out, 1, dictionary.getId());
+                writeInt(out, 5, uncompressedBytes);
+            } else {
+                out[0] = COMPRESSED;
+                writeInt(out, 1, uncompressedBytes);
+            }
+            ndd.getBytes(headerBytes, out, headerBytes, (int) compressedBytes);
             return out;
         } finally {
-            nd.release();
+            if (nd != null) {
+                nd.release();
+            }
             ndd.release();
         }
     }
 
-    protected final @NotNull ByteBuf decompressData(@Nullable ByteBuf data) throws IOException {
-        if (data == null || data.capacity() == 0) {
+    /**
+     * Decodes a message straight from the array the transport handed over.
+     * Uncompressed messages are a slice of that array, and compressed ones are decompressed
+     * directly into the returned buffer, so nothing is copied along the way.
+     * The returned buffer must be released.
+     */
+    protected final @NotNull ByteBuf decompressData(byte @Nullable [] data) throws IOException {
+        if (data == null || data.length == 0) {
             return alloc.buffer(0, 0);
         }
 
-        int compressedBytes = data.writerIndex();
-        data.readerIndex(0);
-
-        boolean compressed = data.readByte() != 0x00;
-        if (!compressed) {
-            ByteBuf retVal = alloc.buffer(compressedBytes - 1, compressedBytes - 1);
-            data.readBytes(retVal);
+        int compressedBytes = data.length;
 
+        if (data[0] == UNCOMPRESSED) {
             if (ConfigUtil.getDebugOrFalse()) {
                 logger.info("Received (no) compression: " + compressedBytes + "/" + (compressedBytes - 1) + " (" + ratioFormat.format((double) (compressedBytes - 1) / (double) compressedBytes) + ")");
             }
 
-            return retVal;
+            return Unpooled.wrappedBuffer(data, 1, compressedBytes - 1);
         }
 
-        int uncompressedBytes = data.readInt();
-        ByteBuf nd = alloc.directBuffer(compressedBytes - 5, compressedBytes - 5);
-        ByteBuf ndd = alloc.directBuffer(uncompressedBytes, uncompressedBytes);
+        if (data[0] == COMPRESSED_DICTIONARY) {
+            return decompressDictionary(data);
+        }
 
-        try {
-            data.readBytes(nd);
-            ByteBuffer d = nd.nioBuffer(0, compressedBytes - 5);
+        if (compressedBytes < 5) {
+            throw new IOException("Compressed message is too short: " + compressedBytes + " bytes.");
+        }
+        int uncompressedBytes = readInt(data, 1);
+        if (uncompressedBytes < 0) {
+            throw new IOException("Compressed message has a bad length: " + uncompressedBytes + " bytes.");
+        }
 
-            ByteBuffer dest = ndd.nioBuffer(0, uncompressedBytes);
-            long decompressedBytes = Zstd.decompressDirectByteBuffer(dest, 0, uncompressedBytes, d, 0, compressedBytes - 5);
+        ByteBuf retVal = alloc.heapBuffer(uncompressedBytes, uncompressedBytes);
+        try {
+            long decompressedBytes = Zstd.decompressByteArray(retVal.array(), retVal.arrayOffset(), uncompressedBytes, data, 5, compressedBytes - 5);
             if (Zstd.isError(decompressedBytes)) {
                 throw new IOException(new ZstdException(decompressedBytes));
             }
+            retVal.writerIndex((int) decompressedBytes);
+        } catch (IOException | RuntimeException ex) {
+            retVal.release();
+            throw ex;
+        }
 
-            if (ConfigUtil.getDebugOrFalse()) {
-                logger.info("Received compression: " + compressedBytes + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) compressedBytes) + ")");
-            }
+        if (ConfigUtil.getDebugOrFalse()) {
+            logger.info("Received compression: " + compressedBytes + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) compressedBytes) + ")");
+        }
 
-            dest.rewind();
-            ByteBuf retVal = alloc.buffer(uncompressedBytes, uncompressedBytes);
-            retVal.writeBytes(dest);
+        return retVal;
+    }
 
-            return retVal;
-        } finally {
-            nd.release();
-            ndd.release();
+    private @NotNull ByteBuf decompressDictionary(byte @NotNull [] data) throws IOException {
+        int compressedBytes = data.length;
+        if (compressedBytes < 9) {
+            throw new IOException("Compressed message is too short: " + compressedBytes + " bytes.");
+        }
+
+        int dictionaryId = readInt(data, 1);
+        PacketDictionary dictionary = ConfigUtil.getHiddenConfig().getPacketDictionary();
+        if (dictionary == null || dictionary.getId() != dictionaryId) {
+            throw new IOException("Message was compressed with packet dictionary " + Integer.toUnsignedString(dictionaryId) + ", which this server does not have.");
         }
+
+        int uncompressedBytes = readInt(data, 5);
+        if (uncompressedBytes < 0) {
+            throw new IOException("Compressed message has a bad length: " + uncompressedBytes + " bytes.");
+        }
+
+        // Sized exactly, the dictionary API has no way to bound the output inside a larger pooled array
+        byte[] out = new byte[uncompressedBytes];
+        long decompressedBytes = Zstd.decompressFastDict(out, 0, data, 9, compressedBytes - 9, dictionary.getDecompress());
+        if (Zstd.isError(decompressedBytes)) {
+            throw new IOException(new ZstdException(decompressedBytes));
+        }
+
+        if (ConfigUtil.getDebugOrFalse()) {
+            logger.info("Received dictionary compression: " + compressedBytes + "/" + uncompressedBytes + " (" + ratioFormat.format((double) uncompressedBytes / (double) compressedBytes) + ")");
+        }
+
+        return Unpooled.wrappedBuffer(out, 0, (int) decompressedBytes);
+    }
+
+    /**
+     * The packet dictionary, but only once every other known server has said it has the same one.
+     */
+    private static @Nullable PacketDictionary getSharedDictionary() {
+        PacketDictionary dictionary = ConfigUtil.getHiddenConfig().getPacketDictionary();
+        if (dictionary == null) {
+            return null;
+        }
+
+        Map<UUID, Integer> dictionaries = CollectionProvider.getServerDictionaries();
+        // A server which hasn't said which dictionary it has yet might not have one
+        if (dictionaries.isEmpty() || dictionaries.size() != CollectionProvider.getServerVersions().size()) {
+            return null;
+        }
+        for (int id : dictionaries.values()) {
+            if (id != dictionary.getId()) {
+                return null;
+            }
+        }
+        return dictionary;
+    }
+
+    private static void writeInt(byte @NotNull [] out, int offset, int value) {
+        out[offset] = (byte) (value >>> 24);
+        out[offset + 1] = (byte) (value >>> 16);
+        out[offset + 2] = (byte) (value >>> 8);
+        out[offset + 3] = (byte) value;
+    }
+
+    private static int readInt(byte @NotNull [] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16) | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
     }
 
     private final int[] capacities = new int[150];
@@ -14,5 +14,10 @@ public interface MessagingService {
 
     boolean isClosed();
 
-    void sendPacket(@NotNull UUID messageId, @NotNull Packet packet) throws IOException, TimeoutException;
+    default void sendPacket(@NotNull UUID messageId, @NotNull Packet packet) throws IOException, TimeoutException { sendPacket(messageId, packet, PartitionScheme.BROADCAST); }
+
+    /*
+    Partition is from PartitionScheme.partitionOf, or PartitionScheme.BROADCAST for every server
+     */
+    void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, int partition) throws IOException, TimeoutException;
 }
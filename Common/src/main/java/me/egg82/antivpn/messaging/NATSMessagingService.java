@@ -99,6 +99,14 @@ public class NATSMessagingService extends AbstractMessagingService {
             return this;
         }
 
+        /**
+         * Receives broadcasts plus the given partitions, and sends partitioned packets only to the servers subscribed to them.
+         */
+        public @NotNull Builder partitions(@NotNull PartitionScheme partitions) {
+            service.partitions = partitions;
+            return this;
+        }
+
         public @NotNull NATSMessagingService build() throws IOException, InterruptedException {
             service.connection = Nats.connect(config.build());
             // Indefinite subscription
@@ -114,7 +122,7 @@ public class NATSMessagingService extends AbstractMessagingService {
                 }
 
                 try {
-                    if (SUBJECT_NAME.equals(subject)) {
+                    if (SUBJECT_NAME.equals(subject) || subject.startsWith(SUBJECT_NAME + ".")) {
                         handleMessage(message.getData());
                     } else {
                         service.logger.warn("Got data from subject that should not exist: " + subject);
@@ -124,14 +132,17 @@ public class NATSMessagingService extends AbstractMessagingService {
                 }
             });
             service.dispatcher.subscribe(SUBJECT_NAME);
+            if (service.partitions.isEnabled()) {
+                for (int partition : service.partitions.getSubscribed()) {
+                    service.dispatcher.subscribe(PartitionScheme.getTopic(SUBJECT_NAME, partition));
+                }
+            }
         }
 
         private void handleMessage(byte @NotNull [] body) throws IOException {
-            ByteBuf b = alloc.buffer(body.length, body.length);
             ByteBuf data = null;
             try {
-                b.writeBytes(body);
-                data = service.decompressData(b);
+                data = service.decompressData(body);
 
                 if (ConfigUtil.getHiddenConfig().doPacketDump()) {
                     service.dumpReceivedPacket(data);
@@ -179,7 +190,6 @@ public class NATSMessagingService extends AbstractMessagingService {
                     service.handler.handlePacket(messageId, service.getName(), packet);
                 }
             } finally {
-                b.release();
                 if (data != null) {
                     data.release();
                 }
@@ -188,10 +198,10 @@ public class NATSMessagingService extends AbstractMessagingService {
     }
 
     @Override
-    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet) throws IOException {
+    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, int partition) throws IOException {
         queueLock.readLock().lock();
         try {
-            ByteBuf buffer = alloc.buffer(getInitialCapacity());
+            ByteBuf buffer = alloc.directBuffer(getInitialCapacity());
             try {
                 buffer.writeBytes(serverIdBytes);
                 buffer.writeLong(messageId.getMostSignificantBits());
@@ -204,7 +214,8 @@ public class NATSMessagingService extends AbstractMessagingService {
                     dumpSentPacket(buffer);
                 }
 
-                connection.publish(SUBJECT_NAME, compressData(buffer));
+                String subject = partitions.isEnabled() ? PartitionScheme.getTopic(SUBJECT_NAME, partition) : SUBJECT_NAME;
+                connection.publish(subject, compressData(buffer, !hasVersion(packet)));
             } finally {
                 buffer.release();
             }
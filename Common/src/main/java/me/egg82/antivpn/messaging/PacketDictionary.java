@@ -0,0 +1,113 @@
+package me.egg82.antivpn.messaging;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+import me.egg82.antivpn.logging.GELFLogger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * A Zstd dictionary shared by every server on the network.
+ * Packets are only a few dozen bytes of IPs, UUIDs and flags, which plain Zstd can't do much with;
+ * a dictionary trained on real packets lets even a single packet compress well.
+ * <p>
+ * Trained from packet dumps (debug.packet-dump) the first time enough of them are found, and saved as
+ * packets/dictionary.zdict. Every server needs the same file, so copy it over to the rest of the network.
+ * Servers advertise their dictionary ID when they connect, and it's only used once every known server has the same one.
+ */
+public class PacketDictionary {
+    private static final Logger logger = new GELFLogger(LoggerFactory.getLogger(PacketDictionary.class));
+
+    public static final String FILE_NAME = "dictionary.zdict";
+
+    private static final int MIN_SAMPLES = 500;
+    private static final int MAX_SAMPLE_BYTES = 8 * 1024 * 1024;
+    private static final int DICTIONARY_BYTES = 16 * 1024;
+    private static final int LEVEL = 9;
+
+    private final int id;
+    private final @NotNull ZstdDictCompress compress;
+    private final @NotNull ZstdDictDecompress decompress;
+
+    private PacketDictionary(byte @NotNull [] dictionary) {
+        int dictId = (int) Zstd.getDictIdFromDict(dictionary);
+        // Raw-content dictionaries have no ID of their own
+        this.id = dictId != 0 ? dictId : Arrays.hashCode(dictionary) | 1;
+        this.compress = new ZstdDictCompress(dictionary, LEVEL);
+        this.decompress = new ZstdDictDecompress(dictionary);
+    }
+
+    /**
+     * The ID sent to other servers and written into every packet compressed with this dictionary. Never 0.
+     */
+    public int getId() { return id; }
+
+    @NotNull
+    ZstdDictCompress getCompress() { return compress; }
+
+    @NotNull
+    ZstdDictDecompress getDecompress() { return decompress; }
+
+    /**
+     * Loads the saved dictionary, or trains and saves a new one from the packet dumps in the given directory.
+     * Returns null if there's neither.
+     */
+    @Nullable
+    public static PacketDictionary load(@NotNull File packetDirectory) {
+        File file = new File(packetDirectory, FILE_NAME);
+        try {
+            if (file.isFile()) {
+                PacketDictionary retVal = new PacketDictionary(Files.readAllBytes(file.toPath()));
+                logger.info("Loaded packet dictionary " + Integer.toUnsignedString(retVal.id) + ".");
+                return retVal;
+            }
+
+            byte[] trained = train(new File(packetDirectory, "sent"), new File(packetDirectory, "received"));
+            if (trained == null) {
+                return null;
+            }
+            if (!packetDirectory.exists() && !packetDirectory.mkdirs()) {
+                throw new IOException("Could not create " + packetDirectory.getAbsolutePath());
+            }
+            Files.write(file.toPath(), trained);
+            PacketDictionary retVal = new PacketDictionary(trained);
+            logger.info("Trained packet dictionary " + Integer.toUnsignedString(retVal.id) + " from packet dumps. Copy " + file.getAbsolutePath() + " to every other server to use it.");
+            return retVal;
+        } catch (IOException | ZstdException ex) {
+            logger.error("Could not load packet dictionary, packets will be compressed without one.", ex);
+            return null;
+        }
+    }
+
+    private static byte @Nullable [] train(@NotNull File @NotNull ... directories) throws IOException {
+        ZstdDictTrainer trainer = new ZstdDictTrainer(MAX_SAMPLE_BYTES, DICTIONARY_BYTES);
+        int samples = 0;
+        for (File directory : directories) {
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".taco"));
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                if (!trainer.addSample(Files.readAllBytes(file.toPath()))) {
+                    break;
+                }
+                samples++;
+            }
+        }
+
+        if (samples < MIN_SAMPLES) {
+            return null;
+        }
+        return trainer.trainSamples();
+    }
+}
@@ -0,0 +1,138 @@
+package me.egg82.antivpn.messaging;
+
+import com.google.common.collect.ImmutableSortedSet;
+import me.egg82.antivpn.messaging.packets.MultiPacket;
+import me.egg82.antivpn.messaging.packets.Packet;
+import me.egg82.antivpn.messaging.packets.vpn.DeleteIPPacket;
+import me.egg82.antivpn.messaging.packets.vpn.DeletePlayerPacket;
+import me.egg82.antivpn.messaging.packets.vpn.IPPacket;
+import me.egg82.antivpn.messaging.packets.vpn.PlayerPacket;
+import me.egg82.antivpn.storage.models.IPModel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Splits IP and player updates across a fixed number of channels, so each server only receives the partitions it subscribes to
+ * instead of every update on the network.
+ * IPs are routed by subnet (/24 for IPv4, /48 for IPv6), so neighbouring addresses land on the same partition,
+ * and players by UUID. Anything else, such as server startup and shutdown, is broadcast to everyone.
+ * <p>
+ * Every server on the network needs the same partition count, or updates will be routed to partitions nobody is listening on.
+ */
+public class PartitionScheme {
+    /**
+     * Returned for packets which go to every server.
+     */
+    public static final int BROADCAST = -1;
+
+    private static final PartitionScheme DISABLED = new PartitionScheme(0, ImmutableSortedSet.of());
+
+    private final int count;
+    private final @NotNull ImmutableSortedSet<@NotNull Integer> subscribed;
+
+    private PartitionScheme(int count, @NotNull ImmutableSortedSet<@NotNull Integer> subscribed) {
+        this.count = count;
+        this.subscribed = subscribed;
+    }
+
+    @NotNull
+    public static PartitionScheme disabled() { return DISABLED; }
+
+    /**
+     * @param count the number of partitions, or 0 to send everything on a single channel
+     * @param subscribed the partitions this server receives, or empty for all of them
+     */
+    @NotNull
+    public static PartitionScheme of(int count, @NotNull Collection<@NotNull Integer> subscribed) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count cannot be < 0.");
+        }
+        if (count == 0) {
+            return DISABLED;
+        }
+
+        ImmutableSortedSet.Builder<Integer> builder = ImmutableSortedSet.naturalOrder();
+        if (subscribed.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                builder.add(i);
+            }
+        } else {
+            for (int partition : subscribed) {
+                if (partition < 0 || partition >= count) {
+                    throw new IllegalArgumentException("Partition " + partition + " is outside of 0-" + (count - 1) + ".");
+                }
+                builder.add(partition);
+            }
+        }
+        return new PartitionScheme(count, builder.build());
+    }
+
+    public boolean isEnabled() { return count > 0; }
+
+    public int getCount() { return count; }
+
+    /**
+     * The partitions this server receives, not including broadcasts.
+     */
+    @NotNull
+    public ImmutableSortedSet<@NotNull Integer> getSubscribed() { return subscribed; }
+
+    /**
+     * The partition a packet should be sent on, or {@link #BROADCAST}.
+     * A {@link MultiPacket} only has a partition if everything in it shares one.
+     */
+    public int partitionOf(@NotNull Packet packet) {
+        if (count == 0) {
+            return BROADCAST;
+        }
+
+        if (packet instanceof IPPacket) {
+            return partitionOf(((IPPacket) packet).getIp());
+        } else if (packet instanceof DeleteIPPacket) {
+            return partitionOf(((DeleteIPPacket) packet).getIp());
+        } else if (packet instanceof PlayerPacket) {
+            return partitionOf(((PlayerPacket) packet).getUuid());
+        } else if (packet instanceof DeletePlayerPacket) {
+            return partitionOf(((DeletePlayerPacket) packet).getUuid());
+        } else if (packet instanceof MultiPacket) {
+            int retVal = BROADCAST;
+            for (Packet p : ((MultiPacket) packet).getPackets()) {
+                int partition = partitionOf(p);
+                if (partition == BROADCAST || (retVal != BROADCAST && partition != retVal)) {
+                    return BROADCAST;
+                }
+                retVal = partition;
+            }
+            return retVal;
+        }
+        return BROADCAST;
+    }
+
+    public int partitionOf(@NotNull String ip) {
+        if (count == 0) {
+            return BROADCAST;
+        }
+
+        // Always 16 bytes, IPv4 is IPv4-mapped
+        byte[] bytes = IPModel.toStoredIp(ip);
+        // The subnet rather than the whole address: the /24 for IPv4, the /48 for IPv6
+        boolean v4 = IPModel.isV4Mapped(bytes);
+        int from = v4 ? 12 : 0;
+        int to = v4 ? 15 : 6;
+        int hash = 1;
+        for (int i = from; i < to; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        return Math.floorMod(hash, count);
+    }
+
+    public int partitionOf(@NotNull UUID player) { return count == 0 ? BROADCAST : Math.floorMod(player.hashCode(), count); }
+
+    /**
+     * The channel, subject or routing key for a partition.
+     */
+    @NotNull
+    public static String getTopic(@NotNull String base, int partition) { return partition == BROADCAST ? base : base + "." + partition; }
+}
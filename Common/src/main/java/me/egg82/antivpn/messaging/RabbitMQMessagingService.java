@@ -17,7 +17,8 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -28,10 +29,19 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
     // https://stackoverflow.com/questions/10407760/is-there-a-performance-difference-between-pooling-connections-or-channels-in-rab
     private RecoverableConnection connection;
 
+    // Publishing on a long-lived channel costs one frame per message, opening a channel per message costs several round trips
+    // Channels aren't safe to publish on concurrently, so each sender borrows one for the duration of a publish
+    private final BlockingQueue<PublisherChannel> channels = new LinkedBlockingQueue<>();
+    private final AtomicInteger channelCount = new AtomicInteger(0);
+    private int poolSize = 4;
+    private long timeout = 5000L;
+
     private volatile boolean closed = false;
     private final ReadWriteLock queueLock = new ReentrantReadWriteLock();
 
     private static final String EXCHANGE_NAME = "avpn-data";
+    // Routing key is the partition number
+    private static final String PARTITION_EXCHANGE_NAME = "avpn-data-partitioned";
 
     private RabbitMQMessagingService(@NotNull String name, @NotNull File packetDirectory) {
         super(name, packetDirectory);
@@ -42,6 +52,10 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
         queueLock.writeLock().lock();
         try {
             closed = true;
+            PublisherChannel publisher;
+            while ((publisher = channels.poll()) != null) {
+                publisher.close();
+            }
             try {
                 connection.close(8000);
             } catch (IOException ignored) {
@@ -104,6 +118,26 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
 
         public @NotNull Builder timeout(int timeout) {
             config.setConnectionTimeout(timeout);
+            service.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * The most publisher channels to keep open. Channels are opened as they're needed and reused from then on.
+         */
+        public @NotNull Builder poolSize(int max) {
+            if (max <= 0) {
+                throw new IllegalArgumentException("max must be greater than zero.");
+            }
+            service.poolSize = max;
+            return this;
+        }
+
+        /**
+         * Receives broadcasts plus the given partitions, and sends partitioned packets only to the servers subscribed to them.
+         */
+        public @NotNull Builder partitions(@NotNull PartitionScheme partitions) {
+            service.partitions = partitions;
             return this;
         }
 
@@ -120,6 +154,12 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
         channel.exchangeDeclare(EXCHANGE_NAME, ExchangeType.FANOUT.getType(), true);
         String queue = channel.queueDeclare().getQueue();
         channel.queueBind(queue, EXCHANGE_NAME, "");
+        if (partitions.isEnabled()) {
+            channel.exchangeDeclare(PARTITION_EXCHANGE_NAME, ExchangeType.DIRECT.getType(), true);
+            for (int partition : partitions.getSubscribed()) {
+                channel.queueBind(queue, PARTITION_EXCHANGE_NAME, String.valueOf(partition));
+            }
+        }
         Consumer consumer = new DefaultConsumer(channel) {
             @Override
             public void handleDelivery(String tag, Envelope envelope, AMQP.BasicProperties properties, byte[] body) throws IOException {
@@ -141,11 +181,9 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
                     return;
                 }
 
-                ByteBuf b = alloc.buffer(body.length, body.length);
                 ByteBuf data = null;
                 try {
-                    b.writeBytes(body);
-                    data = decompressData(b);
+                    data = decompressData(body);
 
                     if (ConfigUtil.getHiddenConfig().doPacketDump()) {
                         dumpReceivedPacket(data);
@@ -177,7 +215,6 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
                         handler.handlePacket(UUID.fromString(properties.getMessageId()), getName(), packet);
                     }
                 } finally {
-                    b.release();
                     if (data != null) {
                         data.release();
                     }
@@ -195,10 +232,10 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
     }
 
     @Override
-    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet) throws IOException, TimeoutException {
+    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, int partition) throws IOException, TimeoutException {
         queueLock.readLock().lock();
-        try (RecoverableChannel channel = getChannel()) {
-            ByteBuf buffer = alloc.buffer(getInitialCapacity());
+        try {
+            ByteBuf buffer = alloc.directBuffer(getInitialCapacity());
             try {
                 buffer.writeByte(PacketManager.getId(packet.getClass()));
                 packet.write(buffer);
@@ -209,8 +246,18 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
                 }
 
                 AMQP.BasicProperties properties = getProperties(DeliveryMode.PERSISTENT, messageId);
-                channel.exchangeDeclare(EXCHANGE_NAME, ExchangeType.FANOUT.getType(), true);
-                channel.basicPublish(EXCHANGE_NAME, "", properties, compressData(buffer));
+                byte[] data = compressData(buffer, !hasVersion(packet));
+
+                PublisherChannel publisher = borrowChannel();
+                try {
+                    if (partition == PartitionScheme.BROADCAST || !partitions.isEnabled()) {
+                        publisher.publish(messageId, EXCHANGE_NAME, "", properties, data);
+                    } else {
+                        publisher.publish(messageId, PARTITION_EXCHANGE_NAME, String.valueOf(partition), properties, data);
+                    }
+                } finally {
+                    returnChannel(publisher);
+                }
             } finally {
                 buffer.release();
             }
@@ -219,6 +266,52 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
         }
     }
 
+    private @NotNull PublisherChannel borrowChannel() throws IOException, TimeoutException {
+        PublisherChannel retVal = channels.poll();
+        if (retVal == null) {
+            if (channelCount.incrementAndGet() <= poolSize) {
+                try {
+                    return new PublisherChannel(getChannel());
+                } catch (IOException | RuntimeException ex) {
+                    channelCount.decrementAndGet();
+                    throw ex;
+                }
+            }
+            channelCount.decrementAndGet();
+
+            try {
+                retVal = channels.poll(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for a publisher channel.", ex);
+            }
+            if (retVal == null) {
+                throw new TimeoutException("Timed out waiting for a publisher channel after " + timeout + "ms.");
+            }
+        }
+
+        if (!retVal.channel.isOpen()) {
+            // Closed by a channel-level error rather than a connection drop, so recovery won't bring it back
+            retVal.close();
+            try {
+                retVal = new PublisherChannel(getChannel());
+            } catch (IOException | RuntimeException ex) {
+                channelCount.decrementAndGet();
+                throw ex;
+            }
+        }
+        return retVal;
+    }
+
+    private void returnChannel(@NotNull PublisherChannel publisher) {
+        if (closed) {
+            publisher.close();
+            channelCount.decrementAndGet();
+            return;
+        }
+        channels.offer(publisher);
+    }
+
     private @NotNull AMQP.BasicProperties getProperties(@NotNull DeliveryMode deliveryMode, @NotNull UUID messageId) {
         Map<String, Object> headers = new HashMap<>();
         headers.put("sender", serverIdBytes);
@@ -255,6 +348,66 @@ public class RabbitMQMessagingService extends AbstractMessagingService {
 
     private @NotNull RecoverableChannel getChannel() throws IOException { return (RecoverableChannel) connection.createChannel(); }
 
+    private class PublisherChannel {
+        private final @NotNull RecoverableChannel channel;
+        // Delivery tag -> message ID, for everything the broker hasn't confirmed yet
+        private final @NotNull ConcurrentNavigableMap<Long, UUID> outstanding = new ConcurrentSkipListMap<>();
+
+        private PublisherChannel(@NotNull RecoverableChannel channel) throws IOException {
+            this.channel = channel;
+            channel.confirmSelect();
+            // The broker confirms in batches; one ack with "multiple" set covers every tag up to and including it
+            channel.addConfirmListener(new ConfirmListener() {
+                @Override
+                public void handleAck(long deliveryTag, boolean multiple) { confirm(deliveryTag, multiple); }
+
+                @Override
+                public void handleNack(long deliveryTag, boolean multiple) {
+                    int count = confirm(deliveryTag, multiple);
+                    logger.warn("RabbitMQ broker for " + getName() + " rejected " + count + " message(s), they will not be seen by other servers.");
+                }
+            });
+            channel.addRecoveryListener(new RecoveryListener() {
+                @Override
+                public void handleRecovery(Recoverable recoverable) {
+                    // Delivery tags start over on a recovered channel, so anything still waiting will never be confirmed
+                    int lost = outstanding.size();
+                    outstanding.clear();
+                    if (lost > 0) {
+                        logger.warn("RabbitMQ connection for " + getName() + " recovered with " + lost + " unconfirmed message(s), they may not have been delivered.");
+                    }
+                }
+
+                @Override
+                public void handleRecoveryStarted(Recoverable recoverable) { }
+            });
+        }
+
+        private void publish(@NotNull UUID messageId, @NotNull String exchange, @NotNull String routingKey, @NotNull AMQP.BasicProperties properties, byte @NotNull [] data) throws IOException {
+            outstanding.put(channel.getNextPublishSeqNo(), messageId);
+            channel.basicPublish(exchange, routingKey, properties, data);
+        }
+
+        private int confirm(long deliveryTag, boolean multiple) {
+            if (!multiple) {
+                return outstanding.remove(deliveryTag) != null ? 1 : 0;
+            }
+            Map<Long, UUID> confirmed = outstanding.headMap(deliveryTag, true);
+            int retVal = confirmed.size();
+            confirmed.clear();
+            return retVal;
+        }
+
+        private void close() {
+            try {
+                if (channel.isOpen()) {
+                    channel.close();
+                }
+            } catch (IOException | TimeoutException | ShutdownSignalException ignored) {
+            }
+        }
+    }
+
     private enum DeliveryMode {
         /**
          * Not logged to disk
@@ -124,6 +124,14 @@ public class RedisMessagingService extends AbstractMessagingService {
             return this;
         }
 
+        /**
+         * Receives broadcasts plus the given partitions, and sends partitioned packets only to the servers subscribed to them.
+         */
+        public @NotNull Builder partitions(@NotNull PartitionScheme partitions) {
+            service.partitions = partitions;
+            return this;
+        }
+
         public @NotNull RedisMessagingService build() {
             service.pool = new JedisPool(config, address, port, timeout, pass == null || pass.isEmpty() ? null : pass);
             // Warm up pool
@@ -140,7 +148,7 @@ public class RedisMessagingService extends AbstractMessagingService {
                     try (Jedis redis = service.pool.getResource()) {
                         redis.subscribe(
                                 service.pubSub,
-                                CHANNEL_NAME_BYTES
+                                getChannels()
                         );
                     } catch (JedisException ex) {
                         if (!service.isClosed()) {
@@ -151,6 +159,20 @@ public class RedisMessagingService extends AbstractMessagingService {
             });
         }
 
+        private byte @NotNull [] @NotNull [] getChannels() {
+            if (!service.partitions.isEnabled()) {
+                return new byte[][] { CHANNEL_NAME_BYTES };
+            }
+
+            byte[][] retVal = new byte[service.partitions.getSubscribed().size() + 1][];
+            retVal[0] = CHANNEL_NAME_BYTES;
+            int i = 1;
+            for (int partition : service.partitions.getSubscribed()) {
+                retVal[i++] = PartitionScheme.getTopic(CHANNEL_NAME, partition).getBytes(StandardCharsets.UTF_8);
+            }
+            return retVal;
+        }
+
         private void warmup(@NotNull JedisPool pool) {
             Jedis[] warmpupArr = new Jedis[config.getMinIdle()];
 
@@ -184,7 +206,7 @@ public class RedisMessagingService extends AbstractMessagingService {
             }
 
             try {
-                if (CHANNEL_NAME.equals(channel)) {
+                if (CHANNEL_NAME.equals(channel) || channel.startsWith(CHANNEL_NAME + ".")) {
                     handleMessage(m);
                 } else {
                     service.logger.warn("Got data from channel that should not exist: " + channel);
@@ -195,11 +217,9 @@ public class RedisMessagingService extends AbstractMessagingService {
         }
 
         private void handleMessage(byte @NotNull [] body) throws IOException {
-            ByteBuf b = alloc.buffer(body.length, body.length);
             ByteBuf data = null;
             try {
-                b.writeBytes(body);
-                data = service.decompressData(b);
+                data = service.decompressData(body);
 
                 if (ConfigUtil.getHiddenConfig().doPacketDump()) {
                     service.dumpReceivedPacket(data);
@@ -247,7 +267,6 @@ public class RedisMessagingService extends AbstractMessagingService {
                     service.handler.handlePacket(messageId, service.getName(), packet);
                 }
             } finally {
-                b.release();
                 if (data != null) {
                     data.release();
                 }
@@ -256,10 +275,10 @@ public class RedisMessagingService extends AbstractMessagingService {
     }
 
     @Override
-    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet) throws IOException {
+    public void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, int partition) throws IOException {
         queueLock.readLock().lock();
         try (Jedis redis = pool.getResource()) {
-            ByteBuf buffer = alloc.buffer(getInitialCapacity());
+            ByteBuf buffer = alloc.directBuffer(getInitialCapacity());
             try {
                 buffer.writeBytes(serverIdBytes);
                 buffer.writeLong(messageId.getMostSignificantBits());
@@ -272,7 +291,10 @@ public class RedisMessagingService extends AbstractMessagingService {
                     dumpSentPacket(buffer);
                 }
 
-                redis.publish(CHANNEL_NAME_BYTES, compressData(buffer));
+                byte[] channel = partitions.isEnabled() && partition != PartitionScheme.BROADCAST
+                        ? PartitionScheme.getTopic(CHANNEL_NAME, partition).getBytes(StandardCharsets.UTF_8)
+                        : CHANNEL_NAME_BYTES;
+                redis.publish(channel, compressData(buffer, !hasVersion(packet)));
             } finally {
                 buffer.release();
             }
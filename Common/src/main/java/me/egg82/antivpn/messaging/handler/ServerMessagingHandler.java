@@ -34,7 +34,13 @@ public class ServerMessagingHandler extends AbstractMessagingHandler {
         }
 
         CollectionProvider.getServerVersions().put(packet.getServer(), packet.getPacketVersion());
-        PacketUtil.queuePacket(new PacketVersionPacket(packet.getServer(), ConfigUtil.getCachedConfig().getServerId(), Packet.VERSION));
+        CollectionProvider.getServerDictionaries().put(packet.getServer(), packet.getDictionaryId());
+        PacketUtil.queuePacket(new PacketVersionPacket(
+                packet.getServer(),
+                ConfigUtil.getCachedConfig().getServerId(),
+                Packet.VERSION,
+                ConfigUtil.getHiddenConfig().getPacketDictionaryId()
+        ));
     }
 
     private void handlePacketVersion(@NotNull PacketVersionPacket packet) {
@@ -47,6 +53,7 @@ public class ServerMessagingHandler extends AbstractMessagingHandler {
         }
 
         CollectionProvider.getServerVersions().put(packet.getServer(), packet.getPacketVersion());
+        CollectionProvider.getServerDictionaries().put(packet.getServer(), packet.getDictionaryId());
     }
 
     private void handleShutdown(@NotNull ShutdownPacket packet) {
@@ -59,5 +66,6 @@ public class ServerMessagingHandler extends AbstractMessagingHandler {
 
     private void handleShutdown(@NotNull UUID serverId) {
         CollectionProvider.getServerVersions().removeByte(serverId);
+        CollectionProvider.getServerDictionaries().remove(serverId);
     }
 }
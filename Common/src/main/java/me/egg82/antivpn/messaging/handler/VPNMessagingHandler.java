@@ -6,7 +6,7 @@ import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
 import me.egg82.antivpn.api.model.player.AbstractPlayerManager;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
-import me.egg82.antivpn.core.Pair;
+import me.egg82.antivpn.core.IPKey;
 import me.egg82.antivpn.messaging.packets.Packet;
 import me.egg82.antivpn.messaging.packets.vpn.DeleteIPPacket;
 import me.egg82.antivpn.messaging.packets.vpn.DeletePlayerPacket;
@@ -54,16 +54,14 @@ public class VPNMessagingHandler extends AbstractMessagingHandler {
         m.setType(packet.getType().ordinal());
         m.setCascade(packet.getCascade());
         m.setConsensus(packet.getConsensus());
-        ipManager.getIpCache().put(new Pair<>(packet.getIp(), packet.getType()), m);
+        ipManager.getIpCache().synchronous().put(IPKey.of(packet.getIp(), packet.getType()), m);
 
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         for (StorageService service : cachedConfig.getStorage()) {
-            IPModel model = service.getOrCreateIpModel(packet.getIp(), packet.getType().ordinal());
-            model.setCascade(packet.getCascade());
-            model.setConsensus(packet.getConsensus());
-            service.storeModel(model);
+            service.storeModel(m);
         }
+        cachedConfig.getTieredStorage().recordIp(m.getIp());
     }
 
     private void handleDeleteIp(@NotNull DeleteIPPacket packet) {
@@ -78,8 +76,8 @@ public class VPNMessagingHandler extends AbstractMessagingHandler {
             return;
         }
 
-        ipManager.getIpCache().invalidate(new Pair<>(packet.getIp(), AlgorithmMethod.CASCADE));
-        ipManager.getIpCache().invalidate(new Pair<>(packet.getIp(), AlgorithmMethod.CONSESNSUS));
+        ipManager.getIpCache().synchronous().invalidate(IPKey.of(packet.getIp(), AlgorithmMethod.CASCADE));
+        ipManager.getIpCache().synchronous().invalidate(IPKey.of(packet.getIp(), AlgorithmMethod.CONSESNSUS));
 
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
@@ -105,14 +103,14 @@ public class VPNMessagingHandler extends AbstractMessagingHandler {
         PlayerModel m = new PlayerModel();
         m.setUuid(packet.getUuid());
         m.setMcleaks(packet.getValue());
-        playerManager.getPlayerCache().put(packet.getUuid(), m);
+        playerManager.getPlayerCache().synchronous().put(packet.getUuid(), m);
 
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         for (StorageService service : cachedConfig.getStorage()) {
-            PlayerModel model = service.getOrCreatePlayerModel(packet.getUuid(), packet.getValue());
-            service.storeModel(model);
+            service.storeModel(m);
         }
+        cachedConfig.getTieredStorage().recordPlayer(m.getUuid());
     }
 
     private void handleDeletePlayer(@NotNull DeletePlayerPacket packet) {
@@ -127,7 +125,7 @@ public class VPNMessagingHandler extends AbstractMessagingHandler {
             return;
         }
 
-        playerManager.getPlayerCache().invalidate(packet.getUuid());
+        playerManager.getPlayerCache().synchronous().invalidate(packet.getUuid());
 
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
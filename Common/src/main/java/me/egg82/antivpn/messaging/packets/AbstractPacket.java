@@ -2,6 +2,7 @@ package me.egg82.antivpn.messaging.packets;
 
 import io.netty.buffer.ByteBuf;
 import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
 import me.egg82.antivpn.logging.GELFLogger;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -101,6 +102,27 @@ public abstract class AbstractPacket implements Packet {
         buf.writeBytes(b);
     }
 
+    protected final @NotNull String readIp(@NotNull ByteBuf buf) {
+        byte[] b = new byte[buf.readByte() == 6 ? 16 : 4];
+        buf.readBytes(b);
+        return IPKey.of(b, null).toAddressString();
+    }
+
+    /**
+     * Writes the IP in binary form: a family byte (4 or 6) followed by 4 or 16 address bytes.
+     */
+    protected final void writeIp(@NotNull String ip, @NotNull ByteBuf buf) {
+        IPKey key = IPKey.of(ip);
+        if (key.isV6()) {
+            buf.writeByte(6);
+            buf.writeLong(key.getHigh());
+            buf.writeLong(key.getLow());
+        } else {
+            buf.writeByte(4);
+            buf.writeInt((int) key.getLow());
+        }
+    }
+
     @Override
     public boolean verifyFullRead(@NotNull ByteBuf buffer) {
         if (buffer.readableBytes() > 0) {
@@ -11,6 +11,7 @@ import java.util.UUID;
 public class InitializationPacket extends AbstractPacket {
     private UUID server;
     private byte packetVersion;
+    private int dictionaryId;
 
     public InitializationPacket(@NotNull UUID sender, @NotNull ByteBuf data) {
         super(sender);
@@ -27,16 +28,26 @@ public class InitializationPacket extends AbstractPacket {
         this.packetVersion = protocolVersion;
     }
 
+    public InitializationPacket(@NotNull UUID server, byte protocolVersion, int dictionaryId) {
+        super(UUIDUtil.EMPTY_UUID);
+        this.server = server;
+        this.packetVersion = protocolVersion;
+        this.dictionaryId = dictionaryId;
+    }
+
     @Override
     public void read(@NotNull ByteBuf buffer) {
         this.server = readUUID(buffer);
         this.packetVersion = buffer.readByte();
+        // Older servers don't send a dictionary ID
+        this.dictionaryId = buffer.isReadable(4) ? buffer.readInt() : 0;
     }
 
     @Override
     public void write(@NotNull ByteBuf buffer) {
         writeUUID(this.server, buffer);
         buffer.writeByte(this.packetVersion);
+        buffer.writeInt(this.dictionaryId);
     }
 
     public @NotNull UUID getServer() { return server; }
@@ -51,6 +62,15 @@ public class InitializationPacket extends AbstractPacket {
         this.packetVersion = packetVersion;
     }
 
+    /**
+     * The packet dictionary the server has loaded, or 0 for none.
+     */
+    public int getDictionaryId() { return dictionaryId; }
+
+    public void setDictionaryId(int dictionaryId) {
+        this.dictionaryId = dictionaryId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -60,17 +80,18 @@ public class InitializationPacket extends AbstractPacket {
             return false;
         }
         InitializationPacket that = (InitializationPacket) o;
-        return packetVersion == that.packetVersion && server.equals(that.server);
+        return packetVersion == that.packetVersion && dictionaryId == that.dictionaryId && server.equals(that.server);
     }
 
     @Override
-    public int hashCode() { return Objects.hash(server, packetVersion); }
+    public int hashCode() { return Objects.hash(server, packetVersion, dictionaryId); }
 
     @Override
     public String toString() {
         return "InitializationPacket{" +
                 "server=" + server +
                 ", packetVersion=" + packetVersion +
+                ", dictionaryId=" + dictionaryId +
                 ", sender=" + sender +
                 '}';
     }
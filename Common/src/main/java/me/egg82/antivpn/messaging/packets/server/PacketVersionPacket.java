@@ -12,6 +12,7 @@ public class PacketVersionPacket extends AbstractPacket {
     private UUID intendedRecipient;
     private UUID server;
     private byte packetVersion;
+    private int dictionaryId;
 
     public PacketVersionPacket(@NotNull UUID sender, @NotNull ByteBuf data) {
         super(sender);
@@ -29,11 +30,21 @@ public class PacketVersionPacket extends AbstractPacket {
         this.packetVersion = protocolVersion;
     }
 
+    public PacketVersionPacket(@NotNull UUID intendedRecipient, @NotNull UUID server, byte protocolVersion, int dictionaryId) {
+        super(UUIDUtil.EMPTY_UUID);
+        this.intendedRecipient = intendedRecipient;
+        this.server = server;
+        this.packetVersion = protocolVersion;
+        this.dictionaryId = dictionaryId;
+    }
+
     @Override
     public void read(@NotNull ByteBuf buffer) {
         this.intendedRecipient = readUUID(buffer);
         this.server = readUUID(buffer);
         this.packetVersion = buffer.readByte();
+        // Older servers don't send a dictionary ID
+        this.dictionaryId = buffer.isReadable(4) ? buffer.readInt() : 0;
     }
 
     @Override
@@ -41,6 +52,7 @@ public class PacketVersionPacket extends AbstractPacket {
         writeUUID(this.intendedRecipient, buffer);
         writeUUID(this.server, buffer);
         buffer.writeByte(this.packetVersion);
+        buffer.writeInt(this.dictionaryId);
     }
 
     public @NotNull UUID getIntendedRecipient() { return intendedRecipient; }
@@ -61,6 +73,15 @@ public class PacketVersionPacket extends AbstractPacket {
         this.packetVersion = packetVersion;
     }
 
+    /**
+     * The packet dictionary the server has loaded, or 0 for none.
+     */
+    public int getDictionaryId() { return dictionaryId; }
+
+    public void setDictionaryId(int dictionaryId) {
+        this.dictionaryId = dictionaryId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -70,11 +91,11 @@ public class PacketVersionPacket extends AbstractPacket {
             return false;
         }
         PacketVersionPacket that = (PacketVersionPacket) o;
-        return packetVersion == that.packetVersion && intendedRecipient.equals(that.intendedRecipient) && server.equals(that.server);
+        return packetVersion == that.packetVersion && dictionaryId == that.dictionaryId && intendedRecipient.equals(that.intendedRecipient) && server.equals(that.server);
     }
 
     @Override
-    public int hashCode() { return Objects.hash(intendedRecipient, server, packetVersion); }
+    public int hashCode() { return Objects.hash(intendedRecipient, server, packetVersion, dictionaryId); }
 
     @Override
     public String toString() {
@@ -83,6 +104,7 @@ public class PacketVersionPacket extends AbstractPacket {
                 ", intendedRecipient=" + intendedRecipient +
                 ", server=" + server +
                 ", packetVersion=" + packetVersion +
+                ", dictionaryId=" + dictionaryId +
                 '}';
     }
 }
@@ -27,12 +27,12 @@ public class DeleteIPPacket extends AbstractPacket {
 
     @Override
     public void read(@NotNull ByteBuf buffer) {
-        this.ip = readString(buffer);
+        this.ip = readIp(buffer);
     }
 
     @Override
     public void write(@NotNull ByteBuf buffer) {
-        writeString(this.ip, buffer);
+        writeIp(this.ip, buffer);
     }
 
     public @NotNull String getIp() { return ip; }
@@ -43,9 +43,9 @@ public class IPPacket extends AbstractPacket {
 
     @Override
     public void read(@NotNull ByteBuf buffer) {
-        this.ip = readString(buffer);
+        this.ip = readIp(buffer);
         AlgorithmMethod method = AlgorithmMethod.values()[readVarInt(buffer)];
-        if (method == AlgorithmMethod.CASCADE) {
+        if (method != AlgorithmMethod.CONSESNSUS) {
             this.cascade = buffer.readBoolean();
         } else {
             this.consensus = buffer.readDouble();
@@ -54,9 +54,9 @@ public class IPPacket extends AbstractPacket {
 
     @Override
     public void write(@NotNull ByteBuf buffer) {
-        writeString(this.ip, buffer);
+        writeIp(this.ip, buffer);
         writeVarInt(this.type.ordinal(), buffer);
-        if (this.type == AlgorithmMethod.CASCADE) {
+        if (this.type != AlgorithmMethod.CONSESNSUS) {
             if (this.cascade == null) {
                 throw new RuntimeException("cascade was selected as type but value is null.");
             }
@@ -7,6 +7,8 @@ import it.unimi.dsi.fastutil.objects.Object2ByteMap;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -17,6 +19,11 @@ public class CollectionProvider {
 
     public static Object2ByteMap<UUID> getServerVersions() { return serverVersions; }
 
+    // Read on every send from the messaging threads while handlers update it, so it needs to be safe to iterate concurrently
+    private static final ConcurrentMap<UUID, Integer> serverDictionaries = new ConcurrentHashMap<>();
+
+    public static ConcurrentMap<UUID, Integer> getServerDictionaries() { return serverDictionaries; }
+
     private static final Cache<UUID, Boolean> messageCache = Caffeine.newBuilder()
             .expireAfterWrite(2L, TimeUnit.MINUTES)
             .expireAfterAccess(30L, TimeUnit.SECONDS)
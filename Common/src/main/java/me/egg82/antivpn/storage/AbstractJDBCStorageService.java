@@ -2,8 +2,11 @@ package me.egg82.antivpn.storage;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import inet.ipaddr.IPAddress;
+import inet.ipaddr.IPAddressString;
 import io.ebean.Database;
 import io.ebean.DatabaseFactory;
+import io.ebean.SqlUpdate;
 import io.ebean.Transaction;
 import io.ebean.config.DatabaseConfig;
 import io.ebean.config.dbplatform.DatabasePlatform;
@@ -22,13 +25,30 @@ import org.reflections8.ReflectionsException;
 import org.reflections8.scanners.ResourcesScanner;
 
 import javax.persistence.PersistenceException;
+import javax.sql.DataSource;
 import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public abstract class AbstractJDBCStorageService extends AbstractStorageService {
+    private static final int IP_CONVERT_BATCH_SIZE = 1000;
+
     protected Database connection;
     protected HikariDataSource source;
+    protected @Nullable HikariDataSource readSource = null;
+    protected @Nullable ReplicaDataSource replicaSource = null;
+
+    private String ipUpsert;
+    private String playerUpsert;
+    private String dataUpsert;
 
     protected AbstractJDBCStorageService(@NotNull String name) {
         super(name);
@@ -41,6 +61,12 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
             closed = true;
             connection.shutdown(false, false);
             source.close();
+            if (readSource != null) {
+                readSource.close();
+            }
+            if (replicaSource != null) {
+                replicaSource.close();
+            }
         } finally {
             queueLock.writeLock().unlock();
         }
@@ -60,6 +86,8 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
     public void storeModels(@NotNull Collection<@NotNull ? extends BaseModel> models) {
         queueLock.readLock().lock();
         try (Transaction tx = connection.beginTransaction()) {
+            // Every model is a single upsert statement, so the whole set goes out as JDBC batches
+            tx.setBatchMode(true);
             for (BaseModel model : models) {
                 createOrUpdate(model, true);
             }
@@ -88,27 +116,23 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
     public @NotNull IPModel getOrCreateIpModel(@NotNull String ip, int type) {
         queueLock.readLock().lock();
         try {
-            IPModel model = new QIPModel(connection)
-                    .ip.equalTo(ip)
+            IPModel model = connection.find(IPModel.class).where()
+                    .eq("ip", IPModel.toStoredIp(ip))
                     .findOne();
-            if (model == null) {
-                model = new IPModel();
-                model.setIp(ip);
-                model.setType(type);
-                connection.save(model);
-                model = new QIPModel(connection)
-                        .ip.equalTo(ip)
-                        .findOne();
-                if (model == null) {
-                    throw new PersistenceException("findOne() returned null after saving.");
-                }
+            if (model != null && model.getType() == type) {
+                return model;
             }
-            if (model.getType() != type) {
-                model.setType(type);
-                model.setModified(null);
-                connection.save(model);
+
+            IPModel m = new IPModel();
+            m.setIp(ip);
+            m.setType(type);
+            if (model != null) {
+                m.setCascade(model.getCascade());
+                m.setConsensus(model.getConsensus());
             }
-            return model;
+            return upsertAndGet(m, () -> connection.find(IPModel.class).where()
+                    .eq("ip", IPModel.toStoredIp(ip))
+                    .findOne());
         } finally {
             queueLock.readLock().unlock();
         }
@@ -118,9 +142,9 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
     public @Nullable IPModel getIpModel(@NotNull String ip, long cacheTimeMillis) {
         queueLock.readLock().lock();
         try {
-            return new QIPModel(connection)
-                    .ip.equalTo(ip)
-                    .modified.after(Instant.now().minusMillis(cacheTimeMillis))
+            return connection.find(IPModel.class).where()
+                    .eq("ip", IPModel.toStoredIp(ip))
+                    .gt("modified", Instant.now().minusMillis(cacheTimeMillis))
                     .findOne();
         } finally {
             queueLock.readLock().unlock();
@@ -164,6 +188,96 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         }
     }
 
+    @Override
+    public @NotNull List<@NotNull IPModel> getIpsAfter(long afterId, int max) {
+        queueLock.readLock().lock();
+        try {
+            return new QIPModel(connection)
+                    .id.greaterThan(afterId)
+                    .orderBy().id.asc()
+                    .setMaxRows(max)
+                    .findList();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NotNull List<@NotNull IPModel> getIpRange(@NotNull String range, long cacheTimeMillis) {
+        byte[][] bounds = getStoredRange(range);
+        queueLock.readLock().lock();
+        try {
+            return connection.find(IPModel.class).where()
+                    .between("ip", bounds[0], bounds[1])
+                    .gt("modified", Instant.now().minusMillis(cacheTimeMillis))
+                    .findList();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int deleteIpRange(@NotNull String range) {
+        byte[][] bounds = getStoredRange(range);
+        queueLock.readLock().lock();
+        try {
+            return connection.find(IPModel.class).where()
+                    .between("ip", bounds[0], bounds[1])
+                    .delete();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int purgeIps(long cacheTimeMillis, int max) {
+        queueLock.readLock().lock();
+        try {
+            Instant cutoff = Instant.now().minusMillis(cacheTimeMillis);
+            // Oldest first off the modified index, then delete by primary key so each batch stays small
+            List<Long> ids = new QIPModel(connection)
+                    .modified.before(cutoff)
+                    .orderBy().modified.asc()
+                    .setMaxRows(max)
+                    .findIds();
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            return new QIPModel(connection)
+                    .id.in(ids)
+                    .modified.before(cutoff)
+                    .delete();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NotNull List<@NotNull IPModel> getRecentIps(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max) {
+        queueLock.readLock().lock();
+        try {
+            // Walks the modified index backwards, id breaks ties between rows written in the same instant
+            QIPModel query = new QIPModel(connection)
+                    .modified.after(Instant.now().minusMillis(cacheTimeMillis));
+            if (beforeModified != null) {
+                query = query
+                        .or()
+                            .modified.lessThan(beforeModified)
+                            .and()
+                                .modified.equalTo(beforeModified)
+                                .id.lessThan(beforeId)
+                            .endAnd()
+                        .endOr();
+            }
+            return query
+                    .orderBy().modified.desc().id.desc()
+                    .setMaxRows(max)
+                    .findList();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
     @Override
     public @NotNull PlayerModel getOrCreatePlayerModel(@NotNull UUID player, boolean isMcLeaks) {
         queueLock.readLock().lock();
@@ -171,24 +285,16 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
             PlayerModel model = new QPlayerModel(connection)
                     .uuid.equalTo(player)
                     .findOne();
-            if (model == null) {
-                model = new PlayerModel();
-                model.setUuid(player);
-                model.setMcleaks(isMcLeaks);
-                connection.save(model);
-                model = new QPlayerModel(connection)
-                        .uuid.equalTo(player)
-                        .findOne();
-                if (model == null) {
-                    throw new PersistenceException("findOne() returned null after saving.");
-                }
+            if (model != null && model.isMcleaks() == isMcLeaks) {
+                return model;
             }
-            if (model.isMcleaks() != isMcLeaks) {
-                model.setMcleaks(isMcLeaks);
-                model.setModified(null);
-                connection.save(model);
-            }
-            return model;
+
+            PlayerModel m = new PlayerModel();
+            m.setUuid(player);
+            m.setMcleaks(isMcLeaks);
+            return upsertAndGet(m, () -> new QPlayerModel(connection)
+                    .uuid.equalTo(player)
+                    .findOne());
         } finally {
             queueLock.readLock().unlock();
         }
@@ -244,6 +350,67 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         }
     }
 
+    @Override
+    public @NotNull List<@NotNull PlayerModel> getPlayersAfter(long afterId, int max) {
+        queueLock.readLock().lock();
+        try {
+            return new QPlayerModel(connection)
+                    .id.greaterThan(afterId)
+                    .orderBy().id.asc()
+                    .setMaxRows(max)
+                    .findList();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int purgePlayers(long cacheTimeMillis, int max) {
+        queueLock.readLock().lock();
+        try {
+            Instant cutoff = Instant.now().minusMillis(cacheTimeMillis);
+            List<Long> ids = new QPlayerModel(connection)
+                    .modified.before(cutoff)
+                    .orderBy().modified.asc()
+                    .setMaxRows(max)
+                    .findIds();
+            if (ids.isEmpty()) {
+                return 0;
+            }
+            return new QPlayerModel(connection)
+                    .id.in(ids)
+                    .modified.before(cutoff)
+                    .delete();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public @NotNull List<@NotNull PlayerModel> getRecentPlayers(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max) {
+        queueLock.readLock().lock();
+        try {
+            QPlayerModel query = new QPlayerModel(connection)
+                    .modified.after(Instant.now().minusMillis(cacheTimeMillis));
+            if (beforeModified != null) {
+                query = query
+                        .or()
+                            .modified.lessThan(beforeModified)
+                            .and()
+                                .modified.equalTo(beforeModified)
+                                .id.lessThan(beforeId)
+                            .endAnd()
+                        .endOr();
+            }
+            return query
+                    .orderBy().modified.desc().id.desc()
+                    .setMaxRows(max)
+                    .findList();
+        } finally {
+            queueLock.readLock().unlock();
+        }
+    }
+
     @Override
     public @NotNull DataModel getOrCreateDataModel(@NotNull String key, String value) {
         queueLock.readLock().lock();
@@ -251,24 +418,16 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
             DataModel model = new QDataModel(connection)
                     .key.equalTo(key)
                     .findOne();
-            if (model == null) {
-                model = new DataModel();
-                model.setKey(key);
-                model.setValue(value);
-                connection.save(model);
-                model = new QDataModel(connection)
-                        .key.equalTo(key)
-                        .findOne();
-                if (model == null) {
-                    throw new PersistenceException("findOne() returned null after saving.");
-                }
+            if (model != null && Objects.equals(model.getValue(), value)) {
+                return model;
             }
-            if (!Objects.equals(model.getValue(), value)) {
-                model.setValue(value);
-                model.setModified(null);
-                connection.save(model);
-            }
-            return model;
+
+            DataModel m = new DataModel();
+            m.setKey(key);
+            m.setValue(value);
+            return upsertAndGet(m, () -> new QDataModel(connection)
+                    .key.equalTo(key)
+                    .findOne());
         } finally {
             queueLock.readLock().unlock();
         }
@@ -299,10 +458,60 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
     }
 
     protected final void createSource(@NotNull HikariConfig config, @NotNull DatabasePlatform platform, boolean quote, @NotNull String scriptsName) {
+        initSource(config, primary -> null, platform, quote, scriptsName);
+    }
+
+    /**
+     * When readConfig is given, queries outside of an explicit transaction go to that pool instead,
+     * and the main pool is left to writes.
+     */
+    protected final void createSource(@NotNull HikariConfig config, @Nullable HikariConfig readConfig, @NotNull DatabasePlatform platform, boolean quote, @NotNull String scriptsName) {
+        initSource(config, primary -> {
+            if (readConfig == null) {
+                return null;
+            }
+            readConfig.setAutoCommit(false);
+            readSource = new HikariDataSource(readConfig);
+            return readSource;
+        }, platform, quote, scriptsName);
+    }
+
+    /**
+     * Queries outside of an explicit transaction are spread across the replicas, falling back to the primary
+     * when they're all too far behind. Writes always go to the primary.
+     */
+    protected final void createSource(
+            @NotNull HikariConfig config,
+            @NotNull List<@NotNull HikariConfig> replicaConfigs,
+            long maxReplicaLagMillis,
+            @NotNull ReplicaDataSource.LagProbe lagProbe,
+            @NotNull DatabasePlatform platform,
+            boolean quote,
+            @NotNull String scriptsName
+    ) {
+        initSource(config, primary -> {
+            if (replicaConfigs.isEmpty()) {
+                return null;
+            }
+            List<HikariDataSource> replicas = new ArrayList<>();
+            for (HikariConfig replicaConfig : replicaConfigs) {
+                replicaConfig.setAutoCommit(false);
+                replicas.add(new HikariDataSource(replicaConfig));
+            }
+            replicaSource = new ReplicaDataSource(primary, replicas, maxReplicaLagMillis, lagProbe);
+            return replicaSource;
+        }, platform, quote, scriptsName);
+    }
+
+    private void initSource(@NotNull HikariConfig config, @NotNull Function<HikariDataSource, DataSource> readSourceFunction, @NotNull DatabasePlatform platform, boolean quote, @NotNull String scriptsName) {
         config.setAutoCommit(false);
         source = new HikariDataSource(config);
         DatabaseConfig dbConfig = new DatabaseConfig();
         dbConfig.setDataSource(source);
+        DataSource readDataSource = readSourceFunction.apply(source);
+        if (readDataSource != null) {
+            dbConfig.setReadOnlyDataSource(readDataSource);
+        }
         dbConfig.setDatabasePlatform(platform);
         dbConfig.setAllQuotedIdentifiers(quote);
         dbConfig.setDefaultServer(false);
@@ -311,12 +520,16 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         dbConfig.setClasses(Arrays.asList(BaseModel.class, IPModel.class, PlayerModel.class, DataModel.class));
         connection = DatabaseFactory.createWithContextClassLoader(dbConfig, getClass().getClassLoader());
 
+        ipUpsert = getUpsertQuery(platform, "avpn_6_ip", "ip", "type", "cascade", "consensus");
+        playerUpsert = getUpsertQuery(platform, "avpn_6_player", "uuid", "mcleaks");
+        dataUpsert = getUpsertQuery(platform, "avpn_6_data", "key", "value");
+
         DataModel model;
         try {
-            model = getDataModel("schema-version");
+            model = getSchemaVersion();
         } catch (PersistenceException ignored) {
             connection.script().run("/db/" + scriptsName + ".sql");
-            model = getDataModel("schema-version");
+            model = getSchemaVersion();
         }
         if (model == null) {
             model = new DataModel();
@@ -331,9 +544,16 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         List<File> files = getResourceDirs("db.migration");
         for (File file : files) {
             if (!VersionUtil.isAtLeast(file.getParentFile().getName().substring(1), '_', model.getValue(), '.') && file.getName().equals(scriptsName + ".sql")) {
+                String version = file.getParentFile().getName().substring(1).replace('_', '.');
+                if (version.equals("1.4")) {
+                    // 1.3 added ip_bin and filled in whatever the engine could convert in SQL, 1.4 replaces ip with it
+                    fillStoredIps(platform);
+                }
                 connection.script().run("/" + file.getPath().replace('\\', '/'));
-                model.setValue(file.getParentFile().getName().substring(1).replace('_', '.'));
+                model.setValue(version);
                 model.setModified(null);
+                // Saved after every step, so an interrupted upgrade picks up where it left off
+                connection.save(model);
             }
         }
 
@@ -346,6 +566,86 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         }
     }
 
+    /**
+     * Reads the schema version on the primary. Outside of a transaction Ebean would send it to a replica,
+     * which may not have the table yet or may still be on an older version.
+     */
+    private @Nullable DataModel getSchemaVersion() {
+        try (Transaction ignored = connection.beginTransaction()) {
+            return getDataModel("schema-version");
+        }
+    }
+
+    /**
+     * Converts the text IP of every avpn_6_ip row which doesn't have an ip_bin yet, in pages off the primary key.
+     * Rows which can't be parsed are removed, since they could never have been looked up anyway.
+     */
+    private void fillStoredIps(@NotNull DatabasePlatform platform) {
+        String open = platform.getOpenQuote();
+        String close = platform.getCloseQuote();
+        String table = open + "avpn_6_ip" + close;
+        String id = open + "id" + close;
+        String ipBin = open + "ip_bin" + close;
+
+        long start = System.currentTimeMillis();
+        int converted = 0;
+        int removed = 0;
+        try (
+                Connection c = source.getConnection();
+                PreparedStatement select = c.prepareStatement("SELECT " + id + ", " + open + "ip" + close + " FROM " + table + " WHERE " + ipBin + " IS NULL AND " + id + " > ? ORDER BY " + id);
+                PreparedStatement update = c.prepareStatement("UPDATE " + table + " SET " + ipBin + " = ? WHERE " + id + " = ?");
+                PreparedStatement delete = c.prepareStatement("DELETE FROM " + table + " WHERE " + id + " = ?")
+        ) {
+            select.setMaxRows(IP_CONVERT_BATCH_SIZE);
+            long lastId = 0L;
+            while (true) {
+                int rows = 0;
+                select.setLong(1, lastId);
+                try (ResultSet results = select.executeQuery()) {
+                    while (results.next()) {
+                        rows++;
+                        lastId = results.getLong(1);
+                        byte[] stored;
+                        try {
+                            stored = IPModel.toStoredIp(results.getString(2));
+                        } catch (IllegalArgumentException ignored) {
+                            delete.setLong(1, lastId);
+                            delete.addBatch();
+                            removed++;
+                            continue;
+                        }
+                        update.setBytes(1, stored);
+                        update.setLong(2, lastId);
+                        update.addBatch();
+                        converted++;
+                    }
+                }
+                if (rows == 0) {
+                    break;
+                }
+                update.executeBatch();
+                delete.executeBatch();
+                c.commit();
+            }
+        } catch (SQLException ex) {
+            throw new PersistenceException("Could not convert stored IPs to binary.", ex);
+        }
+
+        if (converted > 0 || removed > 0) {
+            logger.info("Converted " + converted + " stored IPs to binary (" + removed + " invalid removed) in " + (System.currentTimeMillis() - start) + "ms.");
+        }
+    }
+
+    /**
+     * Runs a query against a single pooled connection and returns the first column of the first row.
+     * Used for things like PRAGMA which are per-connection and can't go through Ebean.
+     */
+    protected final @Nullable String queryValue(@NotNull HikariDataSource dataSource, @NotNull String sql) throws SQLException {
+        try (Connection c = dataSource.getConnection(); Statement statement = c.createStatement(); ResultSet results = statement.executeQuery(sql)) {
+            return results.next() ? results.getString(1) : null;
+        }
+    }
+
     private @NotNull List<@NotNull File> getResourceDirs(@NotNull String prefix) {
         List<File> retVal = new ArrayList<>();
 
@@ -366,20 +666,19 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
             int[] v2 = VersionUtil.parseVersion(f2.getParentFile().getName().substring(1), '_');
 
             for (int i = 0; i < v1.length; i++) {
-                if (i > v2.length) {
+                if (i >= v2.length) {
                     // We're looking for a version deeper than what we have
                     // eg. 1.12.2 -> 1.12
                     return 1;
                 }
+                // Ascending, so migrations run oldest -> newest
                 if (v2[i] > v1[i]) {
-                    // The version we're at now is greater than the one we want
-                    // eg. 1.11 -> 1.13
-                    return 1;
+                    // eg. 1.1 -> 1.2
+                    return -1;
                 }
                 if (v2[i] < v1[i]) {
-                    // The version we're at now is less than the one we want
-                    // eg. 1.13 -> 1.11
-                    return -1;
+                    // eg. 1.2 -> 1.1
+                    return 1;
                 }
             }
             return 0;
@@ -391,7 +690,7 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         BaseModel retVal = null;
         if (model instanceof IPModel) {
             IPModel m = new IPModel();
-            m.setIp(((IPModel) model).getIp());
+            m.setIpBytes(((IPModel) model).getIpBytes());
             m.setType(((IPModel) model).getType());
             m.setCascade(((IPModel) model).getCascade());
             m.setConsensus(((IPModel) model).getConsensus());
@@ -418,58 +717,144 @@ public abstract class AbstractJDBCStorageService extends AbstractStorageService
         return retVal;
     }
 
+    /**
+     * Upserts the model and reads the row back in the same transaction.
+     * Reads outside of a transaction can go to a read pool or replica which hasn't seen the write yet.
+     */
+    private <T extends BaseModel> @NotNull T upsertAndGet(@NotNull BaseModel model, @NotNull Supplier<@Nullable T> reader) {
+        try (Transaction tx = connection.beginTransaction()) {
+            createOrUpdate(model, false);
+            T retVal = reader.get();
+            if (retVal == null) {
+                throw new PersistenceException("findOne() returned null after saving.");
+            }
+            tx.commit();
+            return retVal;
+        }
+    }
+
     private void createOrUpdate(@NotNull BaseModel model, boolean keepModified) {
+        SqlUpdate update = upsert(model, keepModified);
+        if (update != null) {
+            update.execute();
+        }
+    }
+
+    /**
+     * Builds a single-statement insert-or-update for the model, keyed on its unique column.
+     * Parameters are always bound as created, modified, unique key, then the remaining columns.
+     */
+    private @Nullable SqlUpdate upsert(@NotNull BaseModel model, boolean keepModified) {
+        Instant now = Instant.now();
+        Instant created = model.getCreated() != null ? model.getCreated() : now;
+        Instant modified = keepModified && model.getModified() != null ? model.getModified() : now;
+
+        SqlUpdate retVal;
         if (model instanceof IPModel) {
-            IPModel m = new QIPModel(connection)
-                    .ip.equalTo(((IPModel) model).getIp())
-                    .findOne();
-            if (m == null) {
-                m = (IPModel) duplicateModel(model, keepModified);
-                if (m == null) {
-                    return;
-                }
-                connection.save(m);
-            } else {
-                m.setType(((IPModel) model).getType());
-                m.setCascade(((IPModel) model).getCascade());
-                m.setConsensus(((IPModel) model).getConsensus());
-                m.setCreated(model.getCreated());
-                m.setModified(keepModified ? model.getModified() : null);
-                connection.update(m);
-            }
+            IPModel m = (IPModel) model;
+            retVal = connection.sqlUpdate(ipUpsert);
+            retVal.setParameter(3, m.getIpBytes());
+            retVal.setParameter(4, m.getType());
+            bind(retVal, 5, m.getCascade(), Types.BOOLEAN);
+            bind(retVal, 6, m.getConsensus(), Types.DOUBLE);
         } else if (model instanceof PlayerModel) {
-            PlayerModel m = new QPlayerModel(connection)
-                    .uuid.equalTo(((PlayerModel) model).getUuid())
-                    .findOne();
-            if (m == null) {
-                m = (PlayerModel) duplicateModel(model, keepModified);
-                if (m == null) {
-                    return;
-                }
-                connection.save(m);
-            } else {
-                m.setMcleaks(((PlayerModel) model).isMcleaks());
-                m.setCreated(model.getCreated());
-                m.setModified(keepModified ? model.getModified() : null);
-                connection.update(m);
-            }
+            PlayerModel m = (PlayerModel) model;
+            retVal = connection.sqlUpdate(playerUpsert);
+            retVal.setParameter(3, m.getUuid().toString());
+            retVal.setParameter(4, m.isMcleaks());
         } else if (model instanceof DataModel) {
-            DataModel m = new QDataModel(connection)
-                    .key.equalTo(((DataModel) model).getKey())
-                    .findOne();
-            if (m == null) {
-                m = (DataModel) duplicateModel(model, keepModified);
-                if (m == null) {
-                    return;
+            DataModel m = (DataModel) model;
+            retVal = connection.sqlUpdate(dataUpsert);
+            retVal.setParameter(3, m.getKey());
+            bind(retVal, 4, m.getValue(), Types.VARCHAR);
+        } else {
+            logger.error("upsert was given an unknown model type.");
+            return null;
+        }
+
+        retVal.setParameter(1, created);
+        retVal.setParameter(2, modified);
+        return retVal;
+    }
+
+    /**
+     * Returns the lowest and highest stored IP in the range (eg. "10.0.0.0/8" or a single IP).
+     */
+    private static byte @NotNull [] @NotNull [] getStoredRange(@NotNull String range) {
+        IPAddress address = new IPAddressString(range).getAddress();
+        if (address == null) {
+            throw new IllegalArgumentException("range is invalid.");
+        }
+        address = address.toPrefixBlock();
+        return new byte[][] { IPModel.toStoredIp(address.getLower().getBytes()), IPModel.toStoredIp(address.getUpper().getBytes()) };
+    }
+
+    private static void bind(@NotNull SqlUpdate update, int position, @Nullable Object value, int jdbcType) {
+        if (value == null) {
+            update.setNull(position, jdbcType);
+        } else {
+            update.setParameter(position, value);
+        }
+    }
+
+    /**
+     * Returns the native upsert statement for the platform.
+     * MySQL/MariaDB use ON DUPLICATE KEY UPDATE, PostgreSQL/SQLite use ON CONFLICT and H2 uses a standard MERGE.
+     * Updates keep the row's created time and bump its version, the same as an Ebean update would.
+     */
+    protected @NotNull String getUpsertQuery(@NotNull DatabasePlatform platform, @NotNull String table, @NotNull String key, @NotNull String @NotNull ... columns) {
+        String open = platform.getOpenQuote();
+        String close = platform.getCloseQuote();
+        String t = open + table + close;
+        String version = open + "version" + close;
+        String modified = open + "modified" + close;
+
+        List<String> inserted = new ArrayList<>();
+        inserted.add(open + "created" + close);
+        inserted.add(modified);
+        inserted.add(open + key + close);
+        for (String column : columns) {
+            inserted.add(open + column + close);
+        }
+        List<String> updated = new ArrayList<>(inserted.subList(1, 2));
+        updated.addAll(inserted.subList(3, inserted.size()));
+
+        String insertColumns = version + ", " + String.join(", ", inserted);
+        String params = String.join(", ", Collections.nCopies(inserted.size(), "?"));
+
+        StringBuilder retVal = new StringBuilder();
+        switch (platform.getPlatform().base()) {
+            case MYSQL:
+            case MARIADB:
+                retVal.append("INSERT INTO ").append(t).append(" (").append(insertColumns).append(") VALUES (1, ").append(params).append(") ON DUPLICATE KEY UPDATE ");
+                retVal.append(version).append(" = ").append(version).append(" + 1");
+                for (String column : updated) {
+                    retVal.append(", ").append(column).append(" = VALUES(").append(column).append(')');
                 }
-                connection.save(m);
-            } else {
-                m.setKey(((DataModel) model).getKey());
-                m.setValue(((DataModel) model).getValue());
-                m.setCreated(model.getCreated());
-                m.setModified(keepModified ? model.getModified() : null);
-                connection.update(m);
-            }
+                break;
+            case POSTGRES:
+            case SQLITE:
+                retVal.append("INSERT INTO ").append(t).append(" (").append(insertColumns).append(") VALUES (1, ").append(params).append(") ON CONFLICT (").append(open).append(key).append(close).append(") DO UPDATE SET ");
+                retVal.append(version).append(" = ").append(t).append('.').append(version).append(" + 1");
+                for (String column : updated) {
+                    retVal.append(", ").append(column).append(" = EXCLUDED.").append(column);
+                }
+                break;
+            case H2:
+                retVal.append("MERGE INTO ").append(t).append(" USING (VALUES (").append(params).append(")) s (").append(String.join(", ", inserted)).append(") ON ").append(t).append('.').append(open).append(key).append(close).append(" = s.").append(open).append(key).append(close);
+                retVal.append(" WHEN MATCHED THEN UPDATE SET ").append(version).append(" = ").append(t).append('.').append(version).append(" + 1");
+                for (String column : updated) {
+                    retVal.append(", ").append(column).append(" = s.").append(column);
+                }
+                retVal.append(" WHEN NOT MATCHED THEN INSERT (").append(insertColumns).append(") VALUES (1");
+                for (String column : inserted) {
+                    retVal.append(", s.").append(column);
+                }
+                retVal.append(')');
+                break;
+            default:
+                throw new PersistenceException("No upsert is available for platform " + platform.getPlatform() + ".");
         }
+        return retVal.toString();
     }
 }
@@ -0,0 +1,198 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.api.VPNAPIImpl;
+import me.egg82.antivpn.api.model.ip.AbstractIPManager;
+import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
+import me.egg82.antivpn.api.model.player.AbstractPlayerManager;
+import me.egg82.antivpn.config.CachedConfig;
+import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.storage.models.BaseModel;
+import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.storage.models.PlayerModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * Fills the IP and player caches with the most recently modified rows from the master storage engine.
+ * After a restart every player reconnects at once, and most of them were checked shortly before;
+ * warming the caches first means those checks are answered from memory instead of all hitting storage together.
+ * <p>
+ * Runs in the background and is rate-limited so it doesn't compete with real lookups.
+ * Entries already in the cache are left alone, since anything looked up in the meantime is at least as fresh.
+ * Rows which would expire in storage before their memory cache entry does are skipped.
+ * Stops early when cancelled, when storage is closed, or when the managers are replaced by a reload.
+ */
+public class CacheWarmer {
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_CacheWarmer_%d").setDaemon(true).build();
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull AbstractIPManager ipManager;
+    private final @NotNull AbstractPlayerManager playerManager;
+
+    private final @NotNull CompletableFuture<Void> future = new CompletableFuture<>();
+    private volatile boolean cancelled = false;
+
+    public CacheWarmer(@NotNull AbstractIPManager ipManager, @NotNull AbstractPlayerManager playerManager) {
+        this.ipManager = ipManager;
+        this.playerManager = playerManager;
+    }
+
+    /**
+     * Starts warming in the background, if enabled. The returned future completes once warming has stopped for any reason.
+     */
+    @NotNull
+    public CompletableFuture<Void> start() {
+        CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
+        StorageService service = getMaster(cachedConfig);
+        if (!cachedConfig.getWarmUpEnabled() || service == null || (cachedConfig.getWarmUpIps() <= 0 && cachedConfig.getWarmUpPlayers() <= 0)) {
+            future.complete(null);
+            return future;
+        }
+
+        threadFactory.newThread(() -> {
+            try {
+                warm(cachedConfig, service);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            } catch (Exception ex) {
+                // Nothing lost, lookups just go to storage as they would have anyway
+                logger.error("Could not warm caches from storage " + service.getName() + ".", ex);
+            } finally {
+                future.complete(null);
+            }
+        }).start();
+        return future;
+    }
+
+    public void cancel() { cancelled = true; }
+
+    public boolean isCancelled() { return cancelled; }
+
+    @NotNull
+    public CompletableFuture<Void> getFuture() { return future; }
+
+    private void warm(@NotNull CachedConfig cachedConfig, @NotNull StorageService service) throws InterruptedException {
+        long start = System.currentTimeMillis();
+        // Warmed entries live for the full memory cache time, so only take rows which stay valid in storage for at least that long
+        long cacheTime = cachedConfig.getSourceCacheTime() - cachedConfig.getCacheTime().getMillis();
+        if (cacheTime <= 0L) {
+            if (cachedConfig.getDebug()) {
+                logger.info("Skipping cache warm-up, the memory cache time is longer than the source cache time.");
+            }
+            return;
+        }
+        int batchSize = cachedConfig.getWarmUpBatchSize();
+        int rate = cachedConfig.getWarmUpRate();
+
+        int ips = warm(
+                (before, beforeId) -> service.getRecentIps(cacheTime, before, beforeId, batchSize),
+                this::putIp,
+                service,
+                cachedConfig.getWarmUpIps(),
+                batchSize,
+                rate
+        );
+        int players = warm(
+                (before, beforeId) -> service.getRecentPlayers(cacheTime, before, beforeId, batchSize),
+                this::putPlayer,
+                service,
+                cachedConfig.getWarmUpPlayers(),
+                batchSize,
+                rate
+        );
+
+        logger.info("Warmed caches with " + ips + " IPs and " + players + " players from storage " + service.getName() + " in " + (System.currentTimeMillis() - start) + "ms" + (isStopped(service) ? " (stopped early)." : "."));
+    }
+
+    private <T extends BaseModel> int warm(
+            @NotNull PageReader<T> reader,
+            @NotNull Consumer<@NotNull T> consumer,
+            @NotNull StorageService service,
+            int max,
+            int batchSize,
+            int rate
+    ) throws InterruptedException {
+        int retVal = 0;
+        Instant before = null;
+        long beforeId = Long.MAX_VALUE;
+
+        while (retVal < max && !isStopped(service)) {
+            long batchStart = System.currentTimeMillis();
+            List<T> page = reader.read(before, beforeId);
+            for (T model : page) {
+                if (retVal >= max) {
+                    break;
+                }
+                consumer.accept(model);
+                retVal++;
+            }
+            if (page.size() < batchSize) {
+                break;
+            }
+
+            T last = page.get(page.size() - 1);
+            if (last.getModified() == null || last.getId() == null) {
+                break;
+            }
+            before = last.getModified();
+            beforeId = last.getId();
+
+            if (rate > 0) {
+                // Spread the batches out so the rows per second never go over the configured rate
+                long wait = page.size() * 1000L / rate - (System.currentTimeMillis() - batchStart);
+                if (wait > 0L) {
+                    Thread.sleep(wait);
+                }
+            }
+        }
+        return retVal;
+    }
+
+    private void putIp(@NotNull IPModel model) {
+        AlgorithmMethod[] methods = AlgorithmMethod.values();
+        if (model.getType() < 0 || model.getType() >= methods.length) {
+            return;
+        }
+        ipManager.getIpCache().asMap().putIfAbsent(IPKey.of(model.getIp(), methods[model.getType()]), CompletableFuture.completedFuture(model));
+    }
+
+    private void putPlayer(@NotNull PlayerModel model) {
+        playerManager.getPlayerCache().asMap().putIfAbsent(model.getUuid(), CompletableFuture.completedFuture(model));
+    }
+
+    private boolean isStopped(@NotNull StorageService service) {
+        if (cancelled || service.isClosed()) {
+            return true;
+        }
+        // A reload builds new managers, so anything put into these caches would be thrown away
+        VPNAPIImpl api = VPNAPIImpl.get();
+        return api == null || api.getIPManager() != ipManager || api.getPlayerManager() != playerManager;
+    }
+
+    @Nullable
+    private static StorageService getMaster(@NotNull CachedConfig cachedConfig) {
+        for (StorageService service : cachedConfig.getStorage()) {
+            if (!service.isClosed()) {
+                return service;
+            }
+        }
+        return null;
+    }
+
+    @FunctionalInterface
+    private interface PageReader<T> {
+        @NotNull List<@NotNull T> read(@Nullable Instant before, long beforeId);
+    }
+}
@@ -7,6 +7,7 @@ import org.jetbrains.annotations.NotNull;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.sql.SQLException;
 import java.util.Properties;
 
 public class H2StorageService extends AbstractJDBCStorageService {
@@ -16,6 +17,22 @@ public class H2StorageService extends AbstractJDBCStorageService {
 
     public static @NotNull H2StorageService.Builder builder(@NotNull String name) { return new H2StorageService.Builder(name); }
 
+    private void logSettings() {
+        try {
+            logger.info("H2 engine " + name + ": MV_STORE=" + getSetting("MV_STORE")
+                    + ", CACHE_MAX_SIZE=" + getSetting("info.CACHE_MAX_SIZE") + "MB"
+                    + ", WRITE_DELAY=" + getSetting("WRITE_DELAY") + "ms"
+                    + ", LOCK_TIMEOUT=" + queryValue(source, "SELECT LOCK_TIMEOUT();") + "ms"
+                    + ", pool=" + source.getMaximumPoolSize());
+        } catch (SQLException ex) {
+            logger.warn("Could not read settings for H2 engine " + name + ".", ex);
+        }
+    }
+
+    private String getSetting(@NotNull String setting) throws SQLException {
+        return queryValue(source, "SELECT \"VALUE\" FROM INFORMATION_SCHEMA.SETTINGS WHERE \"NAME\" = '" + setting + "';");
+    }
+
     public static class Builder {
         private final H2StorageService service;
         private final HikariConfig config = new HikariConfig();
@@ -36,6 +53,16 @@ public class H2StorageService extends AbstractJDBCStorageService {
             return this;
         }
 
+        /**
+         * Tunes the MVStore: a larger page cache, and a short write delay so commits are grouped
+         * into fewer store writes. Call before {@link #options(String)} so user options still win.
+         */
+        public @NotNull H2StorageService.Builder tuned(int cacheSizeKb, long writeDelayMillis) {
+            config.addDataSourceProperty("CACHE_SIZE", String.valueOf(Math.max(0, cacheSizeKb)));
+            config.addDataSourceProperty("WRITE_DELAY", String.valueOf(Math.max(0L, writeDelayMillis)));
+            return this;
+        }
+
         public @NotNull H2StorageService.Builder options(@NotNull String options) throws IOException {
             options = !options.isEmpty() && options.charAt(0) == '?' ? options.substring(1) : options;
             Properties p = new Properties();
@@ -53,11 +80,15 @@ public class H2StorageService extends AbstractJDBCStorageService {
         public @NotNull H2StorageService.Builder life(long lifetime, long timeout) {
             config.setMaxLifetime(lifetime);
             config.setConnectionTimeout(timeout);
+            if (!config.getDataSourceProperties().containsKey("LOCK_TIMEOUT")) {
+                config.addDataSourceProperty("LOCK_TIMEOUT", String.valueOf(timeout));
+            }
             return this;
         }
 
         public @NotNull H2StorageService build() {
             service.createSource(config, new H2Platform(), false, "h2");
+            service.logSettings();
             return service;
         }
     }
@@ -0,0 +1,81 @@
+package me.egg82.antivpn.storage;
+
+import me.egg82.antivpn.storage.models.BaseModel;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Streams a whole table in id order, one page at a time.
+ * Each page starts after the last id seen ("WHERE id > ? ORDER BY id LIMIT ?"),
+ * so gaps in ids never cause short pages and the database can seek straight to the page.
+ */
+public class KeysetIterator<T extends BaseModel> implements Iterator<T> {
+    private final @NotNull PageFunction<T> pageFunction;
+    private final int pageSize;
+
+    private List<T> page = null;
+    private int index = 0;
+    private long lastId;
+    private boolean exhausted = false;
+
+    public KeysetIterator(@NotNull PageFunction<T> pageFunction, int pageSize) {
+        this(pageFunction, pageSize, 0L);
+    }
+
+    /**
+     * @param afterId the id to resume from, exclusive
+     */
+    public KeysetIterator(@NotNull PageFunction<T> pageFunction, int pageSize, long afterId) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be greater than zero.");
+        }
+
+        this.pageFunction = pageFunction;
+        this.pageSize = pageSize;
+        this.lastId = afterId;
+    }
+
+    /**
+     * The id of the last model returned, which can be used to resume iteration later.
+     */
+    public long getLastId() { return lastId; }
+
+    @Override
+    public boolean hasNext() {
+        if (page != null && index < page.size()) {
+            return true;
+        }
+        if (exhausted) {
+            return false;
+        }
+
+        page = pageFunction.getPage(lastId, pageSize);
+        index = 0;
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+        return !page.isEmpty();
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T retVal = page.get(index++);
+        Long id = retVal.getId();
+        if (id != null) {
+            lastId = id;
+        }
+        return retVal;
+    }
+
+    @FunctionalInterface
+    public interface PageFunction<T extends BaseModel> {
+        @NotNull List<@NotNull T> getPage(long afterId, int max);
+    }
+}
@@ -0,0 +1,141 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.storage.models.PlayerModel;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bloom filters of every IP and player this server knows is in storage.
+ * An IP or player the filter has never seen is guaranteed not to be stored, so the lookup can skip the database entirely.
+ * <p>
+ * Filled at startup by streaming the tables and kept up to date as results are written or arrive over messaging.
+ * Deletes can't be removed from a Bloom filter, they only cost a wasted query.
+ * Until the initial load has finished every key is reported as possibly present.
+ */
+public class KnownKeyFilter {
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_KnownKeyFilter_%d").setDaemon(true).build();
+
+    private static final Funnel<UUID> UUID_FUNNEL = (uuid, into) -> into.putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull BloomFilter<byte[]> ips;
+    private final @NotNull BloomFilter<UUID> players;
+    private final double targetFpp;
+
+    private volatile boolean ready = false;
+
+    private final @NotNull LongAdder skipped = new LongAdder();
+    private final @NotNull LongAdder falsePositives = new LongAdder();
+
+    public KnownKeyFilter(int expectedEntries, double fpp) {
+        if (expectedEntries <= 0) {
+            throw new IllegalArgumentException("expectedEntries must be greater than zero.");
+        }
+        if (fpp <= 0.0d || fpp >= 1.0d) {
+            throw new IllegalArgumentException("fpp must be between 0 and 1.");
+        }
+
+        this.ips = BloomFilter.create(Funnels.byteArrayFunnel(), expectedEntries, fpp);
+        this.players = BloomFilter.create(UUID_FUNNEL, expectedEntries, fpp);
+        this.targetFpp = fpp;
+    }
+
+    /**
+     * Streams every IP and player out of the given services in the background.
+     */
+    public void load(@NotNull List<@NotNull StorageService> storage, int pageSize) {
+        threadFactory.newThread(() -> {
+            long start = System.currentTimeMillis();
+            long ipCount = 0L;
+            long playerCount = 0L;
+            try {
+                for (StorageService service : storage) {
+                    for (Iterator<IPModel> i = service.iterateIps(pageSize); i.hasNext(); ) {
+                        ips.put(i.next().getIpBytes());
+                        ipCount++;
+                    }
+                    for (Iterator<PlayerModel> i = service.iteratePlayers(pageSize); i.hasNext(); ) {
+                        players.put(i.next().getUuid());
+                        playerCount++;
+                    }
+                }
+            } catch (Exception ex) {
+                // Never marked ready, so lookups keep going to storage as before
+                logger.error("Could not load known IPs and players from storage, lookups will not be filtered.", ex);
+                return;
+            }
+
+            ready = true;
+            logger.info("Loaded " + ipCount + " IPs and " + playerCount + " players into the lookup filter in " + (System.currentTimeMillis() - start) + "ms (expected false-positive rate " + String.format("%.4f", getExpectedFpp()) + ").");
+            if (getExpectedFpp() > targetFpp * 2.0d) {
+                logger.warn("The lookup filter holds more entries than it was sized for. Raise storage.settings.filter.expected-entries.");
+            }
+        }).start();
+    }
+
+    public boolean isReady() { return ready; }
+
+    public boolean mightContainIp(@NotNull String ip) {
+        if (!ready || ips.mightContain(IPModel.toStoredIp(ip))) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    public boolean mightContainPlayer(@NotNull UUID player) {
+        if (!ready || players.mightContain(player)) {
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    public void putIp(@NotNull String ip) { ips.put(IPModel.toStoredIp(ip)); }
+
+    public void putPlayer(@NotNull UUID player) { players.put(player); }
+
+    /**
+     * Called when the filter said a key might be stored but no storage service had it.
+     */
+    public void recordFalsePositive() {
+        if (ready) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Lookups which skipped storage entirely.
+     */
+    public long getSkipped() { return skipped.sum(); }
+
+    public long getFalsePositives() { return falsePositives.sum(); }
+
+    /**
+     * The false-positive rate actually seen: of the keys which weren't stored, how many the filter still sent to storage.
+     */
+    public double getObservedFpp() {
+        long fp = falsePositives.sum();
+        long total = fp + skipped.sum();
+        return total == 0L ? 0.0d : (double) fp / (double) total;
+    }
+
+    /**
+     * The false-positive rate the filters should have at their current fill, the worse of the two.
+     */
+    public double getExpectedFpp() { return Math.max(ips.expectedFpp(), players.expectedFpp()); }
+}
@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class MySQLStorageService extends AbstractJDBCStorageService {
@@ -18,6 +20,9 @@ public class MySQLStorageService extends AbstractJDBCStorageService {
     public static class Builder {
         private final MySQLStorageService service;
         private final HikariConfig config = new HikariConfig();
+        private final List<String> replicaUrls = new ArrayList<>();
+        private long maxReplicaLag = 5000L;
+        private String database = "";
 
         private Builder(@NotNull String name) {
             service = new MySQLStorageService(name);
@@ -50,6 +55,20 @@ public class MySQLStorageService extends AbstractJDBCStorageService {
 
         public @NotNull MySQLStorageService.Builder url(@NotNull String address, int port, @NotNull String database) {
             config.setJdbcUrl("jdbc:mysql://" + address + ":" + port + "/" + database);
+            this.database = database;
+            return this;
+        }
+
+        /**
+         * Adds a read replica. Replicas use the same database, credentials, options and pool settings as the primary.
+         */
+        public @NotNull MySQLStorageService.Builder replica(@NotNull String address, int port) {
+            replicaUrls.add("jdbc:mysql://" + address + ":" + port + "/");
+            return this;
+        }
+
+        public @NotNull MySQLStorageService.Builder maxReplicaLag(long millis) {
+            maxReplicaLag = millis;
             return this;
         }
 
@@ -80,7 +99,17 @@ public class MySQLStorageService extends AbstractJDBCStorageService {
         }
 
         public @NotNull MySQLStorageService build() {
-            service.createSource(config, new MySqlPlatform(), true, "mysql");
+            List<HikariConfig> replicaConfigs = new ArrayList<>();
+            for (int i = 0; i < replicaUrls.size(); i++) {
+                HikariConfig replicaConfig = new HikariConfig();
+                config.copyStateTo(replicaConfig);
+                replicaConfig.setPoolName(config.getPoolName() + "_Replica" + (i + 1));
+                replicaConfig.setJdbcUrl(replicaUrls.get(i) + database);
+                // Don't keep the engine from starting because a replica is down
+                replicaConfig.setInitializationFailTimeout(-1L);
+                replicaConfigs.add(replicaConfig);
+            }
+            service.createSource(config, replicaConfigs, maxReplicaLag, ReplicaDataSource.MYSQL_LAG, new MySqlPlatform(), true, "mysql");
             return service;
         }
     }
@@ -6,6 +6,8 @@ import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class PostgreSQLStorageService extends AbstractJDBCStorageService {
@@ -18,6 +20,9 @@ public class PostgreSQLStorageService extends AbstractJDBCStorageService {
     public static class Builder {
         private final PostgreSQLStorageService service;
         private final HikariConfig config = new HikariConfig();
+        private final List<String> replicaUrls = new ArrayList<>();
+        private long maxReplicaLag = 5000L;
+        private String database = "";
 
         private Builder(@NotNull String name) {
             service = new PostgreSQLStorageService(name);
@@ -32,6 +37,20 @@ public class PostgreSQLStorageService extends AbstractJDBCStorageService {
 
         public @NotNull PostgreSQLStorageService.Builder url(@NotNull String address, int port, @NotNull String database) {
             config.setJdbcUrl("jdbc:postgresql://" + address + ":" + port + "/" + database);
+            this.database = database;
+            return this;
+        }
+
+        /**
+         * Adds a read replica. Replicas use the same database, credentials, options and pool settings as the primary.
+         */
+        public @NotNull PostgreSQLStorageService.Builder replica(@NotNull String address, int port) {
+            replicaUrls.add("jdbc:postgresql://" + address + ":" + port + "/");
+            return this;
+        }
+
+        public @NotNull PostgreSQLStorageService.Builder maxReplicaLag(long millis) {
+            maxReplicaLag = millis;
             return this;
         }
 
@@ -62,7 +81,17 @@ public class PostgreSQLStorageService extends AbstractJDBCStorageService {
         }
 
         public @NotNull PostgreSQLStorageService build() {
-            service.createSource(config, new Postgres9Platform(), false, "postgresql");
+            List<HikariConfig> replicaConfigs = new ArrayList<>();
+            for (int i = 0; i < replicaUrls.size(); i++) {
+                HikariConfig replicaConfig = new HikariConfig();
+                config.copyStateTo(replicaConfig);
+                replicaConfig.setPoolName(config.getPoolName() + "_Replica" + (i + 1));
+                replicaConfig.setJdbcUrl(replicaUrls.get(i) + database);
+                // Don't keep the engine from starting because a replica is down
+                replicaConfig.setInitializationFailTimeout(-1L);
+                replicaConfigs.add(replicaConfig);
+            }
+            service.createSource(config, replicaConfigs, maxReplicaLag, ReplicaDataSource.POSTGRESQL_LAG, new Postgres9Platform(), false, "postgresql");
             return service;
         }
     }
@@ -0,0 +1,215 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.zaxxer.hikari.HikariDataSource;
+import me.egg82.antivpn.logging.GELFLogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.PrintWriter;
+import java.sql.*;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Read-only data source which spreads connections across a set of replica pools.
+ * Replication lag is checked in the background, and replicas which are too far behind
+ * (or can't be reached) are skipped until they catch up. When no replica is usable, reads go to the primary.
+ */
+public class ReplicaDataSource implements DataSource, Closeable {
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_ReplicaCheck_%d").setDaemon(true).build();
+
+    /**
+     * MySQL and MariaDB. A server which isn't replicating from anything has no lag.
+     * MySQL 8.0.22+ and MariaDB 10.5.1+ use SHOW REPLICA STATUS, older servers only know SHOW SLAVE STATUS.
+     */
+    public static final LagProbe MYSQL_LAG = connection -> {
+        try {
+            return getMySQLLag(connection, "SHOW REPLICA STATUS;");
+        } catch (SQLSyntaxErrorException ignored) {
+            return getMySQLLag(connection, "SHOW SLAVE STATUS;");
+        }
+    };
+
+    private static long getMySQLLag(@NotNull Connection connection, @NotNull String query) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery(query)) {
+            if (!results.next()) {
+                return 0L;
+            }
+            // MySQL renamed the column along with the statement, MariaDB kept the old name
+            int column;
+            try {
+                column = results.findColumn("Seconds_Behind_Source");
+            } catch (SQLException ignored) {
+                column = results.findColumn("Seconds_Behind_Master");
+            }
+            long seconds = results.getLong(column);
+            // NULL when replication is stopped or broken
+            return results.wasNull() ? -1L : seconds * 1000L;
+        }
+    }
+
+    /**
+     * PostgreSQL 10+. Lag is only counted while there's WAL left to replay, so an idle primary doesn't look like lag.
+     */
+    public static final LagProbe POSTGRESQL_LAG = connection -> {
+        try (Statement statement = connection.createStatement(); ResultSet results = statement.executeQuery(
+                "SELECT CASE WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+                        + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END;"
+        )) {
+            return results.next() ? results.getLong(1) : 0L;
+        }
+    };
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull HikariDataSource primary;
+    private final @NotNull ImmutableList<@NotNull HikariDataSource> replicas;
+    private final @NotNull AtomicBoolean[] healthy;
+    private final long maxLag;
+    private final @NotNull LagProbe lagProbe;
+
+    private final @NotNull AtomicInteger next = new AtomicInteger(0);
+    private final @NotNull ScheduledExecutorService checkService;
+
+    public ReplicaDataSource(@NotNull HikariDataSource primary, @NotNull List<@NotNull HikariDataSource> replicas, long maxLagMillis, @NotNull LagProbe lagProbe) {
+        if (replicas.isEmpty()) {
+            throw new IllegalArgumentException("replicas cannot be empty.");
+        }
+        if (maxLagMillis <= 0L) {
+            throw new IllegalArgumentException("maxLagMillis must be greater than zero.");
+        }
+
+        this.primary = primary;
+        this.replicas = ImmutableList.copyOf(replicas);
+        this.healthy = new AtomicBoolean[replicas.size()];
+        for (int i = 0; i < healthy.length; i++) {
+            healthy[i] = new AtomicBoolean(false);
+        }
+        this.maxLag = maxLagMillis;
+        this.lagProbe = lagProbe;
+
+        check(true);
+        checkService = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        // Check a few times per lag window so a replica that falls behind is dropped before it serves much stale data
+        long interval = Math.max(1000L, maxLagMillis / 2L);
+        checkService.scheduleWithFixedDelay(() -> check(false), interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public int getHealthyCount() {
+        int retVal = 0;
+        for (AtomicBoolean h : healthy) {
+            if (h.get()) {
+                retVal++;
+            }
+        }
+        return retVal;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            int index = (start + i) % replicas.size();
+            if (!healthy[index].get()) {
+                continue;
+            }
+            try {
+                return replicas.get(index).getConnection();
+            } catch (SQLException ex) {
+                // Skip it until the next check says otherwise
+                healthy[index].set(false);
+                logger.warn("Could not get a connection from replica " + replicas.get(index).getPoolName() + ", skipping it.", ex);
+            }
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException { throw new SQLFeatureNotSupportedException(); }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException { return primary.getLogWriter(); }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException { primary.setLogWriter(out); }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException { primary.setLoginTimeout(seconds); }
+
+    @Override
+    public int getLoginTimeout() throws SQLException { return primary.getLoginTimeout(); }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException { return primary.getParentLogger(); }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Wrapped DataSource is not an instance of " + iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) { return iface.isInstance(this); }
+
+    /**
+     * Closes the replica pools. The primary belongs to the caller.
+     */
+    @Override
+    public void close() {
+        checkService.shutdownNow();
+        for (HikariDataSource replica : replicas) {
+            replica.close();
+        }
+    }
+
+    /**
+     * Probes every replica. Changes are logged, and so is every replica's first result,
+     * so a replica that is never usable (eg. missing the REPLICATION CLIENT grant) doesn't silently send its reads to the primary.
+     */
+    private void check(boolean first) {
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get(i);
+            boolean wasHealthy = healthy[i].get();
+            long lag;
+            SQLException error = null;
+            try (Connection connection = replica.getConnection()) {
+                lag = lagProbe.getLagMillis(connection);
+            } catch (SQLException ex) {
+                lag = -1L;
+                error = ex;
+            }
+
+            boolean isHealthy = lag >= 0L && lag <= maxLag;
+            healthy[i].set(isHealthy);
+            if ((first || wasHealthy) && !isHealthy) {
+                if (error != null) {
+                    logger.warn("Replica " + replica.getPoolName() + " could not be checked (" + error.getMessage() + "), sending its reads elsewhere.", error);
+                } else {
+                    logger.warn("Replica " + replica.getPoolName() + (lag < 0L ? " is not replicating" : " is " + lag + "ms behind") + ", sending its reads elsewhere.");
+                }
+            } else if ((first || !wasHealthy) && isHealthy) {
+                logger.info("Replica " + replica.getPoolName() + " is " + lag + "ms behind, sending reads to it.");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface LagProbe {
+        /**
+         * Returns how far behind the primary the connected server is, in milliseconds, or -1 if it isn't replicating.
+         */
+        long getLagMillis(@NotNull Connection connection) throws SQLException;
+    }
+}
@@ -1,12 +1,14 @@
 package me.egg82.antivpn.storage;
 
 import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
 import io.ebean.config.dbplatform.sqlite.SQLitePlatform;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
+import java.sql.SQLException;
 import java.util.Properties;
 
 public class SQLiteStorageService extends AbstractJDBCStorageService {
@@ -16,9 +18,25 @@ public class SQLiteStorageService extends AbstractJDBCStorageService {
 
     public static @NotNull SQLiteStorageService.Builder builder(@NotNull String name) { return new SQLiteStorageService.Builder(name); }
 
+    private void logSettings(@NotNull HikariDataSource dataSource, @NotNull String pool) {
+        try {
+            logger.info("SQLite engine " + name + " (" + pool + "): journal_mode=" + queryValue(dataSource, "PRAGMA journal_mode;")
+                    + ", synchronous=" + queryValue(dataSource, "PRAGMA synchronous;")
+                    + ", cache_size=" + queryValue(dataSource, "PRAGMA cache_size;")
+                    + ", mmap_size=" + queryValue(dataSource, "PRAGMA mmap_size;")
+                    + ", busy_timeout=" + queryValue(dataSource, "PRAGMA busy_timeout;")
+                    + ", pool=" + dataSource.getMaximumPoolSize());
+        } catch (SQLException ex) {
+            logger.warn("Could not read settings for SQLite engine " + name + ".", ex);
+        }
+    }
+
     public static class Builder {
         private final SQLiteStorageService service;
         private final HikariConfig config = new HikariConfig();
+        private boolean tuned = false;
+        private int minPoolSize = 1;
+        private int maxPoolSize = 1;
 
         private Builder(@NotNull String name) {
             service = new SQLiteStorageService(name);
@@ -36,6 +54,23 @@ public class SQLiteStorageService extends AbstractJDBCStorageService {
             return this;
         }
 
+        /**
+         * Switches to WAL with synchronous=NORMAL, and splits the pool into a single writer connection
+         * plus a read pool. SQLite only ever allows one writer, so extra write connections just fight over the lock,
+         * while WAL lets readers carry on during a write.
+         * Call before {@link #options(String)} so user options still win.
+         */
+        public @NotNull SQLiteStorageService.Builder tuned(int cacheSizeKb, long mmapSizeBytes) {
+            tuned = true;
+            config.addDataSourceProperty("journal_mode", "WAL");
+            config.addDataSourceProperty("synchronous", "NORMAL");
+            config.addDataSourceProperty("temp_store", "MEMORY");
+            // Negative values are KiB rather than pages
+            config.addDataSourceProperty("cache_size", String.valueOf(-Math.max(0, cacheSizeKb)));
+            config.addDataSourceProperty("mmap_size", String.valueOf(Math.max(0L, mmapSizeBytes)));
+            return this;
+        }
+
         public @NotNull SQLiteStorageService.Builder options(@NotNull String options) throws IOException {
             options = !options.isEmpty() && options.charAt(0) == '?' ? options.substring(1) : options;
             Properties p = new Properties();
@@ -47,17 +82,50 @@ public class SQLiteStorageService extends AbstractJDBCStorageService {
         public @NotNull SQLiteStorageService.Builder poolSize(int min, int max) {
             config.setMaximumPoolSize(max);
             config.setMinimumIdle(min);
+            minPoolSize = min;
+            maxPoolSize = max;
             return this;
         }
 
         public @NotNull SQLiteStorageService.Builder life(long lifetime, long timeout) {
             config.setMaxLifetime(lifetime);
             config.setConnectionTimeout(timeout);
+            if (!config.getDataSourceProperties().containsKey("busy_timeout")) {
+                // Wait on the lock instead of failing straight away with SQLITE_BUSY
+                config.addDataSourceProperty("busy_timeout", String.valueOf(timeout));
+            }
             return this;
         }
 
         public @NotNull SQLiteStorageService build() {
-            service.createSource(config, new SQLitePlatform(), true, "sqlite");
+            if (!tuned) {
+                service.createSource(config, new SQLitePlatform(), true, "sqlite");
+                service.logSettings(service.source, "read/write");
+                return service;
+            }
+
+            // Not copyStateTo(), which would share the data source properties between both pools
+            HikariConfig readConfig = new HikariConfig();
+            readConfig.setPoolName("Anti-VPN_SQLite_Read");
+            readConfig.setDriverClassName(config.getDriverClassName());
+            readConfig.setJdbcUrl(config.getJdbcUrl());
+            readConfig.setConnectionTestQuery(config.getConnectionTestQuery());
+            readConfig.setMaxLifetime(config.getMaxLifetime());
+            readConfig.setConnectionTimeout(config.getConnectionTimeout());
+            readConfig.setMaximumPoolSize(maxPoolSize);
+            readConfig.setMinimumIdle(minPoolSize);
+            for (String key : config.getDataSourceProperties().stringPropertyNames()) {
+                readConfig.addDataSourceProperty(key, config.getDataSourceProperties().getProperty(key));
+            }
+            // SQLITE_OPEN_READONLY
+            readConfig.addDataSourceProperty("open_mode", "1");
+
+            config.setMaximumPoolSize(1);
+            config.setMinimumIdle(1);
+
+            service.createSource(config, readConfig, new SQLitePlatform(), true, "sqlite");
+            service.logSettings(service.source, "write");
+            service.logSettings(service.readSource, "read");
             return service;
         }
     }
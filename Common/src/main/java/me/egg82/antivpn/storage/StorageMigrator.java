@@ -0,0 +1,227 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.storage.models.BaseModel;
+import me.egg82.antivpn.storage.models.DataModel;
+import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.storage.models.PlayerModel;
+import me.egg82.antivpn.utils.FutureUtil;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * Copies every IP and player from one storage service into another.
+ * A reader thread streams the source in id order ({@link KeysetIterator}) while a writer thread stores
+ * the previous batches in the destination, so reads and writes overlap instead of taking turns.
+ * After every written batch the last copied id is checkpointed in the destination's data table,
+ * so an interrupted import picks up where it left off the next time it's run between the same two services.
+ */
+public class StorageMigrator {
+    private static final ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_Migrator_%d").setDaemon(true).build();
+    // Batches read ahead of the writer. Bounds memory when the destination is slower than the source
+    private static final int QUEUE_SIZE = 4;
+    private static final long REPORT_INTERVAL = 5000L;
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull StorageService from;
+    private final @NotNull StorageService to;
+    private final int batchSize;
+    private final @NotNull ProgressListener listener;
+
+    private volatile boolean cancelled = false;
+
+    public StorageMigrator(@NotNull StorageService from, @NotNull StorageService to, int batchSize, @NotNull ProgressListener listener) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero.");
+        }
+
+        this.from = from;
+        this.to = to;
+        this.batchSize = batchSize;
+        this.listener = listener;
+    }
+
+    /**
+     * Runs the import in the background. The future completes with the total number of rows copied.
+     */
+    @NotNull
+    public CompletableFuture<@NotNull Long> migrate() {
+        CompletableFuture<Long> retVal = new CompletableFuture<>();
+        threadFactory.newThread(() -> {
+            try {
+                long rows = copy(Phase.IPS) + copy(Phase.PLAYERS);
+                retVal.complete(rows);
+            } catch (Throwable ex) {
+                retVal.completeExceptionally(FutureUtil.unwrap(ex));
+            }
+        }).start();
+        return retVal;
+    }
+
+    /**
+     * Stops after the batch currently being written. The checkpoint is kept, so the import can be resumed.
+     */
+    public void cancel() { cancelled = true; }
+
+    public boolean isCancelled() { return cancelled; }
+
+    private long copy(@NotNull Phase phase) throws InterruptedException, ExecutionException {
+        String checkpointKey = "import-" + from.getName() + "-" + phase.name().toLowerCase();
+        long afterId = getCheckpoint(checkpointKey);
+        if (afterId > 0L) {
+            listener.onResume(phase, afterId);
+        }
+
+        KeysetIterator<? extends BaseModel> iterator;
+        if (phase == Phase.IPS) {
+            iterator = new KeysetIterator<IPModel>(from::getIpsAfter, batchSize, afterId);
+        } else {
+            iterator = new KeysetIterator<PlayerModel>(from::getPlayersAfter, batchSize, afterId);
+        }
+
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_SIZE);
+        Writer writer = new Writer(phase, queue, checkpointKey);
+        CompletableFuture<Void> writerFuture = new CompletableFuture<>();
+        threadFactory.newThread(() -> {
+            try {
+                writer.run();
+                writerFuture.complete(null);
+            } catch (Throwable ex) {
+                writerFuture.completeExceptionally(ex);
+            }
+        }).start();
+
+        try {
+            List<BaseModel> models = new ArrayList<>(batchSize);
+            while (!cancelled && !writerFuture.isDone() && iterator.hasNext()) {
+                models.add(iterator.next());
+                if (models.size() == batchSize) {
+                    if (!enqueue(queue, new Batch(models, iterator.getLastId()), writerFuture)) {
+                        break;
+                    }
+                    models = new ArrayList<>(batchSize);
+                }
+            }
+            if (!models.isEmpty() && !cancelled) {
+                enqueue(queue, new Batch(models, iterator.getLastId()), writerFuture);
+            }
+        } finally {
+            // Always tell the writer to finish, even when reading failed
+            enqueue(queue, Batch.END, writerFuture);
+        }
+        writerFuture.get();
+
+        if (!cancelled) {
+            // Done, the next import between these two should start over
+            to.getOrCreateDataModel(checkpointKey, null);
+        }
+        return writer.rows;
+    }
+
+    /**
+     * Blocks while the queue is full, unless the writer has died and will never take anything again.
+     */
+    private static boolean enqueue(@NotNull BlockingQueue<Batch> queue, @NotNull Batch batch, @NotNull CompletableFuture<Void> writerFuture) throws InterruptedException {
+        while (!writerFuture.isDone()) {
+            if (queue.offer(batch, 100L, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long getCheckpoint(@NotNull String key) {
+        DataModel model = to.getDataModel(key);
+        if (model == null || model.getValue() == null) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(model.getValue());
+        } catch (NumberFormatException ex) {
+            logger.warn("Ignoring invalid import checkpoint " + key + ": " + model.getValue());
+            return 0L;
+        }
+    }
+
+    private class Writer implements Runnable {
+        private final @NotNull Phase phase;
+        private final @NotNull BlockingQueue<Batch> queue;
+        private final @NotNull String checkpointKey;
+
+        private volatile long rows = 0L;
+
+        private Writer(@NotNull Phase phase, @NotNull BlockingQueue<Batch> queue, @NotNull String checkpointKey) {
+            this.phase = phase;
+            this.queue = queue;
+            this.checkpointKey = checkpointKey;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            long lastReport = System.currentTimeMillis();
+            try {
+                Batch batch;
+                while ((batch = queue.take()) != Batch.END) {
+                    if (cancelled) {
+                        continue;
+                    }
+
+                    to.storeModels(batch.models);
+                    to.getOrCreateDataModel(checkpointKey, String.valueOf(batch.lastId));
+                    rows += batch.models.size();
+
+                    long now = System.currentTimeMillis();
+                    if (now - lastReport >= REPORT_INTERVAL) {
+                        listener.onProgress(phase, rows, rate(start));
+                        lastReport = now;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                cancelled = true;
+            } catch (RuntimeException ex) {
+                // Stop the reader too, the checkpoint still points at the last good batch
+                cancelled = true;
+                throw ex;
+            }
+            listener.onProgress(phase, rows, rate(start));
+        }
+
+        private double rate(long start) {
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0d;
+            return seconds <= 0.0d ? 0.0d : rows / seconds;
+        }
+    }
+
+    private static class Batch {
+        private static final Batch END = new Batch(Collections.emptyList(), -1L);
+
+        private final @NotNull List<BaseModel> models;
+        private final long lastId;
+
+        private Batch(@NotNull List<BaseModel> models, long lastId) {
+            this.models = models;
+            this.lastId = lastId;
+        }
+    }
+
+    public enum Phase {
+        IPS,
+        PLAYERS
+    }
+
+    public interface ProgressListener {
+        void onProgress(@NotNull Phase phase, long rows, double rowsPerSecond);
+
+        default void onResume(@NotNull Phase phase, long afterId) { }
+    }
+}
@@ -0,0 +1,96 @@
+package me.egg82.antivpn.storage;
+
+import me.egg82.antivpn.config.CachedConfig;
+import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.logging.GELFLogger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.IntSupplier;
+
+/**
+ * Deletes IPs and players which are past their cache time from every storage service.
+ * Expired rows are already ignored when reading, so this only keeps tables and indexes from growing forever.
+ * Rows are deleted oldest first in small batches with a pause between them, so a large backlog
+ * doesn't lock tables or starve lookups.
+ * <p>
+ * Meant to be run often from a platform scheduler; it only does work once the configured interval has passed,
+ * and reads the config every time so reloads are picked up.
+ */
+public class StoragePurgeTask implements Runnable {
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull AtomicBoolean running = new AtomicBoolean(false);
+    private volatile long lastRun = System.currentTimeMillis();
+    private volatile long totalPurged = 0L;
+
+    /**
+     * The total number of rows deleted since this task was created.
+     */
+    public long getTotalPurged() { return totalPurged; }
+
+    @Override
+    public void run() {
+        CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
+        if (!cachedConfig.getPurgeEnabled() || System.currentTimeMillis() - lastRun < cachedConfig.getPurgeInterval()) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        try {
+            purge(cachedConfig);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lastRun = System.currentTimeMillis();
+            running.set(false);
+        }
+    }
+
+    private void purge(@NotNull CachedConfig cachedConfig) throws InterruptedException {
+        int batchSize = cachedConfig.getPurgeBatchSize();
+        long batchDelay = cachedConfig.getPurgeBatchDelay();
+
+        for (StorageService service : cachedConfig.getStorage()) {
+            if (service.isClosed()) {
+                continue;
+            }
+
+            long start = System.currentTimeMillis();
+            try {
+                long ips = purge(() -> service.purgeIps(cachedConfig.getSourceCacheTime(), batchSize), service, batchSize, batchDelay);
+                long players = purge(() -> service.purgePlayers(cachedConfig.getMCLeaksCacheTime(), batchSize), service, batchSize, batchDelay);
+                totalPurged += ips + players;
+
+                if (ips > 0L || players > 0L) {
+                    logger.info("Purged " + ips + " expired IPs and " + players + " expired players from storage " + service.getName() + " in " + (System.currentTimeMillis() - start) + "ms.");
+                } else if (cachedConfig.getDebug()) {
+                    logger.info("Nothing to purge from storage " + service.getName() + ".");
+                }
+            } catch (Exception ex) {
+                // Try again next interval, whatever was deleted so far stays deleted
+                logger.error("Could not purge expired rows from storage " + service.getName() + ".", ex);
+            }
+        }
+    }
+
+    private static long purge(@NotNull IntSupplier batch, @NotNull StorageService service, int batchSize, long batchDelay) throws InterruptedException {
+        long retVal = 0L;
+        int deleted;
+        do {
+            if (service.isClosed()) {
+                break;
+            }
+            deleted = batch.getAsInt();
+            retVal += deleted;
+            if (deleted >= batchSize && batchDelay > 0L) {
+                Thread.sleep(batchDelay);
+            }
+        } while (deleted >= batchSize);
+        return retVal;
+    }
+}
@@ -7,7 +7,9 @@ import me.egg82.antivpn.storage.models.PlayerModel;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
@@ -35,8 +37,36 @@ public interface StorageService {
 
     @NotNull Set<@NotNull IPModel> getAllIps(long cacheTimeMillis);
 
+    /*
+    Note: Pages by id range, so gaps in ids return short pages. Prefer getIpsAfter/iterateIps
+     */
     @NotNull Set<@NotNull IPModel> getAllIps(int start, int max);
 
+    /*
+    Keyset pagination: up to max IPs with an id greater than afterId, in id order
+     */
+    @NotNull List<@NotNull IPModel> getIpsAfter(long afterId, int max);
+
+    default @NotNull KeysetIterator<@NotNull IPModel> iterateIps(int pageSize) { return new KeysetIterator<>(this::getIpsAfter, pageSize); }
+
+    /*
+    Range is an IP or CIDR range, eg. "203.0.113.0/24"
+     */
+    @NotNull List<@NotNull IPModel> getIpRange(@NotNull String range, long cacheTimeMillis);
+
+    int deleteIpRange(@NotNull String range);
+
+    /*
+    Deletes up to max IPs which haven't been modified within cacheTimeMillis, returning the number deleted
+     */
+    int purgeIps(long cacheTimeMillis, int max);
+
+    /*
+    Keyset pagination, newest first: up to max IPs modified within cacheTimeMillis which sort after (beforeModified, beforeId)
+    Pass a null beforeModified for the first page
+     */
+    @NotNull List<@NotNull IPModel> getRecentIps(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max);
+
     /*
    Note: Can be an expensive operation
     */
@@ -48,8 +78,29 @@ public interface StorageService {
 
     @NotNull Set<@NotNull PlayerModel> getAllPlayers(long cacheTimeMillis);
 
+    /*
+    Note: Pages by id range, so gaps in ids return short pages. Prefer getPlayersAfter/iteratePlayers
+     */
     @NotNull Set<@NotNull PlayerModel> getAllPlayers(int start, int max);
 
+    /*
+    Keyset pagination: up to max players with an id greater than afterId, in id order
+     */
+    @NotNull List<@NotNull PlayerModel> getPlayersAfter(long afterId, int max);
+
+    default @NotNull KeysetIterator<@NotNull PlayerModel> iteratePlayers(int pageSize) { return new KeysetIterator<>(this::getPlayersAfter, pageSize); }
+
+    /*
+    Deletes up to max players which haven't been modified within cacheTimeMillis, returning the number deleted
+     */
+    int purgePlayers(long cacheTimeMillis, int max);
+
+    /*
+    Keyset pagination, newest first: up to max players modified within cacheTimeMillis which sort after (beforeModified, beforeId)
+    Pass a null beforeModified for the first page
+     */
+    @NotNull List<@NotNull PlayerModel> getRecentPlayers(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max);
+
     /*
    Note: Can be an expensive operation
     */
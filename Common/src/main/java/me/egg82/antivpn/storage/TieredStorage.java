@@ -0,0 +1,254 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.storage.models.BaseModel;
+import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.storage.models.PlayerModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Read path across every storage service.
+ * Engines are queried in configured order, so the first ("master") engine stays authoritative.
+ * Optionally, local (H2/SQLite) engines are queried before remote ones so an IP this server has already seen never costs a network round trip,
+ * and a hit from a slower tier is copied into the faster tiers in front of it so the next read is local.
+ * Tiers can also be queried all at once, in which case the first one to find something wins.
+ * With a {@link KnownKeyFilter}, keys which are known not to be stored skip every tier.
+ * <p>
+ * Writes still go to every service, so this only changes reads.
+ */
+public class TieredStorage {
+    private static final int THREADS = 8;
+    private static final int MAX_QUEUED = 1024;
+
+    // Bounded, so a burst of lookups can't start a thread per tier per read.
+    // Reads that don't fit run on the caller instead, and promotions that don't fit are skipped
+    private static final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            THREADS,
+            THREADS,
+            30L,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(MAX_QUEUED),
+            new ThreadFactoryBuilder().setNameFormat("Anti-VPN_TieredStorage_%d").setDaemon(true).build()
+    );
+
+    static {
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull ImmutableList<@NotNull StorageService> tiers;
+    private final boolean concurrent;
+    private final boolean promote;
+    private final @Nullable KnownKeyFilter filter;
+
+    /**
+     * @param storage the storage services, in configured order
+     * @param localFirst move embedded engines in front of remote ones
+     * @param concurrent query every tier at once and take the first hit, rather than one at a time
+     * @param promote copy hits into the tiers in front of the one they were found in
+     * @param filter skips storage for IPs and players which are known not to be stored, or null to always query
+     */
+    public TieredStorage(@NotNull List<@NotNull StorageService> storage, boolean localFirst, boolean concurrent, boolean promote, @Nullable KnownKeyFilter filter) {
+        List<StorageService> ordered = new ArrayList<>(storage);
+        if (localFirst) {
+            // Stable, so engines keep their configured order within each tier
+            ordered.sort((s1, s2) -> Boolean.compare(!isLocal(s1), !isLocal(s2)));
+        }
+        this.tiers = ImmutableList.copyOf(ordered);
+        this.concurrent = concurrent;
+        this.promote = promote;
+        this.filter = filter;
+    }
+
+    @NotNull
+    public ImmutableList<@NotNull StorageService> getTiers() { return tiers; }
+
+    public boolean isConcurrent() { return concurrent; }
+
+    public boolean isPromote() { return promote; }
+
+    @Nullable
+    public KnownKeyFilter getFilter() { return filter; }
+
+    @Nullable
+    public IPModel getIpModel(@NotNull String ip, long cacheTimeMillis) {
+        if (filter == null) {
+            return get(service -> service.getIpModel(ip, cacheTimeMillis));
+        }
+        boolean filtered = filter.isReady();
+        if (!filter.mightContainIp(ip)) {
+            return null;
+        }
+        IPModel retVal = get(service -> service.getIpModel(ip, cacheTimeMillis));
+        if (retVal == null && filtered) {
+            filter.recordFalsePositive();
+        }
+        return retVal;
+    }
+
+    @Nullable
+    public PlayerModel getPlayerModel(@NotNull UUID player, long cacheTimeMillis) {
+        if (filter == null) {
+            return get(service -> service.getPlayerModel(player, cacheTimeMillis));
+        }
+        boolean filtered = filter.isReady();
+        if (!filter.mightContainPlayer(player)) {
+            return null;
+        }
+        PlayerModel retVal = get(service -> service.getPlayerModel(player, cacheTimeMillis));
+        if (retVal == null && filtered) {
+            filter.recordFalsePositive();
+        }
+        return retVal;
+    }
+
+    /**
+     * Lets the filter know an IP has been written to storage.
+     */
+    public void recordIp(@NotNull String ip) {
+        if (filter != null) {
+            filter.putIp(ip);
+        }
+    }
+
+    /**
+     * Lets the filter know a player has been written to storage.
+     */
+    public void recordPlayer(@NotNull UUID player) {
+        if (filter != null) {
+            filter.putPlayer(player);
+        }
+    }
+
+    public static boolean isLocal(@NotNull StorageService service) {
+        StorageService s = service instanceof WriteBehindStorageService ? ((WriteBehindStorageService) service).getDelegate() : service;
+        return s instanceof H2StorageService || s instanceof SQLiteStorageService;
+    }
+
+    @Nullable
+    private <T extends BaseModel> T get(@NotNull Function<@NotNull StorageService, @Nullable T> reader) {
+        if (tiers.isEmpty()) {
+            return null;
+        }
+        return concurrent && tiers.size() > 1 ? getConcurrent(reader) : getSequential(reader);
+    }
+
+    @Nullable
+    private <T extends BaseModel> T getSequential(@NotNull Function<@NotNull StorageService, @Nullable T> reader) {
+        for (int i = 0; i < tiers.size(); i++) {
+            T retVal = read(tiers.get(i), reader);
+            if (retVal != null) {
+                promote(retVal, i);
+                return retVal;
+            }
+        }
+        return null;
+    }
+
+    @Nullable
+    private <T extends BaseModel> T getConcurrent(@NotNull Function<@NotNull StorageService, @Nullable T> reader) {
+        CompletableFuture<Hit<T>> first = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(tiers.size());
+        for (int i = 0; i < tiers.size(); i++) {
+            int tier = i;
+            Runnable task = () -> {
+                T model = read(tiers.get(tier), reader);
+                if (model != null) {
+                    first.complete(new Hit<>(model, tier));
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    first.complete(null);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ignored) {
+                task.run();
+            }
+        }
+
+        Hit<T> hit;
+        try {
+            hit = first.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException ex) {
+            return null;
+        }
+        if (hit == null) {
+            return null;
+        }
+        promote(hit.model, hit.tier);
+        return hit.model;
+    }
+
+    @Nullable
+    private <T extends BaseModel> T read(@NotNull StorageService service, @NotNull Function<@NotNull StorageService, @Nullable T> reader) {
+        if (service.isClosed()) {
+            return null;
+        }
+        try {
+            return reader.apply(service);
+        } catch (RuntimeException ex) {
+            // A dead tier is just a miss, the next one can still answer
+            logger.error("Could not read from storage " + service.getName() + ".", ex);
+            return null;
+        }
+    }
+
+    private void promote(@NotNull BaseModel model, int foundTier) {
+        if (!promote || foundTier == 0) {
+            return;
+        }
+
+        // Off the read path, the caller already has its answer
+        try {
+            executor.execute(() -> {
+                for (int i = 0; i < foundTier; i++) {
+                    StorageService service = tiers.get(i);
+                    if (service.isClosed()) {
+                        continue;
+                    }
+                    try {
+                        // Both keep the original modified time, so a promoted row expires when the source row would
+                        if (service instanceof WriteBehindStorageService) {
+                            // Never replaces a newer write that's still queued for the same key
+                            ((WriteBehindStorageService) service).storeModelIfAbsent(model);
+                        } else {
+                            service.storeModels(Collections.singletonList(model));
+                        }
+                    } catch (RuntimeException ex) {
+                        logger.error("Could not promote model into storage " + service.getName() + ".", ex);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ignored) {
+            // Only an optimization, the next miss will try again
+        }
+    }
+
+    private static class Hit<T> {
+        private final @NotNull T model;
+        private final int tier;
+
+        private Hit(@NotNull T model, int tier) {
+            this.model = model;
+            this.tier = tier;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package me.egg82.antivpn.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.egg82.antivpn.logging.GELFLogger;
+import me.egg82.antivpn.storage.models.BaseModel;
+import me.egg82.antivpn.storage.models.DataModel;
+import me.egg82.antivpn.storage.models.IPModel;
+import me.egg82.antivpn.storage.models.PlayerModel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Write-behind wrapper around another storage service.
+ * {@link #storeModel(BaseModel)} only queues the model; repeated writes to the same IP/player/key are coalesced
+ * into the latest one and a background thread flushes them in batches through {@link StorageService#storeModels(Collection)}.
+ * Once too many writes are pending the caller writes its own model straight through, which slows producers down to the database's pace.
+ * While the wrapped service is failing the oldest pending writes are dropped instead, so memory stays bounded and callers never wait on a dead database.
+ * Everything else goes straight to the wrapped service.
+ */
+public class WriteBehindStorageService implements StorageService {
+    private static final ThreadFactory flushFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_WriteBehind_%d").setDaemon(true).build();
+
+    private final Logger logger = new GELFLogger(LoggerFactory.getLogger(getClass()));
+
+    private final @NotNull StorageService delegate;
+    private final int batchSize;
+    private final long flushInterval;
+    private final int maxPending;
+
+    private final @NotNull ConcurrentMap<Object, BaseModel> pending = new ConcurrentHashMap<>();
+    private final @NotNull Queue<Object> order = new ConcurrentLinkedQueue<>();
+    private final @NotNull Object signal = new Object();
+
+    private volatile boolean failing = false;
+    private final @NotNull AtomicBoolean warnedDropping = new AtomicBoolean(false);
+    private final @NotNull LongAdder dropped = new LongAdder();
+
+    private final @NotNull Thread flushThread;
+    private volatile boolean closed = false;
+
+    public WriteBehindStorageService(@NotNull StorageService delegate, int batchSize, long flushIntervalMillis, int maxPending) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be greater than zero.");
+        }
+        if (flushIntervalMillis <= 0L) {
+            throw new IllegalArgumentException("flushIntervalMillis must be greater than zero.");
+        }
+        if (maxPending < batchSize) {
+            throw new IllegalArgumentException("maxPending cannot be less than batchSize.");
+        }
+
+        this.delegate = delegate;
+        this.batchSize = batchSize;
+        this.flushInterval = flushIntervalMillis;
+        this.maxPending = maxPending;
+
+        flushThread = flushFactory.newThread(this::run);
+        flushThread.start();
+    }
+
+    @NotNull
+    public StorageService getDelegate() { return delegate; }
+
+    public int getPendingCount() { return pending.size(); }
+
+    /**
+     * Writes dropped because too many were pending while the wrapped service was failing.
+     */
+    public long getDroppedCount() { return dropped.sum(); }
+
+    @Override
+    public @NotNull String getName() { return delegate.getName(); }
+
+    @Override
+    public void close() {
+        closed = true;
+        synchronized (signal) {
+            signal.notifyAll();
+        }
+        try {
+            flushThread.join(flushInterval * 2L);
+        } catch (InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        delegate.close();
+    }
+
+    @Override
+    public boolean isClosed() { return closed || delegate.isClosed(); }
+
+    @Override
+    public void storeModel(@NotNull BaseModel model) {
+        if (closed) {
+            delegate.storeModel(model);
+            return;
+        }
+
+        Object key = keyOf(model);
+        if (pending.put(key, model) == null) {
+            order.add(key);
+        }
+
+        int size = pending.size();
+        if (size > maxPending) {
+            if (failing) {
+                // Storage is down, so waiting on it would only stall the caller. Keep the newest results and let the oldest go
+                trim();
+            } else if (pending.remove(key, model)) {
+                // The database can't keep up, make the producer pay for its own write
+                storeDirect(model);
+            }
+        } else if (size >= batchSize) {
+            synchronized (signal) {
+                signal.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Queues the model only if nothing is already queued for the same key, so it can never replace a newer write.
+     * Written with its own modified time, the same as {@link #storeModels(Collection)}.
+     */
+    public void storeModelIfAbsent(@NotNull BaseModel model) {
+        if (closed) {
+            delegate.storeModels(Collections.singletonList(model));
+            return;
+        }
+
+        Object key = keyOf(model);
+        if (pending.putIfAbsent(key, model) == null) {
+            order.add(key);
+            if (failing && pending.size() > maxPending) {
+                trim();
+            }
+        }
+    }
+
+    @Override
+    public void storeModels(@NotNull Collection<@NotNull ? extends BaseModel> models) {
+        // Already a batch, so there's nothing to gain by queueing it
+        for (BaseModel model : models) {
+            pending.remove(keyOf(model));
+        }
+        delegate.storeModels(models);
+    }
+
+    @Override
+    public void deleteModel(@NotNull BaseModel model) {
+        // A queued write would otherwise bring the row back
+        pending.remove(keyOf(model));
+        delegate.deleteModel(model);
+    }
+
+    @Override
+    public @NotNull IPModel getOrCreateIpModel(@NotNull String ip, int type) { return delegate.getOrCreateIpModel(ip, type); }
+
+    @Override
+    public @Nullable IPModel getIpModel(@NotNull String ip, long cacheTimeMillis) { return delegate.getIpModel(ip, cacheTimeMillis); }
+
+    @Override
+    public @Nullable IPModel getIpModel(long ipId, long cacheTimeMillis) { return delegate.getIpModel(ipId, cacheTimeMillis); }
+
+    @Override
+    public @NotNull Set<@NotNull IPModel> getAllIps(long cacheTimeMillis) { return delegate.getAllIps(cacheTimeMillis); }
+
+    @Override
+    public @NotNull Set<@NotNull IPModel> getAllIps(int start, int max) { return delegate.getAllIps(start, max); }
+
+    @Override
+    public @NotNull List<@NotNull IPModel> getIpsAfter(long afterId, int max) { return delegate.getIpsAfter(afterId, max); }
+
+    @Override
+    public @NotNull List<@NotNull IPModel> getIpRange(@NotNull String range, long cacheTimeMillis) { return delegate.getIpRange(range, cacheTimeMillis); }
+
+    @Override
+    public int deleteIpRange(@NotNull String range) {
+        // Anything queued in the range has to land first, or it would bring rows back
+        flush();
+        return delegate.deleteIpRange(range);
+    }
+
+    @Override
+    public int purgeIps(long cacheTimeMillis, int max) { return delegate.purgeIps(cacheTimeMillis, max); }
+
+    @Override
+    public @NotNull List<@NotNull IPModel> getRecentIps(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max) { return delegate.getRecentIps(cacheTimeMillis, beforeModified, beforeId, max); }
+
+    @Override
+    public @NotNull PlayerModel getOrCreatePlayerModel(@NotNull UUID player, boolean isMcLeaks) { return delegate.getOrCreatePlayerModel(player, isMcLeaks); }
+
+    @Override
+    public @Nullable PlayerModel getPlayerModel(@NotNull UUID player, long cacheTimeMillis) { return delegate.getPlayerModel(player, cacheTimeMillis); }
+
+    @Override
+    public @Nullable PlayerModel getPlayerModel(long playerId, long cacheTimeMillis) { return delegate.getPlayerModel(playerId, cacheTimeMillis); }
+
+    @Override
+    public @NotNull Set<@NotNull PlayerModel> getAllPlayers(long cacheTimeMillis) { return delegate.getAllPlayers(cacheTimeMillis); }
+
+    @Override
+    public @NotNull Set<@NotNull PlayerModel> getAllPlayers(int start, int max) { return delegate.getAllPlayers(start, max); }
+
+    @Override
+    public @NotNull List<@NotNull PlayerModel> getPlayersAfter(long afterId, int max) { return delegate.getPlayersAfter(afterId, max); }
+
+    @Override
+    public int purgePlayers(long cacheTimeMillis, int max) { return delegate.purgePlayers(cacheTimeMillis, max); }
+
+    @Override
+    public @NotNull List<@NotNull PlayerModel> getRecentPlayers(long cacheTimeMillis, @Nullable Instant beforeModified, long beforeId, int max) { return delegate.getRecentPlayers(cacheTimeMillis, beforeModified, beforeId, max); }
+
+    @Override
+    public @NotNull DataModel getOrCreateDataModel(@NotNull String key, String value) { return delegate.getOrCreateDataModel(key, value); }
+
+    @Override
+    public @Nullable DataModel getDataModel(@NotNull String key) { return delegate.getDataModel(key); }
+
+    @Override
+    public @Nullable DataModel getDataModel(long dataId) { return delegate.getDataModel(dataId); }
+
+    /**
+     * Writes everything that's currently pending.
+     *
+     * @return false if a batch failed and was put back in the queue
+     */
+    public boolean flush() {
+        while (!order.isEmpty()) {
+            if (!flushBatch()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void run() {
+        boolean healthy = true;
+        while (!closed) {
+            synchronized (signal) {
+                // Back off for a full interval after a failure so a down database isn't hammered
+                if (!closed && (!healthy || pending.size() < batchSize)) {
+                    try {
+                        signal.wait(flushInterval);
+                    } catch (InterruptedException ignored) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            healthy = flush();
+        }
+    }
+
+    private boolean flushBatch() {
+        List<BaseModel> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+        Object key;
+        while (batch.size() < batchSize && (key = order.poll()) != null) {
+            BaseModel model = pending.remove(key);
+            if (model != null) { // Deleted or written in the meantime
+                batch.add(model);
+            }
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        try {
+            delegate.storeModels(batch);
+            failing = false;
+            warnedDropping.set(false);
+            return true;
+        } catch (Exception ex) {
+            failing = true;
+            logger.error("Could not write " + batch.size() + " queued models to storage " + delegate.getName() + ", retrying later.", ex);
+            for (BaseModel model : batch) {
+                requeue(model);
+            }
+            trim();
+            return false;
+        }
+    }
+
+    private void storeDirect(@NotNull BaseModel model) {
+        try {
+            delegate.storeModel(model);
+        } catch (Exception ex) {
+            failing = true;
+            logger.error("Could not write model to storage " + delegate.getName() + ", retrying later.", ex);
+            requeue(model);
+            trim();
+        }
+    }
+
+    private void requeue(@NotNull BaseModel model) {
+        // Don't clobber anything newer that came in while we were failing
+        Object key = keyOf(model);
+        if (pending.putIfAbsent(key, model) == null) {
+            order.add(key);
+        }
+    }
+
+    /**
+     * Drops the oldest pending writes until no more than maxPending are left.
+     */
+    private void trim() {
+        Object key;
+        while (pending.size() > maxPending && (key = order.poll()) != null) {
+            if (pending.remove(key) != null) {
+                dropped.increment();
+                if (warnedDropping.compareAndSet(false, true)) {
+                    logger.warn("Storage " + delegate.getName() + " is unavailable and " + maxPending + " writes are pending, dropping the oldest ones until it recovers.");
+                }
+            }
+        }
+    }
+
+    @NotNull
+    private static Object keyOf(@NotNull BaseModel model) {
+        if (model instanceof IPModel) {
+            return ((IPModel) model).getIp();
+        }
+        if (model instanceof PlayerModel) {
+            return ((PlayerModel) model).getUuid();
+        }
+        if (model instanceof DataModel) {
+            return new DataKey(((DataModel) model).getKey());
+        }
+        return model;
+    }
+
+    // Keeps data keys from colliding with IPs
+    private static final class DataKey {
+        private final @NotNull String key;
+
+        private DataKey(@NotNull String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DataKey)) {
+                return false;
+            }
+            return key.equals(((DataKey) o).key);
+        }
+
+        @Override
+        public int hashCode() { return key.hashCode(); }
+    }
+}
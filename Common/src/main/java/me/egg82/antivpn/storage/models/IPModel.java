@@ -2,19 +2,27 @@ package me.egg82.antivpn.storage.models;
 
 import io.ebean.annotation.Index;
 import io.ebean.annotation.Length;
+import me.egg82.antivpn.core.IPKey;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.persistence.Entity;
 import javax.persistence.Table;
 
+/**
+ * IPs are stored as 16 raw bytes (IPv4 as IPv4-mapped IPv6) rather than text.
+ * That keeps the unique index small and lets a whole range be selected or deleted
+ * with one indexed BETWEEN, since byte order matches address order.
+ */
 @Entity
 @Table(name = "avpn_6_ip")
 public class IPModel extends BaseModel {
+    private static final byte[] EMPTY_IP = new byte[0];
+
     @Index(unique = true)
     @io.ebean.annotation.NotNull
-    @Length(45)
-    private String ip;
+    @Length(16)
+    private byte[] ip;
     @io.ebean.annotation.NotNull
     private int type;
     private Boolean cascade;
@@ -22,7 +30,7 @@ public class IPModel extends BaseModel {
 
     public IPModel() {
         super();
-        this.ip = "";
+        this.ip = EMPTY_IP;
         this.type = -1;
         this.cascade = null;
         this.consensus = null;
@@ -30,18 +38,67 @@ public class IPModel extends BaseModel {
 
     public IPModel(String dbName) {
         super(dbName);
-        this.ip = "";
+        this.ip = EMPTY_IP;
         this.type = -1;
         this.cascade = null;
         this.consensus = null;
     }
 
-    public @NotNull String getIp() { return ip; }
+    public @NotNull String getIp() { return ip.length == 0 ? "" : fromStoredIp(ip); }
 
+    /**
+     * @throws IllegalArgumentException if the IP is not a valid IPv4 or IPv6 literal
+     */
     public void setIp(@NotNull String ip) {
+        this.ip = toStoredIp(ip);
+    }
+
+    public byte @NotNull [] getIpBytes() { return ip; }
+
+    public void setIpBytes(byte @NotNull [] ip) {
         this.ip = ip;
     }
 
+    public static byte @NotNull [] toStoredIp(@NotNull String ip) { return toStoredIp(IPKey.of(ip).toBytes()); }
+
+    /**
+     * Converts a 4 or 16-byte address into the stored 16-byte form.
+     */
+    public static byte @NotNull [] toStoredIp(byte @NotNull [] address) {
+        if (address.length == 16) {
+            return address;
+        }
+        if (address.length != 4) {
+            throw new IllegalArgumentException("address must be 4 or 16 bytes.");
+        }
+        byte[] retVal = new byte[16];
+        retVal[10] = (byte) 0xFF;
+        retVal[11] = (byte) 0xFF;
+        System.arraycopy(address, 0, retVal, 12, 4);
+        return retVal;
+    }
+
+    public static @NotNull String fromStoredIp(byte @NotNull [] stored) {
+        if (stored.length == 16 && isV4Mapped(stored)) {
+            byte[] v4 = new byte[4];
+            System.arraycopy(stored, 12, v4, 0, 4);
+            return IPKey.of(v4, null).toAddressString();
+        }
+        return IPKey.of(stored, null).toAddressString();
+    }
+
+    /**
+     * Whether a stored 16-byte address is an IPv4 address.
+     */
+    public static boolean isV4Mapped(byte @NotNull [] stored) {
+        for (int i = 0; i < 10; i++) {
+            if (stored[i] != 0) {
+                return false;
+            }
+        }
+        return stored[10] == (byte) 0xFF && stored[11] == (byte) 0xFF;
+    }
+
     public int getType() { return type; }
 
     public void setType(int type) {
@@ -67,7 +124,7 @@ public class IPModel extends BaseModel {
                 ", version=" + version +
                 ", created=" + created +
                 ", modified=" + modified +
-                ", ip='" + ip + '\'' +
+                ", ip='" + getIp() + '\'' +
                 ", type=" + type +
                 ", cascade=" + cascade +
                 ", consensus=" + consensus +
@@ -0,0 +1,71 @@
+package me.egg82.antivpn.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.*;
+
+public class FutureUtil {
+    private static final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("Anti-VPN_Timer_%d").setDaemon(true).build());
+
+    private FutureUtil() { }
+
+    /**
+     * Returns a future which mirrors the given one, or fails with a {@link TimeoutException}
+     * if the original hasn't completed within the time given.
+     * Cancelling the returned future also cancels the original.
+     */
+    @NotNull
+    public static <T> CompletableFuture<T> withTimeout(@NotNull CompletableFuture<T> future, long timeout, @NotNull TimeUnit unit) {
+        CompletableFuture<T> retVal = new CompletableFuture<>();
+        ScheduledFuture<?> task = timer.schedule(() -> retVal.completeExceptionally(new TimeoutException("Timed out after " + unit.toMillis(timeout) + "ms")), timeout, unit);
+        future.whenComplete((v, ex) -> {
+            task.cancel(false);
+            if (ex != null) {
+                retVal.completeExceptionally(unwrap(ex));
+            } else {
+                retVal.complete(v);
+            }
+        });
+        retVal.whenComplete((v, ex) -> {
+            if (ex instanceof CancellationException) {
+                future.cancel(true);
+            }
+        });
+        return retVal;
+    }
+
+    /**
+     * Fails the given future with a {@link TimeoutException} if it hasn't completed within the time given.
+     */
+    public static void failAfter(@NotNull CompletableFuture<?> future, long timeout, @NotNull TimeUnit unit) {
+        if (future.isDone()) {
+            return;
+        }
+        ScheduledFuture<?> task = timer.schedule(() -> future.completeExceptionally(new TimeoutException("Timed out after " + unit.toMillis(timeout) + "ms")), timeout, unit);
+        future.whenComplete((v, ex) -> task.cancel(false));
+    }
+
+    /**
+     * Returns a future which completes after the given delay.
+     */
+    @NotNull
+    public static CompletableFuture<Void> delay(long delay, @NotNull TimeUnit unit) {
+        CompletableFuture<Void> retVal = new CompletableFuture<>();
+        if (delay <= 0L) {
+            retVal.complete(null);
+            return retVal;
+        }
+        ScheduledFuture<?> task = timer.schedule(() -> retVal.complete(null), delay, unit);
+        retVal.whenComplete((v, ex) -> task.cancel(false));
+        return retVal;
+    }
+
+    @NotNull
+    public static Throwable unwrap(@NotNull Throwable ex) {
+        while ((ex instanceof CompletionException || ex instanceof ExecutionException) && ex.getCause() != null) {
+            ex = ex.getCause();
+        }
+        return ex;
+    }
+}
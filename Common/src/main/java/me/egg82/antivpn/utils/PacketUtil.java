@@ -3,9 +3,10 @@ package me.egg82.antivpn.utils;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
-import me.egg82.antivpn.core.DoubleBuffer;
+import me.egg82.antivpn.core.MpscRingBuffer;
 import me.egg82.antivpn.logging.GELFLogger;
 import me.egg82.antivpn.messaging.MessagingService;
+import me.egg82.antivpn.messaging.PartitionScheme;
 import me.egg82.antivpn.messaging.packets.MultiPacket;
 import me.egg82.antivpn.messaging.packets.Packet;
 import me.egg82.antivpn.services.CollectionProvider;
@@ -15,17 +16,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.UUID;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class PacketUtil {
     private static final Logger logger = new GELFLogger(LoggerFactory.getLogger(PacketUtil.class));
 
+    private static final ThreadFactory senderFactory = new ThreadFactoryBuilder().setNameFormat("Anti-VPN_PacketSender_%d").setDaemon(true).build();
+
     private static ExecutorService workPool = Executors.newFixedThreadPool(4, new ThreadFactoryBuilder().setNameFormat("Anti-VPN_Messaging_%d").build());
 
     private PacketUtil() { }
@@ -43,61 +47,187 @@ public class PacketUtil {
         workPool = Executors.newFixedThreadPool(size, new ThreadFactoryBuilder().setNameFormat("Anti-VPN_Messaging_%d").build());
     }
 
-    private static final DoubleBuffer<Packet> packetQueue = new DoubleBuffer<>();
-    private static final AtomicBoolean requiresSending = new AtomicBoolean(false);
+    private static final int QUEUE_CAPACITY = 8192;
+    // Flush as soon as this many packets are waiting, or once the oldest has waited FLUSH_DELAY
+    private static final int FLUSH_SIZE = 32;
+    private static final long FLUSH_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
+    // Keeps a single MultiPacket from growing without limit during a flood
+    private static final int MAX_BATCH = 512;
+
+    private static final MpscRingBuffer<Packet> packetQueue = new MpscRingBuffer<>(QUEUE_CAPACITY);
+    // The last packet queued and not yet sent, so a packet published twice in a row only goes out once
+    // Only back-to-back copies are dropped, since anything queued in between (eg. a delete for the same IP) may depend on the order
+    private static final AtomicReference<Packet> lastQueued = new AtomicReference<>();
+    // Whoever holds this is the queue's single consumer
+    private static final Lock drainLock = new ReentrantLock();
+    private static final AtomicReference<Thread> sender = new AtomicReference<>();
+    private static final LongAdder dropped = new LongAdder();
+    private static final AtomicBoolean warnedFull = new AtomicBoolean(false);
 
     public static void queuePackets(@NotNull Collection<@NotNull Packet> packets) {
-        packetQueue.getWriteBuffer().addAll(packets);
-        requiresSending.set(true);
+        for (Packet packet : packets) {
+            queuePacket(packet);
+        }
     }
 
     public static void queuePackets(@NotNull Packet @NotNull ... packets) {
         for (Packet packet : packets) {
-            packetQueue.getWriteBuffer().add(packet);
+            queuePacket(packet);
         }
-        requiresSending.set(true);
     }
 
     public static void queuePacket(@NotNull Packet packet) {
-        packetQueue.getWriteBuffer().add(packet);
-        requiresSending.set(true);
+        if (packet.equals(lastQueued.getAndSet(packet))) {
+            return;
+        }
+        if (!packetQueue.offer(packet)) {
+            lastQueued.compareAndSet(packet, null);
+            dropped.increment();
+            if (warnedFull.compareAndSet(false, true)) {
+                logger.warn("Outgoing packet queue is full (" + packetQueue.capacity() + " packets), dropping packets until it drains.");
+            }
+            return;
+        }
+
+        Thread s = getSender();
+        int size = packetQueue.size();
+        // The sender parks until something arrives, then again until the batch fills or the deadline passes
+        if (size == 1 || size >= FLUSH_SIZE) {
+            LockSupport.unpark(s);
+        }
     }
 
     public static void repeatPacket(@NotNull UUID messageId, @NotNull Packet packet, @NotNull String fromService) {
-        sendPacket(messageId, packet, fromService);
+        sendPacket(messageId, packet, ConfigUtil.getCachedConfig().getPartitions().partitionOf(packet), fromService);
+    }
+
+    /**
+     * Sends everything in the queue right away, on the calling thread.
+     * The sender thread normally does this on its own; this is for making sure the queue is empty, eg. on shutdown.
+     */
+    public static void trySendQueue() { flush(); }
+
+    /**
+     * Packets dropped because the queue was full.
+     */
+    public static long getDropped() { return dropped.sum(); }
+
+    /**
+     * Stops the sender thread. Anything queued afterwards starts it again.
+     */
+    public static void close() {
+        Thread s = sender.getAndSet(null);
+        if (s != null) {
+            LockSupport.unpark(s);
+        }
+    }
+
+    @NotNull
+    private static Thread getSender() {
+        Thread retVal = sender.get();
+        if (retVal != null) {
+            return retVal;
+        }
+
+        Thread t = senderFactory.newThread(PacketUtil::runSender);
+        if (sender.compareAndSet(null, t)) {
+            t.start();
+            return t;
+        }
+        // Lost the race, another producer started one
+        Thread current = sender.get();
+        return current != null ? current : t;
+    }
+
+    private static void runSender() {
+        Thread self = Thread.currentThread();
+        while (sender.get() == self) {
+            if (packetQueue.isEmpty()) {
+                // Woken by the first packet, the timeout only covers a wakeup lost to a race between producers
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1L));
+                continue;
+            }
+
+            long deadline = System.nanoTime() + FLUSH_DELAY_NANOS;
+            long remaining;
+            while (sender.get() == self && packetQueue.size() < FLUSH_SIZE && (remaining = deadline - System.nanoTime()) > 0L) {
+                LockSupport.parkNanos(remaining);
+            }
+
+            try {
+                flush();
+            } catch (Exception ex) {
+                logger.error("Could not send queued packets.", ex);
+            }
+        }
+    }
+
+    private static void flush() {
+        drainLock.lock();
+        try {
+            while (!packetQueue.isEmpty()) {
+                List<Packet> batch = new ArrayList<>(Math.min(packetQueue.size(), MAX_BATCH));
+                Packet packet;
+                while (batch.size() < MAX_BATCH && (packet = packetQueue.poll()) != null) {
+                    // Once it's on its way, a new copy isn't a duplicate anymore
+                    lastQueued.compareAndSet(packet, null);
+                    batch.add(packet);
+                }
+                if (batch.isEmpty()) {
+                    // A producer has claimed a slot but not filled it yet, it'll wake the sender again
+                    break;
+                }
+                sendBatch(batch);
+            }
+            warnedFull.set(false);
+        } finally {
+            drainLock.unlock();
+        }
     }
 
-    public static void trySendQueue() {
-        if (!requiresSending.compareAndSet(true, false)) {
+    private static void sendBatch(@NotNull List<@NotNull Packet> batch) {
+        PartitionScheme partitions = ConfigUtil.getCachedConfig().getPartitions();
+        if (!partitions.isEnabled()) {
+            sendGroup(batch, PartitionScheme.BROADCAST);
             return;
         }
 
-        packetQueue.swapBuffers();
+        // One message per partition, so servers don't receive updates they aren't subscribed to
+        Map<Integer, List<Packet>> groups = new LinkedHashMap<>();
+        for (Packet packet : batch) {
+            groups.computeIfAbsent(partitions.partitionOf(packet), k -> new ArrayList<>()).add(packet);
+        }
+        for (Map.Entry<Integer, List<Packet>> kvp : groups.entrySet()) {
+            sendGroup(kvp.getValue(), kvp.getKey());
+        }
+    }
 
+    private static void sendGroup(@NotNull List<@NotNull Packet> batch, int partition) {
         UUID messageId = UUID.randomUUID();
         CollectionProvider.getMessageCache().put(messageId, Boolean.TRUE);
 
-        if (packetQueue.getReadBuffer().size() > 1) {
-            MultiPacket multi = new MultiPacket();
-            Packet packet;
-            while ((packet = packetQueue.getReadBuffer().poll()) != null) {
-                if (!multi.getPackets().add(packet) && ConfigUtil.getDebugOrFalse()) {
-                    logger.info("Skipping duplicate packet " + packet.getClass().getSimpleName());
-                }
-            }
+        if (batch.size() == 1) {
+            sendPacket(messageId, batch.get(0), partition, null);
+            return;
+        }
 
-            if (!multi.getPackets().isEmpty()) {
-                sendPacket(messageId, multi, null);
-            }
-        } else {
-            Packet packet = packetQueue.getReadBuffer().poll();
-            if (packet != null) {
-                sendPacket(messageId, packet, null);
+        MultiPacket multi = new MultiPacket();
+        for (Packet packet : batch) {
+            if (!multi.getPackets().add(packet)) {
+                // The later copy wins and moves to the end, so anything sent in between can't undo it
+                multi.getPackets().remove(packet);
+                multi.getPackets().add(packet);
+                if (ConfigUtil.getDebugOrFalse()) {
+                    logger.info("Skipping earlier duplicate packet " + packet.getClass().getSimpleName());
+                }
             }
         }
+        if (!multi.getPackets().isEmpty()) {
+            sendPacket(messageId, multi, partition, null);
+        }
     }
 
-    private static void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, @Nullable String fromService) {
+    private static void sendPacket(@NotNull UUID messageId, @NotNull Packet packet, int partition, @Nullable String fromService) {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         for (MessagingService service : cachedConfig.getMessaging()) {
@@ -107,7 +237,7 @@ public class PacketUtil {
 
             workPool.execute(() -> {
                 try {
-                    service.sendPacket(messageId, packet);
+                    service.sendPacket(messageId, packet, partition);
                 } catch (IOException | TimeoutException ex) {
                     logger.warn("Could not broadcast packet " + packet.getClass().getSimpleName() + " through " + service.getName(), ex);
                 }
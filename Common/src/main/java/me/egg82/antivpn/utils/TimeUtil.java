@@ -11,8 +11,8 @@ import java.util.regex.Pattern;
 public class TimeUtil {
     private TimeUtil() { }
 
-    private static final Pattern timePattern = Pattern.compile("^(\\d+)\\s*(?:seconds?|s|minutes?|m|hours?|h|days?|d)$");
-    private static final Pattern unitPattern = Pattern.compile("^(?:\\d+)\\s*(seconds?|s|minutes?|m|hours?|h|days?|d)$");
+    private static final Pattern timePattern = Pattern.compile("^(\\d+)\\s*(?:milliseconds?|millis|ms|seconds?|s|minutes?|m|hours?|h|days?|d)$");
+    private static final Pattern unitPattern = Pattern.compile("^(?:\\d+)\\s*(milliseconds?|millis|ms|seconds?|s|minutes?|m|hours?|h|days?|d)$");
 
     public static @Nullable Time getTime(@NotNull String input) {
         Matcher timeMatcher = timePattern.matcher(input);
@@ -27,7 +27,12 @@ public class TimeUtil {
 
         long time = Long.parseLong(timeMatcher.group(1));
 
-        char unit = unitMatcher.group(1).charAt(0);
+        String unitString = unitMatcher.group(1);
+        if (unitString.equals("ms") || unitString.startsWith("milli")) {
+            return new Time(time, TimeUnit.MILLISECONDS);
+        }
+
+        char unit = unitString.charAt(0);
         switch (unit) {
             case 's':
                 return new Time(time, TimeUnit.SECONDS);
@@ -51,6 +56,8 @@ public class TimeUtil {
             return time.time + (time.time == 1 ? "minute" : "minutes");
         } else if (time.unit == TimeUnit.SECONDS) {
             return time.time + (time.time == 1 ? "second" : "seconds");
+        } else if (time.unit == TimeUnit.MILLISECONDS) {
+            return time.time + "ms";
         }
         return null;
     }
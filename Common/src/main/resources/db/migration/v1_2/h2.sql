@@ -0,0 +1,3 @@
+CREATE INDEX IF NOT EXISTS `avpn_6_ip_modified` ON `avpn_6_ip` (`modified`);
+
+CREATE INDEX IF NOT EXISTS `avpn_6_player_modified` ON `avpn_6_player` (`modified`);
\ No newline at end of file
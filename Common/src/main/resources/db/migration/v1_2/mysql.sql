@@ -0,0 +1,3 @@
+CREATE INDEX `avpn_6_ip_modified` ON `avpn_6_ip` (`modified`);
+
+CREATE INDEX `avpn_6_player_modified` ON `avpn_6_player` (`modified`);
\ No newline at end of file
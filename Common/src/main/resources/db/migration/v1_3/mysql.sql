@@ -0,0 +1,3 @@
+ALTER TABLE `avpn_6_ip` ADD COLUMN `ip_bin` VARBINARY(16) NULL;
+
+UPDATE `avpn_6_ip` SET `ip_bin` = IF(LENGTH(INET6_ATON(`ip`)) = 4, CONCAT(UNHEX('00000000000000000000FFFF'), INET6_ATON(`ip`)), INET6_ATON(`ip`));
\ No newline at end of file
@@ -0,0 +1 @@
+ALTER TABLE `avpn_6_ip` ADD COLUMN `ip_bin` VARBINARY(16) NULL;
\ No newline at end of file
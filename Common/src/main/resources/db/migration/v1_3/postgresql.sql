@@ -0,0 +1,3 @@
+ALTER TABLE "avpn_6_ip" ADD COLUMN "ip_bin" BYTEA;
+
+UPDATE "avpn_6_ip" SET "ip_bin" = decode('00000000000000000000ffff' || lpad(to_hex("ip"::inet - '0.0.0.0'::inet), 8, '0'), 'hex') WHERE position(':' in "ip") = 0;
\ No newline at end of file
@@ -0,0 +1 @@
+ALTER TABLE "avpn_6_ip" ADD COLUMN "ip_bin" BLOB;
\ No newline at end of file
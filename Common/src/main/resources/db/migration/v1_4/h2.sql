@@ -0,0 +1,7 @@
+ALTER TABLE `avpn_6_ip` DROP COLUMN `ip`;
+
+ALTER TABLE `avpn_6_ip` ALTER COLUMN `ip_bin` RENAME TO `ip`;
+
+ALTER TABLE `avpn_6_ip` ALTER COLUMN `ip` SET NOT NULL;
+
+ALTER TABLE `avpn_6_ip` ADD CONSTRAINT `avpn_6_ip_ip` UNIQUE (`ip`);
\ No newline at end of file
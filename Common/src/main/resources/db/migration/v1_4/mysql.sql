@@ -0,0 +1,5 @@
+ALTER TABLE `avpn_6_ip` DROP COLUMN `ip`;
+
+ALTER TABLE `avpn_6_ip` CHANGE COLUMN `ip_bin` `ip` VARBINARY(16) NOT NULL;
+
+CREATE UNIQUE INDEX `avpn_6_ip_ip` ON `avpn_6_ip` (`ip`);
\ No newline at end of file
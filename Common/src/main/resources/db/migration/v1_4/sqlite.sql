@@ -0,0 +1,19 @@
+CREATE TABLE "avpn_6_ip_new" (
+	"id"	INTEGER NOT NULL,
+	"version"	INTEGER NOT NULL,
+	"created"	INTEGER NOT NULL,
+	"modified"	INTEGER NOT NULL,
+	"ip"	BLOB NOT NULL UNIQUE,
+	"type"	INTEGER NOT NULL,
+	"cascade"	INTEGER,
+	"consensus"	REAL,
+	PRIMARY KEY("id" AUTOINCREMENT)
+);
+
+INSERT INTO "avpn_6_ip_new" ("id", "version", "created", "modified", "ip", "type", "cascade", "consensus") SELECT "id", "version", "created", "modified", "ip_bin", "type", "cascade", "consensus" FROM "avpn_6_ip";
+
+DROP TABLE "avpn_6_ip";
+
+ALTER TABLE "avpn_6_ip_new" RENAME TO "avpn_6_ip";
+
+CREATE INDEX IF NOT EXISTS "avpn_6_ip_modified" ON "avpn_6_ip" ("modified");
\ No newline at end of file
@@ -0,0 +1,20 @@
+package me.egg82.antivpn.config;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.spongepowered.configurate.CommentedConfigurationNode;
+import org.spongepowered.configurate.ConfigurateException;
+import org.spongepowered.configurate.yaml.YamlConfigurationLoader;
+
+import java.net.URL;
+
+class TestConfigurationVersion {
+    @Test
+    void testBundledConfigIsCurrent() throws ConfigurateException {
+        URL url = getClass().getClassLoader().getResource("config.yml");
+        Assertions.assertNotNull(url);
+
+        CommentedConfigurationNode config = YamlConfigurationLoader.builder().url(url).build().load();
+        Assertions.assertEquals(ConfigurationVersionUtil.CURRENT_VERSION, config.node("version").getDouble(), 0.0d);
+    }
+}
@@ -0,0 +1,105 @@
+package me.egg82.antivpn.core;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+class TestCIDRTrie {
+    @Test
+    void testEmpty() {
+        CIDRTrie trie = CIDRTrie.of(Collections.emptyList());
+        Assertions.assertTrue(trie.isEmpty());
+        Assertions.assertFalse(trie.contains(IPKey.of("10.0.0.1")));
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db8::1")));
+    }
+
+    @Test
+    void testIpv4PrefixBoundaries() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("10.1.2.0/23"));
+        Assertions.assertFalse(trie.contains(IPKey.of("10.1.1.255")));
+        Assertions.assertTrue(trie.contains(IPKey.of("10.1.2.0")));
+        Assertions.assertTrue(trie.contains(IPKey.of("10.1.3.255")));
+        Assertions.assertFalse(trie.contains(IPKey.of("10.1.4.0")));
+    }
+
+    @Test
+    void testSingleHost() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("192.168.0.1"));
+        Assertions.assertTrue(trie.contains(IPKey.of("192.168.0.1")));
+        Assertions.assertFalse(trie.contains(IPKey.of("192.168.0.0")));
+        Assertions.assertFalse(trie.contains(IPKey.of("192.168.0.2")));
+    }
+
+    @Test
+    void testMostSpecificMatch() {
+        CIDRTrie trie = CIDRTrie.of(Arrays.asList("10.0.0.0/8", "10.1.0.0/16"));
+        Assertions.assertEquals("10.1.0.0/16", trie.getMatch(IPKey.of("10.1.2.3")));
+        Assertions.assertEquals("10.0.0.0/8", trie.getMatch(IPKey.of("10.2.2.3")));
+        Assertions.assertNull(trie.getMatch(IPKey.of("11.0.0.0")));
+    }
+
+    @Test
+    void testWildcardRange() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("1.2.3.*"));
+        Assertions.assertFalse(trie.contains(IPKey.of("1.2.2.255")));
+        Assertions.assertTrue(trie.contains(IPKey.of("1.2.3.0")));
+        Assertions.assertTrue(trie.contains(IPKey.of("1.2.3.128")));
+        Assertions.assertTrue(trie.contains(IPKey.of("1.2.3.255")));
+        Assertions.assertFalse(trie.contains(IPKey.of("1.2.4.0")));
+        Assertions.assertEquals("1.2.3.*", trie.getMatch(IPKey.of("1.2.3.77")));
+    }
+
+    @Test
+    void testDashedRange() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("1.2.3.4-10"));
+        Assertions.assertFalse(trie.contains(IPKey.of("1.2.3.3")));
+        for (int i = 4; i <= 10; i++) {
+            Assertions.assertTrue(trie.contains(IPKey.of("1.2.3." + i)), "1.2.3." + i);
+        }
+        Assertions.assertFalse(trie.contains(IPKey.of("1.2.3.11")));
+        Assertions.assertEquals("1.2.3.4-10", trie.getMatch(IPKey.of("1.2.3.9")));
+    }
+
+    @Test
+    void testNonContiguousRangeSkipped() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("1.*.3.4"));
+        Assertions.assertFalse(trie.contains(IPKey.of("1.2.3.4")));
+        Assertions.assertFalse(trie.contains(IPKey.of("1.0.0.0")));
+    }
+
+    @Test
+    void testInvalidSkipped() {
+        CIDRTrie trie = CIDRTrie.of(Arrays.asList("not an ip", "10.0.0.0/8"));
+        Assertions.assertTrue(trie.contains(IPKey.of("10.255.255.255")));
+    }
+
+    @Test
+    void testIpv6() {
+        CIDRTrie trie = CIDRTrie.of(Arrays.asList("2001:db8::/32", "2001:db8:1::/48", "::1"));
+        Assertions.assertEquals("2001:db8:1::/48", trie.getMatch(IPKey.of("2001:db8:1::1")));
+        Assertions.assertEquals("2001:db8::/32", trie.getMatch(IPKey.of("2001:db8:ffff:ffff::1")));
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db9::")));
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db7:ffff:ffff:ffff:ffff:ffff:ffff")));
+        Assertions.assertTrue(trie.contains(IPKey.of("::1")));
+        Assertions.assertFalse(trie.contains(IPKey.of("::2")));
+    }
+
+    @Test
+    void testIpv6DashedRange() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("2001:db8::1-7"));
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db8::")));
+        for (int i = 1; i <= 7; i++) {
+            Assertions.assertTrue(trie.contains(IPKey.of("2001:db8::" + i)), "2001:db8::" + i);
+        }
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db8::8")));
+    }
+
+    @Test
+    void testFamiliesSeparate() {
+        CIDRTrie trie = CIDRTrie.of(Collections.singletonList("0.0.0.0/0"));
+        Assertions.assertTrue(trie.contains(IPKey.of("203.0.113.1")));
+        Assertions.assertFalse(trie.contains(IPKey.of("2001:db8::1")));
+    }
+}
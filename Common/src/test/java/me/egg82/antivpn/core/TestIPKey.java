@@ -0,0 +1,58 @@
+package me.egg82.antivpn.core;
+
+import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+class TestIPKey {
+    @Test
+    void testIpv4RoundTrip() throws UnknownHostException {
+        for (String ip : new String[] { "0.0.0.0", "1.2.3.4", "127.0.0.1", "203.0.113.255", "255.255.255.255" }) {
+            IPKey key = IPKey.of(ip);
+            Assertions.assertFalse(key.isV6(), ip);
+            Assertions.assertEquals(ip, key.toAddressString());
+            Assertions.assertArrayEquals(InetAddress.getByName(ip).getAddress(), key.toBytes(), ip);
+            Assertions.assertEquals(key, IPKey.of(key.toBytes(), null));
+            Assertions.assertEquals(key, IPKey.of(key.toInetAddress(), null));
+        }
+    }
+
+    @Test
+    void testIpv6RoundTrip() throws UnknownHostException {
+        for (String ip : new String[] { "::", "::1", "2001:db8::1", "2001:db8:0:0:1:0:0:1", "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff" }) {
+            IPKey key = IPKey.of(ip);
+            InetAddress address = InetAddress.getByName(ip);
+            Assertions.assertTrue(key.isV6(), ip);
+            Assertions.assertEquals(address.getHostAddress(), key.toAddressString());
+            Assertions.assertArrayEquals(address.getAddress(), key.toBytes(), ip);
+            Assertions.assertEquals(key, IPKey.of(key.toBytes(), null));
+            Assertions.assertEquals(key, IPKey.of(key.toInetAddress(), null));
+        }
+    }
+
+    @Test
+    void testMethod() {
+        IPKey key = IPKey.of("1.2.3.4");
+        Assertions.assertNull(key.getMethod());
+        for (AlgorithmMethod method : AlgorithmMethod.values()) {
+            IPKey withMethod = key.withMethod(method);
+            Assertions.assertEquals(method, withMethod.getMethod());
+            Assertions.assertNotEquals(key, withMethod);
+            Assertions.assertEquals(key, withMethod.withMethod(null));
+            Assertions.assertEquals(withMethod, IPKey.of("1.2.3.4", method));
+            Assertions.assertEquals(withMethod.hashCode(), IPKey.of("1.2.3.4", method).hashCode());
+        }
+        Assertions.assertTrue(IPKey.of("2001:db8::1", AlgorithmMethod.CASCADE).isV6());
+    }
+
+    @Test
+    void testInvalid() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IPKey.of("1.2.3"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IPKey.of("256.0.0.1"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IPKey.of("example.com"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> IPKey.of(new byte[5], null));
+    }
+}
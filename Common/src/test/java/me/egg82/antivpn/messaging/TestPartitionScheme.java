@@ -0,0 +1,52 @@
+package me.egg82.antivpn.messaging;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+class TestPartitionScheme {
+    private static final int COUNT = 8;
+
+    private final PartitionScheme partitions = PartitionScheme.of(COUNT, Collections.emptySet());
+
+    @Test
+    void testDisabled() {
+        Assertions.assertEquals(PartitionScheme.BROADCAST, PartitionScheme.disabled().partitionOf("10.0.0.1"));
+    }
+
+    @Test
+    void testIpv4SameSubnet() {
+        int partition = partitions.partitionOf("10.1.2.0");
+        for (int i = 1; i < 256; i++) {
+            Assertions.assertEquals(partition, partitions.partitionOf("10.1.2." + i));
+        }
+    }
+
+    @Test
+    void testIpv4Spread() {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 256; i++) {
+            int partition = partitions.partitionOf("10.1." + i + ".1");
+            Assertions.assertTrue(partition >= 0 && partition < COUNT);
+            seen.add(partition);
+        }
+        Assertions.assertEquals(COUNT, seen.size());
+    }
+
+    @Test
+    void testIpv6SameSubnet() {
+        Assertions.assertEquals(partitions.partitionOf("2001:db8:1::1"), partitions.partitionOf("2001:db8:1:ffff::1"));
+    }
+
+    @Test
+    void testIpv6Spread() {
+        Set<Integer> seen = new HashSet<>();
+        for (int i = 0; i < 256; i++) {
+            seen.add(partitions.partitionOf("2001:db8:" + Integer.toHexString(i) + "::1"));
+        }
+        Assertions.assertEquals(COUNT, seen.size());
+    }
+}
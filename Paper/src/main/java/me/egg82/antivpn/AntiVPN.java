@@ -11,7 +11,11 @@ import me.egg82.antivpn.api.event.api.APIDisableEventImpl;
 import me.egg82.antivpn.api.event.api.APILoadedEventImpl;
 import me.egg82.antivpn.api.model.ip.BukkitIPManager;
 import me.egg82.antivpn.api.model.player.BukkitPlayerManager;
+import me.egg82.antivpn.api.model.source.AbstractSource;
+import me.egg82.antivpn.api.model.source.Source;
 import me.egg82.antivpn.api.model.source.SourceManagerImpl;
+import me.egg82.antivpn.api.model.source.SourceQueryExecutor;
+import me.egg82.antivpn.api.model.source.models.SourceModel;
 import me.egg82.antivpn.api.platform.BukkitPlatform;
 import me.egg82.antivpn.api.platform.BukkitPluginMetadata;
 import me.egg82.antivpn.api.platform.Platform;
@@ -40,6 +44,8 @@ import me.egg82.antivpn.messaging.packets.vpn.DeleteIPPacket;
 import me.egg82.antivpn.messaging.packets.vpn.DeletePlayerPacket;
 import me.egg82.antivpn.messaging.packets.vpn.IPPacket;
 import me.egg82.antivpn.messaging.packets.vpn.PlayerPacket;
+import me.egg82.antivpn.storage.CacheWarmer;
+import me.egg82.antivpn.storage.StoragePurgeTask;
 import me.egg82.antivpn.storage.StorageService;
 import me.egg82.antivpn.utils.EventUtil;
 import me.egg82.antivpn.utils.PacketUtil;
@@ -172,12 +178,15 @@ public class AntiVPN {
         BukkitPlayerManager playerManager = new BukkitPlayerManager(plugin, cachedConfig.getMcLeaksKey(), cachedConfig.getCacheTime());
         Platform platform = new BukkitPlatform(System.currentTimeMillis());
         AbstractPluginMetadata metadata = new BukkitPluginMetadata(plugin.getDescription().getVersion());
-        VPNAPI api = new VPNAPIImpl(platform, metadata, ipManager, playerManager, sourceManager, new SimpleEventBus<>(VPNEvent.class));
+        SourceQueryExecutor sourceQueryExecutor = new SourceQueryExecutor(cachedConfig.getThreads(), cachedConfig.getSourceConcurrency(), cachedConfig.getTimeout() * 2L);
+        VPNAPI api = new VPNAPIImpl(platform, metadata, ipManager, playerManager, sourceManager, sourceQueryExecutor, new SimpleEventBus<>(VPNEvent.class));
 
         APIRegistrationUtil.register(api);
         EventUtil.post(new APILoadedEventImpl(api), api.getEventBus());
 
-        PacketUtil.queuePacket(new InitializationPacket(ConfigUtil.getCachedConfig().getServerId(), Packet.VERSION));
+        PacketUtil.queuePacket(new InitializationPacket(ConfigUtil.getCachedConfig().getServerId(), Packet.VERSION, ConfigUtil.getHiddenConfig().getPacketDictionaryId()));
+
+        new CacheWarmer(ipManager, playerManager).start();
     }
 
     private void loadCommands() {
@@ -285,6 +294,7 @@ public class AntiVPN {
     }
 
     private void loadTasks() {
+        // Only a backstop, queued packets are flushed by their own sender thread
         tasks.add(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, () -> {
             try {
                 VPNAPIProvider.getInstance().runUpdateTask().join();
@@ -292,6 +302,9 @@ public class AntiVPN {
                 logger.error(ex.getClass().getName() + ": " + ex.getMessage(), ex);
             }
         }, 1L, 20L).getTaskId());
+
+        // Checks once a minute, but only purges once storage.settings.purge.interval has passed
+        tasks.add(Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, new StoragePurgeTask(), 20L * 60L, 20L * 60L).getTaskId());
     }
 
     private void loadHooks() {
@@ -363,11 +376,19 @@ public class AntiVPN {
         } catch (CancellationException | CompletionException ex) {
             logger.error(ex.getClass().getName() + ": " + ex.getMessage(), ex);
         }
+        PacketUtil.close();
 
         EventUtil.post(new APIDisableEventImpl(api), api.getEventBus());
         api.getEventBus().unregisterAll();
         APIRegistrationUtil.deregister();
 
+        ((VPNAPIImpl) api).getSourceQueryExecutor().close();
+        for (Source<SourceModel> source : ((VPNAPIImpl) api).getSourceManager().getSources()) {
+            if (source instanceof AbstractSource) {
+                ((AbstractSource<?>) source).close();
+            }
+        }
+
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
         for (MessagingService service : cachedConfig.getMessaging()) {
             service.close();
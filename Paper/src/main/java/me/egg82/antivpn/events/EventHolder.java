@@ -1,16 +1,15 @@
 package me.egg82.antivpn.events;
 
-import inet.ipaddr.IPAddressString;
 import me.egg82.antivpn.api.VPNAPIProvider;
 import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
 import me.egg82.antivpn.api.model.ip.IPManager;
 import me.egg82.antivpn.api.model.player.PlayerManager;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
 import me.egg82.antivpn.locale.BukkitLocaleCommandUtil;
 import me.egg82.antivpn.locale.MessageKey;
 import me.egg82.antivpn.logging.GELFLogger;
-import me.egg82.antivpn.utils.ValidationUtil;
 import ninja.egg82.events.BukkitEventSubscriber;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
@@ -58,38 +57,40 @@ public abstract class EventHolder {
         return false;
     }
 
-    protected final boolean rangeContains(@NotNull String range, @NotNull String ip) { return new IPAddressString(range).contains(new IPAddressString(ip)); }
-
     protected final boolean isIgnoredIp(@NotNull String ip, @NotNull String playerName, @NotNull UUID playerId) {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         // Check ignored IP addresses/ranges
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)) {
-                if (ConfigUtil.getDebugOrFalse()) {
-                    BukkitLocaleCommandUtil.getConsole().sendMessage(
-                            MessageKey.DEBUG__IGNORED_IP,
-                            "{name}", playerName,
-                            "{uuid}", playerId.toString(),
-                            "{ip}", ip
-                    );
-                }
-                return true;
-            } else if (ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)) {
-                if (ConfigUtil.getDebugOrFalse()) {
-                    BukkitLocaleCommandUtil.getConsole().sendMessage(
-                            MessageKey.DEBUG__IGNORED_RANGE,
-                            "{name}", playerName,
-                            "{uuid}", playerId.toString(),
-                            "{ip}", ip,
-                            "{range}", testAddress
-                    );
-                }
-                return true;
-            }
+        IPKey key;
+        try {
+            key = IPKey.of(ip);
+        } catch (IllegalArgumentException ignored) {
+            return false;
+        }
+        String match = cachedConfig.getIgnoredIpTrie().getMatch(key);
+        if (match == null) {
+            return false;
         }
 
-        return false;
+        if (ConfigUtil.getDebugOrFalse()) {
+            if (match.indexOf('/') == -1) {
+                BukkitLocaleCommandUtil.getConsole().sendMessage(
+                        MessageKey.DEBUG__IGNORED_IP,
+                        "{name}", playerName,
+                        "{uuid}", playerId.toString(),
+                        "{ip}", ip
+                );
+            } else {
+                BukkitLocaleCommandUtil.getConsole().sendMessage(
+                        MessageKey.DEBUG__IGNORED_RANGE,
+                        "{name}", playerName,
+                        "{uuid}", playerId.toString(),
+                        "{ip}", ip,
+                        "{range}", match
+                );
+            }
+        }
+        return true;
     }
 
     protected final boolean getVpnDataBlocking(@NotNull String ip) {
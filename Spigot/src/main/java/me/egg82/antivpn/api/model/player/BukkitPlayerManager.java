@@ -6,7 +6,6 @@ import me.egg82.antivpn.bukkit.BukkitTailorUtil;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.services.lookup.PlayerLookup;
-import me.egg82.antivpn.storage.StorageService;
 import me.egg82.antivpn.storage.models.PlayerModel;
 import me.egg82.antivpn.utils.TimeUtil;
 import net.kyori.adventure.text.Component;
@@ -34,13 +33,8 @@ public class BukkitPlayerManager extends AbstractPlayerManager {
         return CompletableFuture.supplyAsync(() -> {
             CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
-            for (StorageService service : cachedConfig.getStorage()) {
-                PlayerModel model = service.getPlayerModel(uniqueId, cachedConfig.getSourceCacheTime());
-                if (model != null) {
-                    return new BukkitPlayer(uniqueId, model.isMcleaks());
-                }
-            }
-            return null;
+            PlayerModel model = cachedConfig.getTieredStorage().getPlayerModel(uniqueId, cachedConfig.getSourceCacheTime());
+            return model != null ? new BukkitPlayer(uniqueId, model.isMcleaks()) : null;
         });
     }
 
@@ -49,13 +43,8 @@ public class BukkitPlayerManager extends AbstractPlayerManager {
         return PlayerLookup.get(username).thenApply(info -> {
             CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
-            for (StorageService service : cachedConfig.getStorage()) {
-                PlayerModel model = service.getPlayerModel(info.getUUID(), cachedConfig.getSourceCacheTime());
-                if (model != null) {
-                    return new BukkitPlayer(info.getUUID(), model.isMcleaks());
-                }
-            }
-            return null;
+            PlayerModel model = cachedConfig.getTieredStorage().getPlayerModel(info.getUUID(), cachedConfig.getSourceCacheTime());
+            return model != null ? new BukkitPlayer(info.getUUID(), model.isMcleaks()) : null;
         });
     }
 
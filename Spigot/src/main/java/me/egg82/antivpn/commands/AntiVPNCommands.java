@@ -2,11 +2,13 @@ package me.egg82.antivpn.commands;
 
 import cloud.commandframework.ArgumentDescription;
 import cloud.commandframework.arguments.standard.EnumArgument;
+import cloud.commandframework.arguments.standard.IntegerArgument;
 import cloud.commandframework.arguments.standard.StringArgument;
 import cloud.commandframework.bukkit.BukkitCommandManager;
 import cloud.commandframework.bukkit.parsers.selector.SinglePlayerSelectorArgument;
 import cloud.commandframework.minecraft.extras.MinecraftHelp;
 import me.egg82.antivpn.commands.arguments.KickType;
+import me.egg82.antivpn.commands.internal.ImportCommand;
 import me.egg82.antivpn.commands.internal.KickCommand;
 import me.egg82.antivpn.commands.internal.ReloadCommand;
 import me.egg82.antivpn.config.ConfigUtil;
@@ -14,10 +16,14 @@ import me.egg82.antivpn.locale.BukkitLocaleCommandUtil;
 import me.egg82.antivpn.locale.BukkitLocalizedCommandSender;
 import me.egg82.antivpn.locale.LocalizedArgumentDescription;
 import me.egg82.antivpn.locale.MessageKey;
+import me.egg82.antivpn.storage.StorageService;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 import org.spongepowered.configurate.ConfigurationNode;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AntiVPNCommands extends CommandHolder {
     public AntiVPNCommands(@NotNull Plugin plugin) {
         super();
@@ -47,16 +53,16 @@ public class AntiVPNCommands extends CommandHolder {
 
         // TODO: Commands + argument suggestions
 
-        /*commands.add(
-            commandManager.commandBuilder("antivpn", baseAliases)
-                .literal("import", LocalizedArgumentDescription.of(MessageKey.COMMAND_DESC__IMPORT), getAliases(config, "import")) // TODO: Localization
-                .permission(ConfigUtil.getCachedConfig().getAdminPermissionNode())
-                .argument(StringArgument.<BukkitLocalizedCommandSender>newBuilder("master").withSuggestionsProvider(storageSuggestions).build(), ArgumentDescription.of("<master>")) // TODO: Localization
-                .argument(StringArgument.<BukkitLocalizedCommandSender>newBuilder("slave").withSuggestionsProvider(storageSuggestions).build(), ArgumentDescription.of("<slave>")) // TODO: Localization
-                .argument(IntegerArgument.<BukkitLocalizedCommandSender>newBuilder("batchSize").withMin(1).asOptionalWithDefault("50").build(), ArgumentDescription.of("[batchSize]")) // TODO: Localization
-                .handler(new ReloadCommand(commandManager, plugin.getDataFolder(), plugin))
-                .build()
-        );*/
+        commands.add(
+                commandManager.commandBuilder("antivpn", baseAliases)
+                        .literal("import", LocalizedArgumentDescription.of(MessageKey.COMMAND_DESC__IMPORT), getAliases(config, "import")) // TODO: Localization
+                        .permission(ConfigUtil.getCachedConfig().getAdminPermissionNode())
+                        .argument(StringArgument.<BukkitLocalizedCommandSender>newBuilder("master").withSuggestionsProvider((c, s) -> getStorageNames()).build(), ArgumentDescription.of("<master>")) // TODO: Localization
+                        .argument(StringArgument.<BukkitLocalizedCommandSender>newBuilder("slave").withSuggestionsProvider((c, s) -> getStorageNames()).build(), ArgumentDescription.of("<slave>")) // TODO: Localization
+                        .argument(IntegerArgument.<BukkitLocalizedCommandSender>newBuilder("batchSize").withMin(1).asOptionalWithDefault("500").build(), ArgumentDescription.of("[batchSize]")) // TODO: Localization
+                        .handler(new ImportCommand(commandManager))
+                        .build()
+        );
 
         commands.add(
                 commandManager.commandBuilder("antivpn", baseAliases)
@@ -114,4 +120,12 @@ public class AntiVPNCommands extends CommandHolder {
 
         registerAll();
     }
+
+    private static @NotNull List<@NotNull String> getStorageNames() {
+        List<String> retVal = new ArrayList<>();
+        for (StorageService service : ConfigUtil.getCachedConfig().getStorage()) {
+            retVal.add(service.getName());
+        }
+        return retVal;
+    }
 }
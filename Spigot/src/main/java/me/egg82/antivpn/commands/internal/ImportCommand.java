@@ -2,7 +2,12 @@ package me.egg82.antivpn.commands.internal;
 
 import cloud.commandframework.bukkit.BukkitCommandManager;
 import cloud.commandframework.context.CommandContext;
+import me.egg82.antivpn.config.CachedConfig;
+import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.locale.BukkitLocalizedCommandSender;
+import me.egg82.antivpn.locale.MessageKey;
+import me.egg82.antivpn.storage.StorageMigrator;
+import me.egg82.antivpn.storage.StorageService;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.jetbrains.annotations.NotNull;
 
@@ -12,91 +17,66 @@ public class ImportCommand extends AbstractCommand {
     }
 
     @Override
-    public void execute(@NonNull CommandContext<BukkitLocalizedCommandSender> commandContext) { }
+    public void execute(@NonNull CommandContext<BukkitLocalizedCommandSender> commandContext) {
+        commandManager.taskRecipe().begin(commandContext)
+                .asynchronous(c -> {
+                    String masterName = c.get("master");
+                    String slaveName = c.get("slave");
+                    int batchSize = c.get("batchSize");
 
-    /*private final String masterName;
-    private final String slaveName;
-    private final String batchMax;
+                    if (masterName.equalsIgnoreCase(slaveName)) {
+                        c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__ERROR__SAME_STORAGE);
+                        return;
+                    }
 
-    public ImportCommand(@NotNull CommandIssuer issuer, @NotNull TaskChainFactory taskFactory, @NotNull String masterName, @NotNull String slaveName, @NotNull String batchMax) {
-        super(issuer, taskFactory);
-        this.masterName = masterName;
-        this.slaveName = slaveName;
-        this.batchMax = batchMax;
-    }
-
-    public void run() {
-        if (masterName.isEmpty()) {
-            issuer.sendError(MessageKey.IMPORT__NO_MASTER);
-            return;
-        }
-        if (slaveName.isEmpty()) {
-            issuer.sendError(MessageKey.IMPORT__NO_SLAVE);
-            return;
-        }
-
-        if (masterName.equalsIgnoreCase(slaveName)) {
-            issuer.sendError(MessageKey.IMPORT__SAME_STORAGE);
-            return;
-        }
-
-       CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
+                    CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
-        int max = batchMax == null ? 50 : Integer.parseInt(batchMax);
+                    StorageService master = null;
+                    StorageService slave = null;
+                    for (StorageService service : cachedConfig.getStorage()) {
+                        if (master == null && masterName.equalsIgnoreCase(service.getName())) {
+                            master = service;
+                        } else if (slave == null && slaveName.equalsIgnoreCase(service.getName())) {
+                            slave = service;
+                        }
+                    }
 
-        int masterIndex = -1;
-        int slaveIndex = -1;
-        for (int i = 0; i < cachedConfig.getStorage().size(); i++) {
-            StorageService storage = cachedConfig.getStorage().get(i);
-            if (masterIndex == -1 && masterName.equalsIgnoreCase(storage.getName())) {
-                masterIndex = i;
-            } else if (slaveIndex == -1 && slaveName.equalsIgnoreCase(storage.getName())) { // The elseif helps to ensure we aren't trying to import from master to master
-                slaveIndex = i;
-            }
-        }
+                    if (master == null) {
+                        c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__ERROR__NO_MASTER);
+                        return;
+                    }
+                    if (slave == null) {
+                        c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__ERROR__NO_SLAVE);
+                        return;
+                    }
 
-        if (masterIndex == -1) {
-            issuer.sendError(MessageKey.IMPORT__NO_MASTER);
-            return;
-        }
-        if (slaveIndex == -1) {
-            issuer.sendError(MessageKey.IMPORT__NO_SLAVE);
-            return;
-        }
+                    c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__BEGIN);
 
-        issuer.sendInfo(MessageKey.IMPORT__BEGIN);
+                    StorageMigrator migrator = new StorageMigrator(master, slave, batchSize, new StorageMigrator.ProgressListener() {
+                        @Override
+                        public void onProgress(StorageMigrator.@NotNull Phase phase, long rows, double rowsPerSecond) {
+                            c.getSender().sendMessage(
+                                    MessageKey.COMMAND__IMPORT__PROGRESS,
+                                    "{type}", phase.name().toLowerCase(),
+                                    "{rows}", String.valueOf(rows),
+                                    "{rate}", String.valueOf(Math.round(rowsPerSecond))
+                            );
+                        }
 
-        StorageService master = cachedConfig.getStorage().get(masterIndex);
-        StorageService slave = cachedConfig.getStorage().get(slaveIndex);
-
-        TaskChain<Void> chain = taskFactory.newChain();
-        chain.setErrorHandler((ex, task) -> ExceptionUtil.handleException(ex, logger));
-        chain
-                .sync(() -> issuer.sendInfo(MessageKey.IMPORT__IPS, "{id}", "0"))
-                .<Integer>asyncCallback((v, r) -> {
-                    int start = 1;
-                    Set<IPModel> models;
-                    do {
-                        models = master.getAllIps(start, max);
-                        slave.storeModels(models);
-                        issuer.sendInfo(MessageKey.IMPORT__IPS, "{id}", String.valueOf(start + models.size()));
-                        start += models.size();
-                    } while (models.size() == max);
-                    r.accept(start);
-                })
-                .sync(() -> issuer.sendInfo(MessageKey.IMPORT__PLAYERS, "{id}", "0"))
-                .<Integer>asyncCallback((v, r) -> {
-                    int start = 1;
-                    Set<PlayerModel> models;
-                    do {
-                        models = master.getAllPlayers(start, max);
-                        slave.storeModels(models);
-                        issuer.sendInfo(MessageKey.IMPORT__PLAYERS, "{id}", String.valueOf(start + models.size()));
-                        start += models.size();
-                    } while (models.size() == max);
-                    r.accept(start);
+                        @Override
+                        public void onResume(StorageMigrator.@NotNull Phase phase, long afterId) {
+                            c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__RESUME, "{type}", phase.name().toLowerCase(), "{id}", String.valueOf(afterId));
+                        }
+                    });
+                    migrator.migrate().whenComplete((rows, ex) -> {
+                        if (ex != null) {
+                            logger.error(ex.getClass().getName() + ": " + ex.getMessage(), ex);
+                            c.getSender().sendMessage(MessageKey.ERROR__INTERNAL);
+                            return;
+                        }
+                        c.getSender().sendMessage(MessageKey.COMMAND__IMPORT__END);
+                    });
                 })
-                .syncLast(v -> issuer.sendInfo(MessageKey.IMPORT__END))
                 .execute();
-    }*/
+    }
 }
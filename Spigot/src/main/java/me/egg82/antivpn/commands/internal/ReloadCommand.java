@@ -9,7 +9,11 @@ import me.egg82.antivpn.api.event.api.APILoadedEventImpl;
 import me.egg82.antivpn.api.event.api.APIReloadEventImpl;
 import me.egg82.antivpn.api.model.ip.BukkitIPManager;
 import me.egg82.antivpn.api.model.player.BukkitPlayerManager;
+import me.egg82.antivpn.api.model.source.AbstractSource;
+import me.egg82.antivpn.api.model.source.Source;
 import me.egg82.antivpn.api.model.source.SourceManagerImpl;
+import me.egg82.antivpn.api.model.source.SourceQueryExecutor;
+import me.egg82.antivpn.api.model.source.models.SourceModel;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.config.ConfigurationFileUtil;
@@ -17,8 +21,12 @@ import me.egg82.antivpn.locale.*;
 import me.egg82.antivpn.messaging.MessagingService;
 import me.egg82.antivpn.messaging.handler.MessagingHandler;
 import me.egg82.antivpn.messaging.handler.MessagingHandlerImpl;
+import me.egg82.antivpn.messaging.packets.Packet;
+import me.egg82.antivpn.messaging.packets.server.InitializationPacket;
+import me.egg82.antivpn.storage.CacheWarmer;
 import me.egg82.antivpn.storage.StorageService;
 import me.egg82.antivpn.utils.EventUtil;
+import me.egg82.antivpn.utils.PacketUtil;
 import org.bukkit.plugin.Plugin;
 import org.jetbrains.annotations.NotNull;
 
@@ -47,6 +55,11 @@ public class ReloadCommand extends AbstractCommand {
                     for (StorageService service : cachedConfig.getStorage()) {
                         service.close();
                     }
+                    for (Source<SourceModel> source : ((VPNAPIImpl) VPNAPIProvider.getInstance()).getSourceManager().getSources()) {
+                        if (source instanceof AbstractSource) {
+                            ((AbstractSource<?>) source).close();
+                        }
+                    }
 
                     SourceManagerImpl sourceManager = new SourceManagerImpl();
                     MessagingHandler messagingHandler = new MessagingHandlerImpl();
@@ -60,11 +73,19 @@ public class ReloadCommand extends AbstractCommand {
                     BukkitPlayerManager playerManager = new BukkitPlayerManager(plugin, cachedConfig.getMcLeaksKey(), cachedConfig.getCacheTime());
                     VPNAPIImpl api = (VPNAPIImpl) VPNAPIProvider.getInstance();
                     EventUtil.post(new APIReloadEventImpl(api, ipManager, playerManager, sourceManager), api.getEventBus());
-                    api = new VPNAPIImpl(api.getPlatform(), api.getPluginMetadata(), ipManager, playerManager, sourceManager, api.getEventBus());
+                    api.getSourceQueryExecutor().close();
+                    SourceQueryExecutor sourceQueryExecutor = new SourceQueryExecutor(cachedConfig.getThreads(), cachedConfig.getSourceConcurrency(), cachedConfig.getTimeout() * 2L);
+                    api = new VPNAPIImpl(api.getPlatform(), api.getPluginMetadata(), ipManager, playerManager, sourceManager, sourceQueryExecutor, api.getEventBus());
 
                     APIRegistrationUtil.register(api);
                     EventUtil.post(new APILoadedEventImpl(api), api.getEventBus());
 
+                    // The packet dictionary may have changed, so let the other servers know what this one can read now
+                    PacketUtil.queuePacket(new InitializationPacket(cachedConfig.getServerId(), Packet.VERSION, ConfigUtil.getHiddenConfig().getPacketDictionaryId()));
+
+                    // The old warmer stops by itself once it sees the new managers
+                    new CacheWarmer(ipManager, playerManager).start();
+
                     c.getSender().sendMessage(MessageKey.COMMAND__RELOAD__END);
                 })
                 .execute();
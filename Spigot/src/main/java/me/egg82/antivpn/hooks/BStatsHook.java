@@ -6,6 +6,7 @@ import me.egg82.antivpn.api.model.source.models.SourceModel;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
 import me.egg82.antivpn.messaging.MessagingService;
+import me.egg82.antivpn.storage.KnownKeyFilter;
 import me.egg82.antivpn.storage.StorageService;
 import org.bstats.bukkit.Metrics;
 import org.bstats.charts.AdvancedPie;
@@ -50,6 +51,11 @@ public class BStatsHook implements PluginHook {
         Metrics metrics = new Metrics(plugin, id);
         metrics.addCustomChart(new SingleLineChart("blocked_vpns", () -> (int) blockedVPNs.getAndSet(0L)));
         metrics.addCustomChart(new SingleLineChart("blocked_mcleaks", () -> (int) blockedMCLeaks.getAndSet(0L)));
+        metrics.addCustomChart(new SingleLineChart("filter_false_positives", () -> {
+            // Per ten thousand, charts only take whole numbers
+            KnownKeyFilter filter = ConfigUtil.getCachedConfig().getTieredStorage().getFilter();
+            return filter != null && filter.isReady() ? (int) Math.round(filter.getObservedFpp() * 10000.0d) : 0;
+        }));
         metrics.addCustomChart(new AdvancedPie("storage", () -> {
             Map<String, Integer> retVal = new HashMap<>();
             for (StorageService service : ConfigUtil.getCachedConfig().getStorage()) {
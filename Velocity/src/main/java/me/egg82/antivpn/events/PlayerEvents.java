@@ -5,7 +5,6 @@ import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.connection.PostLoginEvent;
 import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.proxy.ProxyServer;
-import inet.ipaddr.IPAddressString;
 import me.egg82.antivpn.AntiVPN;
 import me.egg82.antivpn.api.VPNAPIProvider;
 import me.egg82.antivpn.api.model.ip.AlgorithmMethod;
@@ -14,11 +13,11 @@ import me.egg82.antivpn.api.model.player.PlayerManager;
 import me.egg82.antivpn.api.platform.VelocityPlatform;
 import me.egg82.antivpn.config.CachedConfig;
 import me.egg82.antivpn.config.ConfigUtil;
+import me.egg82.antivpn.core.IPKey;
 import me.egg82.antivpn.hooks.LuckPermsHook;
 import me.egg82.antivpn.services.lookup.PlayerInfo;
 import me.egg82.antivpn.services.lookup.PlayerLookup;
 import me.egg82.antivpn.utils.ExceptionUtil;
-import me.egg82.antivpn.utils.ValidationUtil;
 import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import ninja.egg82.events.VelocityEvents;
 import ninja.egg82.service.ServiceLocator;
@@ -127,18 +126,16 @@ public class PlayerEvents extends EventHolder {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         // Check ignored IP addresses/ranges
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+        String ignoredMatch = getIgnoredMatch(ip, cachedConfig);
+        if (ignoredMatch != null) {
+            if (ConfigUtil.getDebugOrFalse()) {
+                if (ignoredMatch.indexOf('/') == -1) {
                     console.sendMessage("<c1>" + event.getUsername() + "</c1> <c2>is using an ignored IP</c2> <c1>" + ip + "</c1><c2>. Ignoring.</c2>");
+                } else {
+                    console.sendMessage("<c1>" + event.getUsername() + "</c1> <c2>is under an ignored range</c2> <c1>" + ignoredMatch + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
                 }
-                return;
-            } else if (ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)) {
-                if (ConfigUtil.getDebugOrFalse()) {
-                    console.sendMessage("<c1>" + event.getUsername() + "</c1> <c2>is under an ignored range</c2> <c1>" + testAddress + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
-                }
-                return;
             }
+            return;
         }
 
         cacheData(ip, uuid, cachedConfig);
@@ -187,13 +184,8 @@ public class PlayerEvents extends EventHolder {
         CachedConfig cachedConfig = ConfigUtil.getCachedConfig();
 
         // Check ignored IP addresses/ranges
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (
-                    ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)
-                            || ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)
-            ) {
-                return;
-            }
+        if (getIgnoredMatch(ip, cachedConfig) != null) {
+            return;
         }
 
         cacheData(ip, uuid, cachedConfig);
@@ -262,19 +254,17 @@ public class PlayerEvents extends EventHolder {
             return;
         }
 
-        for (String testAddress : cachedConfig.getIgnoredIps()) {
-            if (ValidationUtil.isValidIp(testAddress) && ip.equalsIgnoreCase(testAddress)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+        String ignoredMatch = getIgnoredMatch(ip, cachedConfig);
+        if (ignoredMatch != null) {
+            if (ConfigUtil.getDebugOrFalse()) {
+                if (ignoredMatch.indexOf('/') == -1) {
                     console.sendMessage("<c1>" + event.getPlayer().getUsername() + "</c1> <c2>is using an ignored IP</c2> <c1>" + ip + "</c1><c2>. Ignoring.</c2>");
-                }
-                return;
-            } else if (ValidationUtil.isValidIpRange(testAddress) && rangeContains(testAddress, ip)) {
-                if (ConfigUtil.getDebugOrFalse()) {
+                } else {
                     console.sendMessage("<c1>" + event.getPlayer()
-                            .getUsername() + "</c1> <c2>is under an ignored range</c2> <c1>" + testAddress + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
+                            .getUsername() + "</c1> <c2>is under an ignored range</c2> <c1>" + ignoredMatch + " (" + ip + ")" + "</c1><c2>. Ignoring.</c2>");
                 }
-                return;
             }
+            return;
         }
 
         if (isVpn(ip, event.getPlayer().getUsername(), cachedConfig)) {
@@ -398,5 +388,12 @@ public class PlayerEvents extends EventHolder {
 
     private @NotNull CompletableFuture<UUID> fetchUuid(@NotNull String name) { return PlayerLookup.get(name, proxy).thenApply(PlayerInfo::getUUID); }
 
-    private boolean rangeContains(@NotNull String range, @NotNull String ip) { return new IPAddressString(range).contains(new IPAddressString(ip)); }
+    @Nullable
+    private String getIgnoredMatch(@NotNull String ip, @NotNull CachedConfig cachedConfig) {
+        try {
+            return cachedConfig.getIgnoredIpTrie().getMatch(IPKey.of(ip));
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
 }